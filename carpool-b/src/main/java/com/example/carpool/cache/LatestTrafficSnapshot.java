@@ -0,0 +1,138 @@
+package com.example.carpool.cache;
+
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.ingest.TrafficIngestListener;
+import com.example.carpool.repository.RoadTrafficRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 每条道路（按道路id）最新路况的内存快照，启动时加载一次，之后随新数据增量更新
+ */
+@Component
+@Order(TrafficIngestListener.VIEW_ORDER)
+public class LatestTrafficSnapshot implements TrafficIngestListener {
+
+    private static final Sort DEFAULT_SORT = Sort.by("requestTime").descending();
+
+    // 同一道路的两条记录按 (时间, id) 比较新旧：重放的溢出日志 id 更大但时间更早，不能当作最新
+    private static final Comparator<TrafficSummary> RECENCY = Comparator
+            .comparing(TrafficSummary::getRequestTime, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(TrafficSummary::getId);
+
+    @Autowired
+    private RoadTrafficRepository roadTrafficRepository;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    private final ConcurrentMap<Integer, TrafficSummary> latestByRoad = new ConcurrentHashMap<>();
+
+    @Override
+    public void loadInitialState(long lastSeenId) {
+        // 状态持续的记录以最后一次采集的时间作为最新时间
+        roadTrafficRepository.findLatestForEachRoad().forEach(row ->
+                update(row.getValidUntil() != null ? row.at(row.getValidUntil()) : row));
+    }
+
+    @Override
+    public void onTrafficIngested(List<TrafficSummary> rows) {
+        rows.forEach(this::update);
+    }
+
+    /**
+     * 状态未变的采集结果只更新该道路最新记录的时间
+     */
+    @Override
+    public void onTrafficExtended(List<TrafficSummary> rows) {
+        for (TrafficSummary row : rows) {
+            RoadDictionary.Road road = roadDictionary.resolve(row);
+            if (road != null) {
+                latestByRoad.merge(road.getId(), row.at(row.getValidUntil()),
+                        (old, cur) -> RECENCY.compare(cur, old) >= 0 ? cur : old);
+            }
+        }
+    }
+
+    /**
+     * 更新某条道路的最新记录，只保留 (时间, id) 更大的那条
+     */
+    public void update(TrafficSummary traffic) {
+        RoadDictionary.Road road = roadDictionary.resolve(traffic);
+        if (road == null) {
+            return;
+        }
+        latestByRoad.merge(road.getId(), traffic, (old, cur) -> RECENCY.compare(cur, old) > 0 ? cur : old);
+    }
+
+    /**
+     * 获取指定道路的最新记录
+     */
+    public Optional<TrafficSummary> find(int roadId) {
+        return Optional.ofNullable(latestByRoad.get(roadId));
+    }
+
+    /**
+     * 分页获取所有道路的最新记录，排序和分页都在内存中完成
+     */
+    public Page<TrafficSummary> findAll(Pageable pageable) {
+        List<TrafficSummary> all = new ArrayList<>(latestByRoad.values());
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : DEFAULT_SORT;
+        all.sort(comparatorFor(sort));
+
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(all, pageable, all.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(new ArrayList<>(all.subList(from, to)), pageable, all.size());
+    }
+
+    /**
+     * 已缓存的道路数量
+     */
+    public int size() {
+        return latestByRoad.size();
+    }
+
+    /**
+     * 根据排序条件构造比较器，同值时按 id 倒序保证分页稳定
+     */
+    private static Comparator<TrafficSummary> comparatorFor(Sort sort) {
+        Comparator<TrafficSummary> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<TrafficSummary> next = switch (order.getProperty()) {
+                case "id" -> Comparator.comparing(TrafficSummary::getId,
+                        Comparator.nullsLast(Comparator.<Long>naturalOrder()));
+                case "requestTime" -> Comparator.comparing(TrafficSummary::getRequestTime,
+                        Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder()));
+                case "roadName" -> Comparator.comparing(TrafficSummary::getRoadName,
+                        Comparator.nullsLast(Comparator.<String>naturalOrder()));
+                case "city" -> Comparator.comparing(TrafficSummary::getCity,
+                        Comparator.nullsLast(Comparator.<String>naturalOrder()));
+                case "evaluationStatus" -> Comparator.comparing(TrafficSummary::getEvaluationStatus,
+                        Comparator.nullsLast(Comparator.<Integer>naturalOrder()));
+                default -> throw new IllegalArgumentException("不支持的排序字段: " + order.getProperty());
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        Comparator<TrafficSummary> byIdDesc = Comparator.comparing(TrafficSummary::getId).reversed();
+        return comparator == null ? byIdDesc : comparator.thenComparing(byIdDesc);
+    }
+}
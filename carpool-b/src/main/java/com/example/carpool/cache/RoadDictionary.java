@@ -0,0 +1,278 @@
+package com.example.carpool.cache;
+
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.ingest.TrafficIngestListener;
+import com.example.carpool.repository.RoadRepository;
+import com.example.carpool.repository.RoadTrafficRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内的道路/城市字典
+ * 启动时从 road 维度表加载一次所有道路（道路id即 road.id），之后随新数据增量补充；
+ * 城市的各种写法（原始名称、去掉"市"/"自治区"等后缀的标准名称、补上后缀的名称）都映射到同一个城市，一次哈希查找即可定位
+ */
+@Component
+@Order(TrafficIngestListener.DICTIONARY_ORDER)
+public class RoadDictionary implements TrafficIngestListener {
+
+    private static final String[] CITY_SUFFIXES = {"市", "自治区", "自治州", "地区"};
+
+    @Autowired
+    private RoadRepository roadRepository;
+
+    @Autowired
+    private RoadTrafficRepository roadTrafficRepository;
+
+    @Autowired
+    private RoadSearchIndex roadSearchIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicInteger cityIds = new AtomicInteger();
+
+    // 城市别名 -> 城市
+    private final Map<String, City> citiesByAlias = new ConcurrentHashMap<>();
+
+    // 标准城市名称 -> 城市
+    private final Map<String, City> citiesByNormalizedName = new ConcurrentHashMap<>();
+
+    // (道路名称, 城市id) -> 道路
+    private final Map<RoadKey, Road> roads = new ConcurrentHashMap<>();
+
+    // road.id -> 道路
+    private final Map<Integer, Road> roadsById = new ConcurrentHashMap<>();
+
+    /**
+     * 先登记路况表中实际出现过的城市写法（作为城市的显示名称），再加载道路维度表
+     */
+    @Override
+    public void loadInitialState(long lastSeenId) {
+        for (String storedCity : roadTrafficRepository.findDistinctCities()) {
+            registerCity(storedCity, true);
+        }
+        for (com.example.carpool.entity.Road road : roadRepository.findAll()) {
+            register(road.getId(), road.getRoadName(), road.getCity(), false);
+        }
+    }
+
+    @Override
+    public void onTrafficIngested(List<TrafficSummary> rows) {
+        for (TrafficSummary row : rows) {
+            resolve(row);
+        }
+    }
+
+    /**
+     * 解析路况记录所属的道路：已知 road_id 时只做一次哈希查找；
+     * 旧的写入程序没有填写 road_id 时按名称查找，仍找不到则登记到 road 维度表
+     */
+    public Road resolve(TrafficSummary row) {
+        if (row.getRoadName() == null || row.getCity() == null) {
+            return null;
+        }
+        if (row.getRoadId() != null) {
+            Road road = roadsById.get(row.getRoadId());
+            if (road != null && road.city.storedNames.contains(row.getCity())) {
+                return road;
+            }
+            return register(row.getRoadId(), row.getRoadName(), row.getCity(), true);
+        }
+
+        Road road = findRoad(row.getRoadName(), row.getCity());
+        if (road != null && road.city.storedNames.contains(row.getCity())) {
+            return road;
+        }
+        String normalized = normalizeCityName(row.getCity());
+        // 回读放在同一个读写事务里走主库，从库复制延迟时也能读到刚登记的道路
+        Integer roadId = transactionTemplate.execute(status -> {
+            roadRepository.insertIgnore(row.getRoadName(), normalized);
+            return roadRepository.findByRoadNameAndCity(row.getRoadName(), normalized)
+                    .map(com.example.carpool.entity.Road::getId)
+                    .orElse(null);
+        });
+        if (roadId == null) {
+            throw new IllegalStateException("道路登记失败: " + row.getRoadName() + " / " + row.getCity());
+        }
+        return register(roadId, row.getRoadName(), row.getCity(), true);
+    }
+
+    /**
+     * 登记一条道路；stored 表示 cityName 是路况表中实际出现过的写法
+     */
+    private synchronized Road register(int roadId, String roadName, String cityName, boolean stored) {
+        City city = registerCity(cityName, stored);
+        Road road = roadsById.get(roadId);
+        if (road == null) {
+            road = new Road(roadId, roadName, city);
+            roadsById.put(roadId, road);
+            roads.put(new RoadKey(roadName, city.id), road);
+            city.roadNames.add(roadName);
+            roadSearchIndex.add(road);
+        }
+        return road;
+    }
+
+    private synchronized City registerCity(String cityName, boolean stored) {
+        String normalized = normalizeCityName(cityName);
+        City city = citiesByNormalizedName.computeIfAbsent(normalized,
+                n -> new City(cityIds.incrementAndGet(), cityName, n));
+        if (stored && city.storedNames.add(cityName)) {
+            citiesByAlias.put(cityName, city);
+        }
+        citiesByAlias.put(normalized, city);
+        for (String suffix : CITY_SUFFIXES) {
+            citiesByAlias.putIfAbsent(normalized + suffix, city);
+        }
+        return city;
+    }
+
+    /**
+     * 按任意写法查找城市
+     */
+    public City findCity(String cityName) {
+        if (cityName == null) {
+            return null;
+        }
+        String trimmed = cityName.trim();
+        City city = citiesByAlias.get(trimmed);
+        return city != null ? city : citiesByNormalizedName.get(normalizeCityName(trimmed));
+    }
+
+    /**
+     * 按道路id查找道路
+     */
+    public Road findRoad(Integer roadId) {
+        return roadId != null ? roadsById.get(roadId) : null;
+    }
+
+    /**
+     * 按道路名称和任意写法的城市名称查找道路
+     */
+    public Road findRoad(String roadName, String cityName) {
+        City city = findCity(cityName);
+        if (city == null || roadName == null) {
+            return null;
+        }
+        return roads.get(new RoadKey(roadName.trim(), city.id));
+    }
+
+    /**
+     * 所有城市的显示名称，按名称排序
+     */
+    public List<String> getCityNames() {
+        List<String> names = new ArrayList<>();
+        for (City city : citiesByNormalizedName.values()) {
+            names.add(city.name);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 所有已登记的道路
+     */
+    public List<Road> getRoads() {
+        return new ArrayList<>(roads.values());
+    }
+
+    /**
+     * 标准化城市名称，移除常见的后缀
+     */
+    public static String normalizeCityName(String cityName) {
+        if (cityName == null) return null;
+
+        for (String suffix : CITY_SUFFIXES) {
+            if (cityName.endsWith(suffix) && cityName.length() > suffix.length()) {
+                return cityName.substring(0, cityName.length() - suffix.length());
+            }
+        }
+        return cityName;
+    }
+
+    /**
+     * 城市：同一标准名称的各种写法归为一个城市
+     */
+    public static final class City {
+        private final int id;
+        // 显示名称：路况表中最先出现的写法
+        private final String name;
+        private final String normalizedName;
+        // 数据库中实际出现过的城市写法
+        private final Set<String> storedNames = new CopyOnWriteArraySet<>();
+        private final NavigableSet<String> roadNames = new ConcurrentSkipListSet<>();
+
+        City(int id, String name, String normalizedName) {
+            this.id = id;
+            this.name = name;
+            this.normalizedName = normalizedName;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getNormalizedName() {
+            return normalizedName;
+        }
+
+        public Set<String> getStoredNames() {
+            return Collections.unmodifiableSet(storedNames);
+        }
+
+        /**
+         * 该城市的所有道路名称，按名称排序
+         */
+        public List<String> getRoadNames() {
+            return new ArrayList<>(roadNames);
+        }
+    }
+
+    /**
+     * 道路：道路名称 + 城市，id 即 road 维度表的主键
+     */
+    public static final class Road {
+        private final int id;
+        private final String name;
+        private final City city;
+
+        Road(int id, String name, City city) {
+            this.id = id;
+            this.name = name;
+            this.city = city;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public City getCity() {
+            return city;
+        }
+    }
+
+    private record RoadKey(String roadName, int cityId) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.carpool.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 道路名称/城市名称的 n-gram 倒排索引（单字 + 二元组，适合中文道路名）
+ * 关键字先按 n-gram 求交得到候选道路，再做子串校验和相关度排序
+ */
+@Component
+public class RoadSearchIndex {
+
+    // n-gram -> 包含该 n-gram 的道路
+    private final Map<String, Set<RoadDictionary.Road>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 将道路加入索引（道路名称以及所在城市的各种写法）
+     */
+    public void add(RoadDictionary.Road road) {
+        Set<String> grams = new HashSet<>();
+        addGrams(grams, normalize(road.getName()));
+        addGrams(grams, normalize(road.getCity().getName()));
+        addGrams(grams, normalize(road.getCity().getNormalizedName()));
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(road);
+        }
+    }
+
+    /**
+     * 按关键字搜索道路，按相关度排序后最多返回 limit 条
+     */
+    public List<RoadDictionary.Road> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+
+        // 取各 n-gram 倒排表的交集，从最短的倒排表开始
+        List<Set<RoadDictionary.Road>> lists = new ArrayList<>();
+        for (String gram : queryGrams(query)) {
+            Set<RoadDictionary.Road> list = postings.get(gram);
+            if (list == null) {
+                return List.of();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<RoadDictionary.Road> candidates = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(lists.get(i));
+        }
+
+        List<ScoredRoad> scored = new ArrayList<>();
+        for (RoadDictionary.Road road : candidates) {
+            int score = score(road, query);
+            if (score > 0) {
+                scored.add(new ScoredRoad(road, score));
+            }
+        }
+        scored.sort(Comparator.comparingInt(ScoredRoad::score).reversed()
+                .thenComparingInt(s -> s.road().getName().length())
+                .thenComparingInt(s -> s.road().getId()));
+
+        List<RoadDictionary.Road> result = new ArrayList<>();
+        for (int i = 0; i < scored.size() && i < limit; i++) {
+            result.add(scored.get(i).road());
+        }
+        return result;
+    }
+
+    /**
+     * 相关度：道路名称完全匹配 > 前缀匹配 > 包含 > 仅城市匹配，n-gram 命中但不是连续子串的返回0
+     */
+    private static int score(RoadDictionary.Road road, String query) {
+        String roadName = normalize(road.getName());
+        if (roadName.equals(query)) {
+            return 100;
+        }
+        if (roadName.startsWith(query)) {
+            return 80;
+        }
+        if (roadName.contains(query)) {
+            return 60;
+        }
+        String cityName = normalize(road.getCity().getName());
+        if (cityName.contains(query) || query.contains(normalize(road.getCity().getNormalizedName()))) {
+            return 30;
+        }
+        return 0;
+    }
+
+    private static List<String> queryGrams(String query) {
+        if (query.length() == 1) {
+            return List.of(query);
+        }
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + 2 <= query.length(); i++) {
+            grams.add(query.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static void addGrams(Set<String> grams, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 2 <= text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record ScoredRoad(RoadDictionary.Road road, int score) {
+    }
+}
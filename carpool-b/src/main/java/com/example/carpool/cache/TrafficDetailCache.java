@@ -0,0 +1,98 @@
+package com.example.carpool.cache;
+
+import com.example.carpool.dto.TrafficResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 路况详情缓存：road_traffic_overall 入库后只有 valid_until 会随状态延续而更新（详情不包含该字段），
+ * congestion_sections 入库后不再修改，组装好的 TrafficResponse 可以按 id 长期复用。
+ * 基于 Caffeine（W-TinyLFU 淘汰），按条数或估算字节数限制容量，并设置过期时间，
+ * 命中/未命中/淘汰次数通过 Micrometer 以 cache.* 指标暴露（cache=trafficDetails）
+ */
+@Component
+public class TrafficDetailCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficDetailCache.class);
+
+    private static final String CACHE_NAME = "trafficDetails";
+
+    // 对象头、装箱字段和引用的粗略开销
+    private static final int BASE_WEIGHT = 256;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${traffic.detail-cache.max-entries:10000}")
+    private long maxEntries;
+
+    // 大于0时按估算字节数限制容量，忽略 max-entries
+    @Value("${traffic.detail-cache.max-bytes:0}")
+    private long maxBytes;
+
+    @Value("${traffic.detail-cache.ttl:30m}")
+    private Duration ttl;
+
+    private Cache<Long, TrafficResponse> cache;
+
+    @PostConstruct
+    public void init() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .recordStats();
+        if (maxBytes > 0) {
+            builder.maximumWeight(maxBytes)
+                    .weigher((Long id, TrafficResponse response) -> estimateBytes(response));
+        } else {
+            builder.maximumSize(maxEntries);
+        }
+        cache = builder.build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        log.info("路况详情缓存已启用：{}，过期时间 {}",
+                maxBytes > 0 ? "最大约 " + maxBytes + " 字节" : "最多 " + maxEntries + " 条", ttl);
+    }
+
+    /**
+     * 读取详情，未命中时调用 loader 加载（loader 抛出的异常原样抛出，不缓存）
+     */
+    public TrafficResponse get(Long id, Function<Long, TrafficResponse> loader) {
+        return cache.get(id, loader);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 估算一条详情占用的堆内存（字符串按 UTF-16 每字符2字节计算）
+     */
+    static int estimateBytes(TrafficResponse response) {
+        int bytes = BASE_WEIGHT;
+        bytes += stringBytes(response.getRoadName());
+        bytes += stringBytes(response.getCity());
+        bytes += stringBytes(response.getEvaluationStatusDesc());
+        bytes += stringBytes(response.getDescription());
+        bytes += stringBytes(response.getStatusText());
+        Map<Integer, Long> histogram = response.getStatusHistogram();
+        if (histogram != null) {
+            bytes += 64 + histogram.size() * 64;
+        }
+        return bytes;
+    }
+
+    private static int stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length() * 2;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.carpool.collect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * 百度地图道路实时路况接口，所有道路共用一个 HttpClient（连接复用）
+ */
+@Component
+@ConditionalOnProperty(prefix = "traffic.collector", name = "provider", havingValue = "baidu", matchIfMissing = true)
+public class BaiduTrafficProvider implements TrafficProvider {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${traffic.collector.baidu.url:https://api.map.baidu.com/traffic/v1/road}")
+    private String url;
+
+    @Value("${traffic.collector.baidu.ak:}")
+    private String ak;
+
+    @Value("${traffic.collector.baidu.timeout:10s}")
+    private Duration timeout;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Override
+    public RoadTrafficReport fetch(String roadName, String city) throws IOException, InterruptedException {
+        URI uri = URI.create(url + "?road_name=" + encode(roadName) + "&city=" + encode(city) + "&ak=" + encode(ak));
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("路况接口返回HTTP " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), RoadTrafficReport.class);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
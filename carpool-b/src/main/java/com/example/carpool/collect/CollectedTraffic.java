@@ -0,0 +1,10 @@
+package com.example.carpool.collect;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一条道路一次采集的结果，等待写库
+ */
+public record CollectedTraffic(int roadId, String roadName, String city,
+                               RoadTrafficReport report, LocalDateTime requestTime) {
+}
@@ -0,0 +1,40 @@
+package com.example.carpool.collect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * 从本地文件读取路况（格式与百度接口响应相同），用于本地开发和测试：
+ * 依次查找 {dir}/{城市}/{道路}.json、{dir}/{道路}.json、{dir}/default.json
+ */
+@Component
+@ConditionalOnProperty(prefix = "traffic.collector", name = "provider", havingValue = "file")
+public class FileTrafficProvider implements TrafficProvider {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${traffic.collector.file.dir:traffic-samples}")
+    private Path dir;
+
+    @Override
+    public RoadTrafficReport fetch(String roadName, String city) throws IOException {
+        for (Path file : new Path[]{
+                dir.resolve(city).resolve(roadName + ".json"),
+                dir.resolve(roadName + ".json"),
+                dir.resolve("default.json")}) {
+            if (Files.isRegularFile(file)) {
+                return objectMapper.readValue(file.toFile(), RoadTrafficReport.class);
+            }
+        }
+        throw new NoSuchFileException(dir.resolve(city).resolve(roadName + ".json").toString());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.carpool.collect;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 一条道路的实时路况，字段与百度地图道路实时路况接口（traffic/v1/road）的响应一致，
+ * status 为 0 表示成功
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record RoadTrafficReport(
+        Integer status,
+        String message,
+        String description,
+        Evaluation evaluation,
+        @JsonProperty("road_traffic") List<RoadTraffic> roadTraffic) {
+
+    public boolean isSuccess() {
+        return status != null && status == 0;
+    }
+
+    /**
+     * 整体路况评价(0:未知 1:畅通 2:缓行 3:拥堵 4:严重拥堵)
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Evaluation(
+            Integer status,
+            @JsonProperty("status_desc") String statusDesc) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record RoadTraffic(
+            @JsonProperty("road_name") String roadName,
+            @JsonProperty("congestion_sections") List<Section> congestionSections) {
+    }
+
+    /**
+     * 拥堵路段：速度单位 km/h，拥堵距离单位米
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Section(
+            @JsonProperty("section_desc") String sectionDesc,
+            Integer status,
+            BigDecimal speed,
+            @JsonProperty("congestion_distance") Integer congestionDistance,
+            @JsonProperty("congestion_trend") String congestionTrend) {
+    }
+}
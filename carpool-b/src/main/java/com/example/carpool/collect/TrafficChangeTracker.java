@@ -0,0 +1,115 @@
+package com.example.carpool.collect;
+
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.repository.RoadTrafficRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在内存中保存每条道路最近一次写入的路况，判断新的采集结果是否与之完全相同（评价、描述、拥堵路段等）：
+ * 相同时只延长该记录的 valid_until，不写入新记录。一条记录的区间不超过
+ * {@link RoadTrafficRepository#MAX_VALID_SPAN} 且不跨月；启动后每条道路的第一次采集总是写入新记录。
+ * 与上次采集相隔两个采集间隔以上（中间漏了采集，如数据库停顿期间写入溢出日志）时也写入新记录，
+ * 之后重放的溢出日志落在两条记录之间，不会与延长后的区间重叠
+ */
+class TrafficChangeTracker {
+
+    private final boolean enabled;
+
+    // 可以延长的最大相隔时间：采集按固定延迟调度，正常相隔一个间隔加上一轮采集的耗时
+    private final Duration maxGap;
+
+    // 道路id -> 最近一次写入的记录
+    private final Map<Integer, Stored> lastStored = new ConcurrentHashMap<>();
+
+    /**
+     * 最近一次写入的记录，id 为 null 表示同一批次中尚未写入
+     */
+    private record Stored(Long id, LocalDateTime requestTime, LocalDateTime validUntil, CollectedTraffic traffic) {
+    }
+
+    /**
+     * 一批采集结果的写入方式：inserts 写入新记录，extensions 延长已有记录
+     * （id、requestTime 为原记录，validUntil 为本次采集时间）
+     */
+    record Split(List<CollectedTraffic> inserts, List<TrafficSummary> extensions) {
+    }
+
+    TrafficChangeTracker(boolean enabled, Duration collectInterval) {
+        this.enabled = enabled;
+        this.maxGap = collectInterval.multipliedBy(2);
+    }
+
+    /**
+     * 划分一批采集结果，不修改已记录的状态（写库成功后调用 {@link #commit}），写库失败重试时结果相同
+     */
+    Split split(List<CollectedTraffic> batch) {
+        if (!enabled) {
+            return new Split(batch, List.of());
+        }
+        List<CollectedTraffic> inserts = new ArrayList<>();
+        List<TrafficSummary> extensions = new ArrayList<>();
+        // 同一道路在一批中出现多次时（数据库停顿后积压），后面的与前面的比较
+        Map<Integer, Stored> inBatch = new HashMap<>();
+        for (CollectedTraffic traffic : batch) {
+            Stored stored = inBatch.getOrDefault(traffic.roadId(), lastStored.get(traffic.roadId()));
+            if (stored != null && stored.id() != null && unchanged(stored, traffic)) {
+                extensions.add(new TrafficSummary(stored.id(), traffic.roadId(), traffic.roadName(), traffic.city(),
+                        evaluationStatus(traffic), stored.requestTime(), traffic.requestTime()));
+                inBatch.put(traffic.roadId(),
+                        new Stored(stored.id(), stored.requestTime(), traffic.requestTime(), stored.traffic()));
+            } else {
+                inserts.add(traffic);
+                inBatch.put(traffic.roadId(),
+                        new Stored(null, traffic.requestTime(), traffic.requestTime(), traffic));
+            }
+        }
+        return new Split(inserts, extensions);
+    }
+
+    /**
+     * 写库成功后记录新状态，insertedIds 与 split.inserts() 顺序一致；
+     * 比已记录的状态更早的结果（如重放的溢出日志）不覆盖已记录的状态
+     */
+    void commit(Split split, List<Long> insertedIds) {
+        if (!enabled) {
+            return;
+        }
+        for (TrafficSummary extension : split.extensions()) {
+            lastStored.computeIfPresent(extension.getRoadId(), (roadId, stored) ->
+                    stored.id().equals(extension.getId()) && extension.getValidUntil().isAfter(stored.validUntil())
+                            ? new Stored(stored.id(), stored.requestTime(), extension.getValidUntil(), stored.traffic())
+                            : stored);
+        }
+        for (int i = 0; i < split.inserts().size(); i++) {
+            CollectedTraffic traffic = split.inserts().get(i);
+            Stored inserted = new Stored(insertedIds.get(i), traffic.requestTime(), traffic.requestTime(), traffic);
+            lastStored.merge(traffic.roadId(), inserted,
+                    (old, cur) -> cur.requestTime().isAfter(old.validUntil()) ? cur : old);
+        }
+    }
+
+    private boolean unchanged(Stored stored, CollectedTraffic traffic) {
+        LocalDateTime time = traffic.requestTime();
+        return time.isAfter(stored.validUntil())
+                && Duration.between(stored.validUntil(), time).compareTo(maxGap) < 0
+                && YearMonth.from(time).equals(YearMonth.from(stored.requestTime()))
+                && Duration.between(stored.requestTime(), time).compareTo(RoadTrafficRepository.MAX_VALID_SPAN) <= 0
+                && Objects.equals(traffic.roadName(), stored.traffic().roadName())
+                && Objects.equals(traffic.city(), stored.traffic().city())
+                && Objects.equals(traffic.report(), stored.traffic().report());
+    }
+
+    private static Integer evaluationStatus(CollectedTraffic traffic) {
+        RoadTrafficReport.Evaluation evaluation = traffic.report().evaluation();
+        return evaluation != null ? evaluation.status() : null;
+    }
+}
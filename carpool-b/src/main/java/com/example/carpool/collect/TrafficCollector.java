@@ -0,0 +1,147 @@
+package com.example.carpool.collect;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.TrafficSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 路况采集（替代 script/run.py 的逐条道路串行轮询）：每轮为每条监控道路启动一个虚拟线程并发请求数据源，
+ * 同时进行的请求数由 max-concurrent-requests 限制；每条结果放入 {@link TrafficWriteBuffer}，由其后台线程批量写库，
+ * 数据库停顿时采集不受影响
+ */
+@Component
+@ConditionalOnProperty(prefix = "traffic.collector", name = "enabled", havingValue = "true")
+public class TrafficCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficCollector.class);
+
+    @Autowired
+    private TrafficProvider trafficProvider;
+
+    @Autowired
+    private TrafficWriteBuffer trafficWriteBuffer;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 监控的道路，格式为 城市:道路；为空时采集道路维度表中的所有道路
+    @Value("${traffic.collector.roads:}")
+    private List<String> roads;
+
+    @Value("${traffic.collector.max-concurrent-requests:50}")
+    private int maxConcurrentRequests;
+
+    /**
+     * 要采集的一条道路，city 为请求数据源和写入路况表时使用的城市写法
+     */
+    record MonitoredRoad(String roadName, String city) {
+    }
+
+    @Scheduled(fixedDelayString = "${traffic.collector.interval-ms:300000}",
+               initialDelayString = "${traffic.collector.initial-delay-ms:10000}")
+    public void collect() {
+        List<MonitoredRoad> targets = monitoredRoads();
+        if (targets.isEmpty()) {
+            return;
+        }
+        Semaphore permits = new Semaphore(maxConcurrentRequests);
+        AtomicInteger collected = new AtomicInteger();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MonitoredRoad road : targets) {
+                executor.submit(() -> {
+                    CollectedTraffic traffic = fetch(road, permits);
+                    if (traffic == null) {
+                        return;
+                    }
+                    try {
+                        trafficWriteBuffer.offer(traffic);
+                        collected.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        }
+
+        int saved = collected.get();
+        long nanos = sample.stop(meterRegistry.timer("traffic.collector.cycle"));
+        int failed = targets.size() - saved;
+        Counter.builder("traffic.collector.roads").tag("result", "success").register(meterRegistry)
+                .increment(saved);
+        Counter.builder("traffic.collector.roads").tag("result", "failure").register(meterRegistry)
+                .increment(failed);
+        log.info("一轮路况采集完成：{} 条道路成功，{} 条失败，耗时 {} ms，写缓冲中 {} 条待写库",
+                saved, failed, nanos / 1_000_000, trafficWriteBuffer.getDepth());
+    }
+
+    /**
+     * 请求一条道路的路况并解析道路id，失败时返回 null
+     */
+    private CollectedTraffic fetch(MonitoredRoad road, Semaphore permits) {
+        try {
+            RoadTrafficReport report;
+            LocalDateTime requestTime;
+            permits.acquire();
+            try {
+                requestTime = LocalDateTime.now();
+                report = trafficProvider.fetch(road.roadName(), road.city());
+            } finally {
+                permits.release();
+            }
+            if (report == null || !report.isSuccess()) {
+                log.warn("{} - {} 路况接口返回错误: {}", road.city(), road.roadName(),
+                        report != null ? report.message() : null);
+                return null;
+            }
+
+            RoadDictionary.Road resolved = roadDictionary.resolve(
+                    new TrafficSummary(null, null, road.roadName(), road.city(), null, null));
+            return new CollectedTraffic(resolved.getId(), road.roadName(), road.city(), report, requestTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.error("{} - {} 路况采集失败", road.city(), road.roadName(), e);
+            return null;
+        }
+    }
+
+    private List<MonitoredRoad> monitoredRoads() {
+        List<MonitoredRoad> targets = new ArrayList<>();
+        for (String entry : roads) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                log.warn("忽略格式错误的监控道路配置: {}（应为 城市:道路）", entry);
+                continue;
+            }
+            targets.add(new MonitoredRoad(entry.substring(separator + 1).trim(), entry.substring(0, separator).trim()));
+        }
+        if (targets.isEmpty() && roads.isEmpty()) {
+            for (RoadDictionary.Road road : roadDictionary.getRoads()) {
+                targets.add(new MonitoredRoad(road.getName(), road.getCity().getName()));
+            }
+        }
+        return targets;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.carpool.collect;
+
+import java.io.IOException;
+
+/**
+ * 实时路况数据源，由 traffic.collector.provider 选择实现（baidu / file）。
+ * 实现需要线程安全，采集时每条道路在各自的虚拟线程中调用
+ */
+public interface TrafficProvider {
+
+    /**
+     * 获取一条道路的实时路况；网络或数据读取失败时抛出异常，接口业务错误通过返回的 status 表示
+     */
+    RoadTrafficReport fetch(String roadName, String city) throws IOException, InterruptedException;
+}
@@ -0,0 +1,170 @@
+package com.example.carpool.collect;
+
+import com.example.carpool.dto.TrafficSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将采集到的路况写入 road_traffic_overall 和 congestion_sections（使用应用的连接池），
+ * 拥堵路段的 created_at 与主表的 request_time 取同一时间，便于按月分区后按时间裁剪分区
+ */
+@Component
+public class TrafficReportWriter {
+
+    private static final String INSERT_OVERALL =
+            "INSERT INTO road_traffic_overall (road_id, request_time, road_name, city, api_status, message, " +
+            "description, evaluation_status, evaluation_status_desc, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_SECTION =
+            "INSERT INTO congestion_sections (overall_id, road_id, road_name, section_desc, status, speed, " +
+            "congestion_distance, congestion_trend, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 带上分区列 request_time，按月分区后只访问一个分区
+    private static final String EXTEND_OVERALL =
+            "UPDATE road_traffic_overall SET valid_until = ? WHERE id = ? AND request_time = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 每个事务写入的道路数
+    @Value("${traffic.collector.write-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 逐条写入一条道路的路况（主表一条 INSERT，拥堵路段逐条 INSERT，单独一个事务），返回主表记录id
+     */
+    public long write(CollectedTraffic traffic) {
+        return transactionTemplate.execute(status -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_OVERALL, Statement.RETURN_GENERATED_KEYS);
+                setOverall(ps, traffic);
+                return ps;
+            }, keyHolder);
+            long overallId = keyHolder.getKey().longValue();
+            for (Object[] section : sectionRows(traffic, overallId)) {
+                jdbcTemplate.update(INSERT_SECTION, section);
+            }
+            return overallId;
+        });
+    }
+
+    /**
+     * 批量写入一轮采集的路况，每 batchSize 条道路一个事务：
+     * 主表一次批量 INSERT（连接参数 rewriteBatchedStatements=true 时驱动改写为多行 INSERT ... VALUES），
+     * 按顺序返回的自增id一次遍历对应到各自的拥堵路段，拥堵路段再一次批量 INSERT。
+     * 返回与输入顺序一致的主表记录id
+     */
+    public List<Long> writeAll(List<CollectedTraffic> batch) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<CollectedTraffic> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            ids.addAll(transactionTemplate.execute(status -> writeChunk(chunk)));
+        }
+        return ids;
+    }
+
+    /**
+     * 状态未变的采集结果只延长原记录的 valid_until（一个事务内一次批量 UPDATE），重复执行结果相同；
+     * extensions 中 id、requestTime 为原记录，validUntil 为本次采集时间
+     */
+    public void extendAll(List<TrafficSummary> extensions) {
+        if (extensions.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(extensions.size());
+        for (TrafficSummary extension : extensions) {
+            rows.add(new Object[]{Timestamp.valueOf(extension.getValidUntil()), extension.getId(),
+                    Timestamp.valueOf(extension.getRequestTime())});
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(EXTEND_OVERALL, rows));
+    }
+
+    private List<Long> writeChunk(List<CollectedTraffic> chunk) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_OVERALL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setOverall(ps, chunk.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != chunk.size()) {
+            throw new IllegalStateException("批量写入返回 " + keys.size() + " 个自增id，应为 " + chunk.size());
+        }
+        List<Long> ids = new ArrayList<>(chunk.size());
+        List<Object[]> sections = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            long overallId = ((Number) keys.get(i).values().iterator().next()).longValue();
+            ids.add(overallId);
+            sections.addAll(sectionRows(chunk.get(i), overallId));
+        }
+        if (!sections.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SECTION, sections);
+        }
+        return ids;
+    }
+
+    private static void setOverall(PreparedStatement ps, CollectedTraffic traffic) throws SQLException {
+        RoadTrafficReport report = traffic.report();
+        RoadTrafficReport.Evaluation evaluation = report.evaluation();
+        Timestamp time = Timestamp.valueOf(traffic.requestTime());
+        ps.setInt(1, traffic.roadId());
+        ps.setTimestamp(2, time);
+        ps.setString(3, traffic.roadName());
+        ps.setString(4, traffic.city());
+        ps.setObject(5, report.status());
+        ps.setString(6, report.message());
+        ps.setString(7, report.description());
+        ps.setObject(8, evaluation != null ? evaluation.status() : null);
+        ps.setString(9, evaluation != null ? evaluation.statusDesc() : null);
+        ps.setTimestamp(10, time);
+    }
+
+    private static List<Object[]> sectionRows(CollectedTraffic traffic, long overallId) {
+        List<Object[]> rows = new ArrayList<>();
+        Timestamp time = Timestamp.valueOf(traffic.requestTime());
+        if (traffic.report().roadTraffic() == null) {
+            return rows;
+        }
+        for (RoadTrafficReport.RoadTraffic road : traffic.report().roadTraffic()) {
+            if (road.congestionSections() == null) {
+                continue;
+            }
+            for (RoadTrafficReport.Section section : road.congestionSections()) {
+                rows.add(new Object[]{overallId, traffic.roadId(), road.roadName(), section.sectionDesc(),
+                        section.status(), section.speed(), section.congestionDistance(),
+                        section.congestionTrend(), time});
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.carpool.collect;
+
+import com.example.carpool.ingest.TrafficIngestPoller;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 采集与写库之间的写缓冲：采集线程把结果放入有界的无锁队列后立即返回，
+ * 后台写库线程攒够 batch-size 条或每隔 flush-interval-ms 批量写入一次；写库失败（如数据库停顿）时按退避重试，
+ * 这批数据在写入前一直占用队列容量。队列满时按 overflow-policy 处理：
+ * BLOCK 阻塞采集线程，DROP_OLDEST 丢弃最早入队的数据，SPILL 追加到本地日志文件，
+ * 数据库恢复、队列清空后（以及下次启动时）重放日志
+ */
+@Component
+@ConditionalOnProperty(prefix = "traffic.collector", name = "enabled", havingValue = "true")
+public class TrafficWriteBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficWriteBuffer.class);
+
+    private static final String SPILL_FILE = "ingest-spill.log";
+
+    // 重放进度文件后缀，记录对应重放文件已写入的行数
+    private static final String PROGRESS_SUFFIX = ".progress";
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum OverflowPolicy {
+        BLOCK, DROP_OLDEST, SPILL
+    }
+
+    @Autowired
+    private TrafficReportWriter trafficReportWriter;
+
+    @Autowired
+    private TrafficIngestPoller trafficIngestPoller;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 队列容量（含正在写库的一批）
+    @Value("${traffic.collector.buffer.capacity:10000}")
+    private int capacity;
+
+    // 每批写入的道路数，与写库事务大小一致，重试时不会重复写入已提交的部分
+    @Value("${traffic.collector.write-batch-size:500}")
+    private int batchSize;
+
+    @Value("${traffic.collector.buffer.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${traffic.collector.buffer.overflow-policy:SPILL}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${traffic.collector.buffer.spill-dir:${user.home}/carpool-collector-spill}")
+    private Path spillDir;
+
+    // 只在路况变化时写入新记录，未变化时延长上一条记录的 valid_until
+    @Value("${traffic.collector.change-only:true}")
+    private boolean changeOnly;
+
+    // 采集间隔，相隔两个间隔以上的采集结果不延长上一条记录
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    private TrafficChangeTracker changeTracker;
+
+    private final Queue<CollectedTraffic> queue = new ConcurrentLinkedQueue<>();
+
+    // 队列中等待写入的条数
+    private final AtomicInteger depth = new AtomicInteger();
+
+    // 剩余容量：入队时取得，写库成功（或丢弃）后归还
+    private Semaphore slots;
+
+    private final Object spillLock = new Object();
+
+    private BufferedWriter spillWriter;
+
+    private volatile boolean spillPending;
+
+    // 正在写库的一批中最早的采集时间，在从队列取出之前设置，写完后清空
+    private volatile LocalDateTime flushingSince;
+
+    // 溢出日志中最早的采集时间；启动时已有溢出日志则无从得知，取 LocalDateTime.MIN；全部重放完成后清空
+    private volatile LocalDateTime spilledSince;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private Counter droppedCounter;
+
+    private Counter spilledCounter;
+
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() throws IOException {
+        slots = new Semaphore(capacity);
+        changeTracker = new TrafficChangeTracker(changeOnly, Duration.ofMillis(collectIntervalMillis));
+        Files.createDirectories(spillDir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "ingest-spill*")) {
+            spillPending = files.iterator().hasNext();
+        }
+        spilledSince = spillPending ? LocalDateTime.MIN : null;
+
+        Gauge.builder("traffic.collector.buffer.depth", depth, AtomicInteger::get).register(meterRegistry);
+        droppedCounter = Counter.builder("traffic.collector.buffer.dropped").register(meterRegistry);
+        spilledCounter = Counter.builder("traffic.collector.buffer.spilled").register(meterRegistry);
+        flushTimer = Timer.builder("traffic.collector.buffer.flush")
+                .description("Latency of one write-behind batch")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = Thread.ofPlatform().name("traffic-write-behind").daemon().start(this::runFlusher);
+    }
+
+    /**
+     * 放入一条采集结果；只有 BLOCK 策略在队列满时会阻塞
+     */
+    public void offer(CollectedTraffic traffic) throws InterruptedException {
+        if (!slots.tryAcquire()) {
+            switch (overflowPolicy) {
+                case BLOCK -> slots.acquire();
+                case DROP_OLDEST -> {
+                    // 复用被丢弃数据的容量；队列里只剩正在写库的一批时丢弃新数据
+                    if (queue.poll() == null) {
+                        droppedCounter.increment();
+                        return;
+                    }
+                    depth.decrementAndGet();
+                    droppedCounter.increment();
+                }
+                case SPILL -> {
+                    spill(List.of(traffic));
+                    return;
+                }
+            }
+        }
+        queue.add(traffic);
+        if (depth.incrementAndGet() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * 队列中等待写入的条数
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * 尚未写入数据库的采集结果（队列、正在写库的一批、溢出日志）中最早的采集时间，全部已写入时返回 null；
+     * 早于它的采集结果（包括延续的 valid_until）都已写入数据库
+     */
+    public LocalDateTime getPendingSince() {
+        CollectedTraffic head = queue.peek();
+        return earliest(earliest(flushingSince, spilledSince), head != null ? head.requestTime() : null);
+    }
+
+    /**
+     * 停止时写完队列中的数据，数据库不可用时写入溢出日志，下次启动重放
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        List<CollectedTraffic> remaining = new ArrayList<>();
+        drain(remaining, Integer.MAX_VALUE);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        synchronized (spillLock) {
+            closeSpillWriter();
+        }
+    }
+
+    private void runFlusher() {
+        List<CollectedTraffic> batch = new ArrayList<>(batchSize);
+        while (running || depth.get() > 0) {
+            if (running && depth.get() < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+            }
+            CollectedTraffic head = queue.peek();
+            flushingSince = head != null ? head.requestTime() : null;
+            drain(batch, batchSize);
+            if (batch.isEmpty()) {
+                flushingSince = null;
+                if (running && spillPending) {
+                    replaySpilled();
+                }
+                continue;
+            }
+            if (!flushWithRetry(batch)) {
+                // 停止时数据库仍不可用
+                spill(batch);
+            }
+            flushingSince = null;
+            slots.release(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void drain(List<CollectedTraffic> batch, int max) {
+        CollectedTraffic traffic;
+        while (batch.size() < max && (traffic = queue.poll()) != null) {
+            depth.decrementAndGet();
+            batch.add(traffic);
+        }
+    }
+
+    /**
+     * 写入一批，失败时按指数退避重试直到成功；停止后不再重试，返回 false
+     */
+    private boolean flushWithRetry(List<CollectedTraffic> batch) {
+        long backoff = 1000;
+        while (true) {
+            try {
+                persist(batch);
+                return true;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return false;
+                }
+                log.warn("写缓冲写库失败，{} ms 后重试（队列中 {} 条）: {}", backoff, depth.get(), e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * 写入一批（不超过一个写库事务的大小）：与道路上一条记录相同的只延长其 valid_until（可重复执行），
+     * 其余写入新记录；成功后再更新各道路的最近状态，新记录由增量同步分发，延续的采集结果直接分发给监听器
+     */
+    private void persist(List<CollectedTraffic> batch) {
+        TrafficChangeTracker.Split split = changeTracker.split(batch);
+        flushTimer.record(() -> {
+            trafficReportWriter.extendAll(split.extensions());
+            changeTracker.commit(split, trafficReportWriter.writeAll(split.inserts()));
+        });
+        trafficIngestPoller.publishExtended(split.extensions());
+        try {
+            trafficIngestPoller.poll();
+        } catch (RuntimeException e) {
+            // 已写入的数据不能重试，新记录留给定时轮询
+            log.warn("写库后触发增量同步失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 追加到溢出日志，每行一条 JSON
+     */
+    private void spill(List<CollectedTraffic> batch) {
+        synchronized (spillLock) {
+            try {
+                if (spillWriter == null) {
+                    spillWriter = Files.newBufferedWriter(spillDir.resolve(SPILL_FILE), StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                for (CollectedTraffic traffic : batch) {
+                    spillWriter.write(objectMapper.writeValueAsString(traffic));
+                    spillWriter.newLine();
+                }
+                spillWriter.flush();
+                for (CollectedTraffic traffic : batch) {
+                    spilledSince = earliest(spilledSince, traffic.requestTime());
+                }
+                spillPending = true;
+                spilledCounter.increment(batch.size());
+            } catch (IOException e) {
+                droppedCounter.increment(batch.size());
+                log.error("写入溢出日志失败，丢弃 {} 条采集结果", batch.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 轮换当前溢出日志后逐个重放；某批失败时停止，下次从记录的进度继续
+     */
+    private void replaySpilled() {
+        try {
+            synchronized (spillLock) {
+                closeSpillWriter();
+                Path current = spillDir.resolve(SPILL_FILE);
+                if (Files.exists(current)) {
+                    Files.move(current, spillDir.resolve("ingest-spill-" + System.currentTimeMillis() + ".replay"));
+                }
+                spillPending = false;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "ingest-spill-*.replay")) {
+                for (Path file : files) {
+                    replay(file);
+                    if (spillPending) {
+                        break;
+                    }
+                }
+            }
+            synchronized (spillLock) {
+                if (!spillPending) {
+                    spilledSince = null;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            spillPending = true;
+            log.error("重放溢出日志失败", e);
+        }
+    }
+
+    /**
+     * 流式读取重放文件，每 batch-size 行写入一批，内存中只保留一批；
+     * 每批写入后把已完成的行数记到 {文件名}.progress，失败时保留文件，下次从该行继续
+     */
+    private void replay(Path file) throws IOException {
+        Path progress = file.resolveSibling(file.getFileName() + PROGRESS_SUFFIX);
+        long done = Files.exists(progress) ? Long.parseLong(Files.readString(progress).trim()) : 0;
+        long lineNo = 0;
+        long replayed = 0;
+        List<CollectedTraffic> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (lineNo <= done || line.isBlank()) {
+                    continue;
+                }
+                batch.add(objectMapper.readValue(line, CollectedTraffic.class));
+                if (batch.size() == batchSize) {
+                    if (!replayBatch(batch, progress, lineNo)) {
+                        return;
+                    }
+                    replayed += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            if (!replayBatch(batch, progress, lineNo)) {
+                return;
+            }
+            replayed += batch.size();
+        }
+        Files.delete(file);
+        Files.deleteIfExists(progress);
+        log.info("已重放溢出日志 {} 条", replayed);
+    }
+
+    /**
+     * 写入重放的一批并记录进度；写库失败时返回 false，留待下次重放
+     */
+    private boolean replayBatch(List<CollectedTraffic> batch, Path progress, long lineNo) throws IOException {
+        try {
+            persist(batch);
+        } catch (RuntimeException e) {
+            spillPending = true;
+            log.warn("重放溢出日志时写库失败，稍后从 {} 记录的位置继续: {}", progress.getFileName(), e.getMessage());
+            return false;
+        }
+        Path tmp = progress.resolveSibling(progress.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(lineNo));
+        Files.move(tmp, progress, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        return a == null || (b != null && b.isBefore(a)) ? b : a;
+    }
+
+    private void closeSpillWriter() {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            log.warn("关闭溢出日志失败", e);
+        }
+        spillWriter = null;
+    }
+}
@@ -1,19 +1,38 @@
 package com.example.carpool.controller;
 
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.CursorPage;
+import com.example.carpool.dto.HistoricalBatchRequest;
+import com.example.carpool.dto.HistoricalBatchResponse;
+import com.example.carpool.dto.SpeedPercentilesResponse;
+import com.example.carpool.dto.TrafficColumns;
 import com.example.carpool.dto.TrafficResponse;
 import com.example.carpool.dto.TrafficStatsResponse;
+import com.example.carpool.ingest.TrafficIngestPoller;
+import com.example.carpool.service.HistoricalBatchService;
+import com.example.carpool.service.TrafficExportService;
 import com.example.carpool.service.TrafficService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/traffic")
@@ -23,6 +42,19 @@ public class TrafficController {
     @Autowired
     private TrafficService trafficService;
 
+    @Autowired
+    private TrafficExportService trafficExportService;
+
+    @Autowired
+    private HistoricalBatchService historicalBatchService;
+
+    @Autowired
+    private TrafficIngestPoller trafficIngestPoller;
+
+    // CBOR 响应中的时间按与JSON相同的时区转换为 epoch 秒
+    @Value("${spring.jackson.time-zone:GMT+8}")
+    private ZoneId responseZone;
+
     /**
      * 获取所有道路的最新路况信息
      */
@@ -31,14 +63,37 @@ public class TrafficController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "requestTime") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir) {
+            @RequestParam(defaultValue = "desc") String sortDir,
+            WebRequest request) {
+
+        if (request.checkNotModified(latestTrafficTag("json"), trafficIngestPoller.getLastIngestTime())) {
+            return notModified();
+        }
+        return revalidated(findLatestTraffic(page, size, sortBy, sortDir));
+    }
+
+    /**
+     * 获取所有道路的最新路况信息（列式CBOR，Accept: application/cbor）
+     */
+    @GetMapping(produces = MediaType.APPLICATION_CBOR_VALUE)
+    public ResponseEntity<TrafficColumns> getAllTrafficColumns(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "requestTime") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            WebRequest request) {
+
+        if (request.checkNotModified(latestTrafficTag("cbor"), trafficIngestPoller.getLastIngestTime())) {
+            return notModified();
+        }
+        return revalidated(toColumns(findLatestTraffic(page, size, sortBy, sortDir)));
+    }
 
+    private Page<TrafficResponse> findLatestTraffic(int page, int size, String sortBy, String sortDir) {
         Sort sort = sortDir.equalsIgnoreCase("desc") ?
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
-
-        Page<TrafficResponse> traffic = trafficService.getAllLatestTraffic(pageable);
-        return ResponseEntity.ok(traffic);
+        return trafficService.getAllLatestTraffic(pageable);
     }
 
     /**
@@ -70,6 +125,33 @@ public class TrafficController {
         return ResponseEntity.ok(traffic);
     }
 
+    /**
+     * 游标分页获取城市路况（用于无限滚动）
+     */
+    @GetMapping("/city/{city}/scroll")
+    public ResponseEntity<CursorPage<TrafficResponse>> scrollTrafficByCity(
+            @PathVariable String city,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        CursorPage<TrafficResponse> traffic = trafficService.scrollTrafficByCity(city, cursor, size);
+        return ResponseEntity.ok(traffic);
+    }
+
+    /**
+     * 游标分页获取指定道路路况
+     */
+    @GetMapping("/road/{roadName}/city/{city}/scroll")
+    public ResponseEntity<CursorPage<TrafficResponse>> scrollTrafficByRoadAndCity(
+            @PathVariable String roadName,
+            @PathVariable String city,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+
+        CursorPage<TrafficResponse> traffic = trafficService.scrollTrafficByRoadAndCity(roadName, city, cursor, size);
+        return ResponseEntity.ok(traffic);
+    }
+
     /**
      * 根据拥堵状态查询路况
      */
@@ -84,18 +166,39 @@ public class TrafficController {
      */
     @GetMapping("/search")
     public ResponseEntity<List<TrafficResponse>> searchTraffic(
-            @RequestParam String keyword) {
-        List<TrafficResponse> traffic = trafficService.searchTraffic(keyword);
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "20") int limit) {
+        List<TrafficResponse> traffic = trafficService.searchTraffic(keyword, limit);
         return ResponseEntity.ok(traffic);
     }
 
     /**
-     * 获取路况统计信息
+     * 获取路况统计信息，window 为统计窗口（如 30m、1h、6h、24h），city 为空时统计所有城市
      */
     @GetMapping("/stats")
-    public ResponseEntity<TrafficStatsResponse> getTrafficStats() {
-        TrafficStatsResponse stats = trafficService.getTrafficStats();
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<TrafficStatsResponse> getTrafficStats(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(required = false) String city,
+            WebRequest request) {
+        if (request.checkNotModified(statsTag())) {
+            return notModified();
+        }
+        TrafficStatsResponse stats = trafficService.getTrafficStats(parseWindowMinutes(window), city);
+        return revalidated(stats);
+    }
+
+    /**
+     * 按城市获取路况统计信息
+     */
+    @GetMapping("/stats/cities")
+    public ResponseEntity<Map<String, TrafficStatsResponse>> getTrafficStatsByCity(
+            @RequestParam(defaultValue = "24h") String window,
+            WebRequest request) {
+        if (request.checkNotModified(statsTag())) {
+            return notModified();
+        }
+        Map<String, TrafficStatsResponse> stats = trafficService.getTrafficStatsByCity(parseWindowMinutes(window));
+        return revalidated(stats);
     }
 
     /**
@@ -113,21 +216,28 @@ public class TrafficController {
     @GetMapping("/overview")
     public ResponseEntity<Page<TrafficResponse>> getTrafficOverview(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "12") int size) {
+            @RequestParam(defaultValue = "12") int size,
+            WebRequest request) {
 
+        if (request.checkNotModified(latestTrafficTag("json"), trafficIngestPoller.getLastIngestTime())) {
+            return notModified();
+        }
         Pageable pageable = PageRequest.of(page, size, Sort.by("requestTime").descending());
         Page<TrafficResponse> traffic = trafficService.getAllLatestTraffic(pageable);
-        return ResponseEntity.ok(traffic);
+        return revalidated(traffic);
     }
 
     /**
      * 获取热门道路路况
      */
     @GetMapping("/popular")
-    public ResponseEntity<List<TrafficResponse>> getPopularTraffic() {
+    public ResponseEntity<List<TrafficResponse>> getPopularTraffic(WebRequest request) {
+        if (request.checkNotModified(latestTrafficTag("json"), trafficIngestPoller.getLastIngestTime())) {
+            return notModified();
+        }
         Pageable pageable = PageRequest.of(0, 10, Sort.by("requestTime").descending());
         Page<TrafficResponse> traffic = trafficService.getAllLatestTraffic(pageable);
-        return ResponseEntity.ok(traffic.getContent());
+        return revalidated(traffic.getContent());
     }
 
     // ========== 历史数据查询相关接口 ==========
@@ -141,19 +251,113 @@ public class TrafficController {
             @RequestParam String city,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Integer resolutionMinutes,
+            @RequestParam(required = false) Integer maxPoints,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "100") int size) {
 
+        return ResponseEntity.ok(findHistoricalTraffic(
+                roadName, city, startTime, endTime, resolutionMinutes, maxPoints, page, size));
+    }
+
+    /**
+     * 获取历史路况数据（列式CBOR，Accept: application/cbor），参数与JSON版本相同
+     */
+    @GetMapping(value = "/historical", produces = MediaType.APPLICATION_CBOR_VALUE)
+    public ResponseEntity<TrafficColumns> getHistoricalTrafficColumns(
+            @RequestParam String roadName,
+            @RequestParam String city,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Integer resolutionMinutes,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+
+        return ResponseEntity.ok(toColumns(findHistoricalTraffic(
+                roadName, city, startTime, endTime, resolutionMinutes, maxPoints, page, size)));
+    }
+
+    /**
+     * JSON 与 CBOR 两种表示共用的历史数据查询，错误处理一致，同一请求的状态码与 Accept 无关
+     */
+    private Page<TrafficResponse> findHistoricalTraffic(String roadName, String city,
+                                                        LocalDateTime startTime, LocalDateTime endTime,
+                                                        Integer resolutionMinutes, Integer maxPoints,
+                                                        int page, int size) {
         try {
             Pageable pageable = PageRequest.of(page, size, Sort.by("requestTime").ascending());
-            Page<TrafficResponse> historicalData = trafficService.getHistoricalTraffic(
-                    roadName, city, startTime, endTime, pageable);
-            return ResponseEntity.ok(historicalData);
+            return trafficService.getHistoricalTraffic(
+                    roadName, city, startTime, endTime, resolutionMinutes, maxPoints, pageable);
         } catch (IllegalArgumentException e) {
             throw new RuntimeException(e.getMessage()); // 会被全局异常处理器处理
         }
     }
 
+    /**
+     * 多条道路历史数据对比：一次请求并行查询多条道路在同一时间范围内的历史数据
+     */
+    @PostMapping("/historical/batch")
+    public ResponseEntity<HistoricalBatchResponse> getHistoricalTrafficBatch(@RequestBody HistoricalBatchRequest request) {
+        return ResponseEntity.ok(historicalBatchService.getHistoricalTraffic(request));
+    }
+
+    /**
+     * 游标分页获取历史路况数据
+     */
+    @GetMapping("/historical/scroll")
+    public ResponseEntity<CursorPage<TrafficResponse>> scrollHistoricalTraffic(
+            @RequestParam String roadName,
+            @RequestParam String city,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size) {
+
+        CursorPage<TrafficResponse> historicalData = trafficService.scrollHistoricalTraffic(
+                roadName, city, startTime, endTime, cursor, size);
+        return ResponseEntity.ok(historicalData);
+    }
+
+    /**
+     * 流式导出历史路况数据（NDJSON或CSV），不分页也不限制条数
+     */
+    @GetMapping("/historical/export")
+    public ResponseEntity<StreamingResponseBody> exportHistoricalTraffic(
+            @RequestParam String roadName,
+            @RequestParam String city,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        TrafficExportService.Format exportFormat = TrafficExportService.Format.parse(format);
+        RoadDictionary.Road road = trafficExportService.validate(roadName, city, startTime, endTime);
+
+        MediaType contentType = exportFormat == TrafficExportService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+        String filename = "traffic-export." + exportFormat.name().toLowerCase();
+        StreamingResponseBody body = out -> trafficExportService.export(
+                road, startTime, endTime, exportFormat, out);
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    /**
+     * 获取指定道路在时间范围内的拥堵路段速度分位数
+     */
+    @GetMapping("/roads/{roadName}/speed-percentiles")
+    public ResponseEntity<SpeedPercentilesResponse> getSpeedPercentiles(
+            @PathVariable String roadName,
+            @RequestParam String city,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(trafficService.getSpeedPercentiles(roadName, city, startTime, endTime));
+    }
+
     /**
      * 获取城市道路列表
      */
@@ -175,4 +379,58 @@ public class TrafficController {
         List<String> cities = trafficService.getSupportedCities();
         return ResponseEntity.ok(cities);
     }
+
+    /**
+     * 最新路况的版本标识：内存快照只随增量同步（新记录或状态未变的延续）变化，
+     * 已同步到的最大记录id加上延续批次数即可代表版本；同一数据的不同表示（JSON/CBOR）使用不同的标识
+     */
+    private String latestTrafficTag(String representation) {
+        return "\"traffic-" + trafficIngestPoller.getLastSeenId() + "." + trafficIngestPoller.getExtendedBatches()
+                + "-" + representation + "\"";
+    }
+
+    /**
+     * 统计数据的版本标识：滑动窗口随新记录和延续批次变化，并按分钟推进，没有新数据时每分钟也会变化
+     */
+    private String statsTag() {
+        long minute = System.currentTimeMillis() / 60_000;
+        return "\"stats-" + trafficIngestPoller.getLastSeenId() + "." + trafficIngestPoller.getExtendedBatches()
+                + "-" + minute + "\"";
+    }
+
+    /**
+     * 条件请求命中时的响应，状态码和 ETag/Last-Modified 已由 checkNotModified 写入
+     */
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+    }
+
+    /**
+     * 带版本标识的响应要求浏览器每次都带条件请求重新验证，避免按 Last-Modified 启发式缓存而读到旧数据
+     */
+    private static <T> ResponseEntity<T> revalidated(T body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+
+    private TrafficColumns toColumns(Page<TrafficResponse> page) {
+        return TrafficColumns.of(page.getContent(), page.getTotalElements(), responseZone);
+    }
+
+    /**
+     * 解析统计窗口长度，支持 m（分钟）和 h（小时）后缀，不带后缀时按分钟处理
+     */
+    private static int parseWindowMinutes(String window) {
+        String value = window.trim().toLowerCase();
+        try {
+            if (value.endsWith("h")) {
+                return Integer.parseInt(value.substring(0, value.length() - 1)) * 60;
+            }
+            if (value.endsWith("m")) {
+                return Integer.parseInt(value.substring(0, value.length() - 1));
+            }
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的统计窗口: " + window);
+        }
+    }
 }
\ No newline at end of file
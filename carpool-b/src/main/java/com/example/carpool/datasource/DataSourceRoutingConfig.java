@@ -0,0 +1,67 @@
+package com.example.carpool.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * 配置了 traffic.datasource.replica.url 时启用读写分离：
+ * 主库连接池沿用 spring.datasource.*，从库连接池使用 traffic.datasource.replica.*，
+ * 对外只暴露一个路由数据源，JPA、JdbcTemplate 和事务管理器都使用它。
+ * 未配置从库时不创建任何 bean，仍由 Spring Boot 自动配置单一数据源
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "traffic.datasource.replica", name = "url")
+public class DataSourceRoutingConfig {
+
+    // 两个连接池不参与自动注入，只通过路由数据源使用，随容器关闭
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryPool(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("traffic.datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("traffic.datasource.replica.hikari")
+    public HikariDataSource replicaPool() {
+        return replicaDataSourceProperties().initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Value("${traffic.datasource.replica.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+            @Value("${traffic.datasource.replica.max-lag-seconds:30}") long maxLagSeconds,
+            @Value("${traffic.datasource.replica.pin-seconds:5}") long pinSeconds) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaPool(), lagQuery, maxLagSeconds, pinSeconds);
+        monitor.check();
+        return monitor;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReplicaLagMonitor replicaLagMonitor) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(
+                primaryPool(properties), replicaPool(), replicaLagMonitor);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaLagMonitor replicaLagMonitor) {
+        return new ReadYourWritesFilter(replicaLagMonitor);
+    }
+}
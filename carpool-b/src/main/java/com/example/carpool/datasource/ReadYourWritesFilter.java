@@ -0,0 +1,79 @@
+package com.example.carpool.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * 读己之写：写请求（非 GET/HEAD/OPTIONS，只读的 POST 查询接口除外）整个请求固定到主库，并下发一个记录截止时间的 Cookie，
+ * 截止时间之前该客户端的读请求也固定到主库，避免从库复制延迟导致读不到刚写入的数据
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String PIN_COOKIE = "carpool-primary-until";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    // 请求体较大、用 POST 提交的只读查询接口（相对于 context path）
+    private static final Set<String> READ_ONLY_POSTS = Set.of("/traffic/historical/batch");
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReadYourWritesFilter(ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean write = !READ_METHODS.contains(request.getMethod()) && !isReadOnlyPost(request);
+        if (write) {
+            // 在响应提交之前下发
+            long window = replicaLagMonitor.pinWindowMillis();
+            Cookie cookie = new Cookie(PIN_COOKIE, Long.toString(System.currentTimeMillis() + window));
+            cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (window + 999) / 1000));
+            response.addCookie(cookie);
+        }
+
+        if (!write && !pinnedByCookie(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadWriteRoutingDataSource.pinToPrimary();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingDataSource.clearPin();
+        }
+    }
+
+    private static boolean isReadOnlyPost(HttpServletRequest request) {
+        return "POST".equals(request.getMethod())
+                && READ_ONLY_POSTS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    private static boolean pinnedByCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (PIN_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.carpool.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 定时检查从库是否可用及复制延迟（秒）。
+ * lagQuery 默认为 MySQL 的 SHOW REPLICA STATUS，读取 Seconds_Behind_Source（旧版本为 Seconds_Behind_Master）列，
+ * 其他查询取第一列；查询没有结果（不是复制从库）时视为没有延迟，结果为 NULL（复制已停止）时视为不可用；
+ * lagQuery 为空时只检查连接是否有效
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private static final String[] LAG_COLUMNS = {"Seconds_Behind_Source", "Seconds_Behind_Master"};
+
+    private final DataSource replica;
+
+    private final String lagQuery;
+
+    private final long maxLagSeconds;
+
+    private final long pinSeconds;
+
+    private volatile boolean replicaUsable;
+
+    private volatile long lagSeconds;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, long maxLagSeconds, long pinSeconds) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+        this.pinSeconds = pinSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${traffic.datasource.replica.check-interval-ms:5000}")
+    public void check() {
+        boolean usable;
+        Long lag;
+        try (Connection connection = replica.getConnection()) {
+            lag = lagQuery == null || lagQuery.isBlank()
+                    ? (connection.isValid(2) ? Long.valueOf(0L) : null)
+                    : queryLag(connection);
+            usable = lag != null && lag <= maxLagSeconds;
+        } catch (SQLException e) {
+            lag = null;
+            usable = false;
+            log.debug("从库检查失败", e);
+        }
+
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("从库恢复可用，复制延迟 {} 秒", lag);
+            } else {
+                log.warn("从库不可用或复制延迟超过 {} 秒（当前 {}），只读查询改走主库", maxLagSeconds, lag);
+            }
+        }
+        lagSeconds = lag != null ? lag : maxLagSeconds;
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public long getLagSeconds() {
+        return lagSeconds;
+    }
+
+    /**
+     * 写入后需要固定到主库的时长：最少 pinSeconds，再加上当前复制延迟
+     */
+    public long pinWindowMillis() {
+        return (pinSeconds + lagSeconds) * 1000;
+    }
+
+    private Long queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return 0L;
+            }
+            Object value = rs.getObject(lagColumn(rs.getMetaData()));
+            return value != null ? ((Number) value).longValue() : null;
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            for (String name : LAG_COLUMNS) {
+                if (name.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    return i;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.carpool.dto;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，不包含总数，next 为空表示没有更多数据
+ */
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private String next;
+
+    // 默认构造函数
+    public CursorPage() {}
+
+    // 带参构造函数
+    public CursorPage(List<T> content, int size, String next) {
+        this.content = content;
+        this.size = size;
+        this.next = next;
+    }
+
+    // Getters and Setters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public boolean isHasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.carpool.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 多条道路历史数据对比请求：同一时间范围（及分辨率、降采样点数）下查询多条道路
+ */
+public class HistoricalBatchRequest {
+    private List<RoadRef> roads;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Integer resolutionMinutes;
+    private Integer maxPoints;
+
+    // 默认构造函数
+    public HistoricalBatchRequest() {}
+
+    // Getters and Setters
+    public List<RoadRef> getRoads() {
+        return roads;
+    }
+
+    public void setRoads(List<RoadRef> roads) {
+        this.roads = roads;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public Integer getResolutionMinutes() {
+        return resolutionMinutes;
+    }
+
+    public void setResolutionMinutes(Integer resolutionMinutes) {
+        this.resolutionMinutes = resolutionMinutes;
+    }
+
+    public Integer getMaxPoints() {
+        return maxPoints;
+    }
+
+    public void setMaxPoints(Integer maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * 道路名称 + 城市
+     */
+    public static class RoadRef {
+        private String roadName;
+        private String city;
+
+        public RoadRef() {}
+
+        public RoadRef(String roadName, String city) {
+            this.roadName = roadName;
+            this.city = city;
+        }
+
+        public String getRoadName() {
+            return roadName;
+        }
+
+        public void setRoadName(String roadName) {
+            this.roadName = roadName;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+}
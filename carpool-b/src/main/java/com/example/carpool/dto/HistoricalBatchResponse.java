@@ -0,0 +1,130 @@
+package com.example.carpool.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 多条道路历史数据对比结果：series 与请求中的道路一一对应（顺序相同），
+ * 成功的序列都对齐到同一个时间网格上，点数相同、第 i 个点的请求时间相同（桶起点，按时间升序）。
+ * resolutionMinutes 为实际使用的网格步长；没有数据的时间桶 evaluationStatus 为空、sampleCount 为0
+ */
+public class HistoricalBatchResponse {
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime endTime;
+
+    // 网格步长（分钟）
+    private Integer resolutionMinutes;
+    private Integer maxPoints;
+    private List<Series> series;
+
+    // 默认构造函数
+    public HistoricalBatchResponse() {}
+
+    // 带参构造函数
+    public HistoricalBatchResponse(LocalDateTime startTime, LocalDateTime endTime,
+                                   Integer resolutionMinutes, Integer maxPoints, List<Series> series) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.resolutionMinutes = resolutionMinutes;
+        this.maxPoints = maxPoints;
+        this.series = series;
+    }
+
+    // Getters and Setters
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public Integer getResolutionMinutes() {
+        return resolutionMinutes;
+    }
+
+    public void setResolutionMinutes(Integer resolutionMinutes) {
+        this.resolutionMinutes = resolutionMinutes;
+    }
+
+    public Integer getMaxPoints() {
+        return maxPoints;
+    }
+
+    public void setMaxPoints(Integer maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    public List<Series> getSeries() {
+        return series;
+    }
+
+    public void setSeries(List<Series> series) {
+        this.series = series;
+    }
+
+    /**
+     * 单条道路的历史序列；查询失败时 data 为空，error 为失败原因，不影响其他道路
+     */
+    public static class Series {
+        private String roadName;
+        private String city;
+        private List<TrafficResponse> data;
+        private String error;
+
+        public Series() {}
+
+        public Series(String roadName, String city, List<TrafficResponse> data, String error) {
+            this.roadName = roadName;
+            this.city = city;
+            this.data = data;
+            this.error = error;
+        }
+
+        public String getRoadName() {
+            return roadName;
+        }
+
+        public void setRoadName(String roadName) {
+            this.roadName = roadName;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+
+        public List<TrafficResponse> getData() {
+            return data;
+        }
+
+        public void setData(List<TrafficResponse> data) {
+            this.data = data;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
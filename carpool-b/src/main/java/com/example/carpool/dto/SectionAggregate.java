@@ -0,0 +1,78 @@
+package com.example.carpool.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 单条路况记录对应的拥堵路段聚合结果（按 overall_id 分组）
+ */
+public class SectionAggregate {
+    private Long overallId;
+    private Double avgSpeed;
+    private Long totalDistance;
+    private Long speedSampleCount;
+    private BigDecimal minSpeed;
+    private BigDecimal maxSpeed;
+
+    // 默认构造函数
+    public SectionAggregate() {}
+
+    // 带参构造函数（供 JPQL 构造表达式使用）
+    public SectionAggregate(Long overallId, Double avgSpeed, Long totalDistance,
+                            Long speedSampleCount, BigDecimal minSpeed, BigDecimal maxSpeed) {
+        this.overallId = overallId;
+        this.avgSpeed = avgSpeed;
+        this.totalDistance = totalDistance;
+        this.speedSampleCount = speedSampleCount;
+        this.minSpeed = minSpeed;
+        this.maxSpeed = maxSpeed;
+    }
+
+    // Getters and Setters
+    public Long getOverallId() {
+        return overallId;
+    }
+
+    public void setOverallId(Long overallId) {
+        this.overallId = overallId;
+    }
+
+    public Double getAvgSpeed() {
+        return avgSpeed;
+    }
+
+    public void setAvgSpeed(Double avgSpeed) {
+        this.avgSpeed = avgSpeed;
+    }
+
+    public Long getTotalDistance() {
+        return totalDistance;
+    }
+
+    public void setTotalDistance(Long totalDistance) {
+        this.totalDistance = totalDistance;
+    }
+
+    public Long getSpeedSampleCount() {
+        return speedSampleCount;
+    }
+
+    public void setSpeedSampleCount(Long speedSampleCount) {
+        this.speedSampleCount = speedSampleCount;
+    }
+
+    public BigDecimal getMinSpeed() {
+        return minSpeed;
+    }
+
+    public void setMinSpeed(BigDecimal minSpeed) {
+        this.minSpeed = minSpeed;
+    }
+
+    public BigDecimal getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(BigDecimal maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.carpool.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * 路况列表的列式紧凑表示（用于 application/cbor 响应）：
+ * 每个字段一个数组，第 i 个元素属于第 i 条记录；道路和城市名称去重后按下标引用，
+ * 时间为 epoch 秒，状态为评价代码，不包含状态文字。缺失值：id/状态/拥堵距离/样本数为 -1，速度为 NaN。
+ * 未展开的记录列表附带 validUntil（epoch 秒，缺失为 -1），汇总和降采样结果附带样本数、速度范围、状态范围和状态分布，
+ * 这些列在没有任何记录带有时整列为 null。状态分布按 statuses 中的评价代码分列，statusHistogram[k][i] 为第 i 条记录中评价代码 statuses[k] 的次数
+ */
+public class TrafficColumns {
+    private int count;
+    private Long totalElements;
+    private List<String> roads;
+    private List<String> cities;
+    private int[] road;
+    private int[] city;
+    private long[] id;
+    private long[] requestTime;
+    private long[] validUntil;
+    private int[] evaluationStatus;
+    private float[] speed;
+    private int[] congestionDistance;
+    private long[] sampleCount;
+    private float[] minSpeed;
+    private float[] maxSpeed;
+    private int[] minEvaluationStatus;
+    private int[] maxEvaluationStatus;
+    private List<Integer> statuses;
+    private long[][] statusHistogram;
+
+    // 默认构造函数
+    public TrafficColumns() {}
+
+    /**
+     * 按列重排路况记录，requestTime 按 zone 转换为 epoch 秒
+     */
+    public static TrafficColumns of(List<TrafficResponse> rows, Long totalElements, ZoneId zone) {
+        int n = rows.size();
+        TrafficColumns columns = new TrafficColumns();
+        columns.count = n;
+        columns.totalElements = totalElements;
+        columns.roads = new ArrayList<>();
+        columns.cities = new ArrayList<>();
+        columns.road = new int[n];
+        columns.city = new int[n];
+        columns.id = new long[n];
+        columns.requestTime = new long[n];
+        columns.evaluationStatus = new int[n];
+        columns.speed = new float[n];
+        columns.congestionDistance = new int[n];
+
+        Map<String, Integer> roadIndex = new HashMap<>();
+        Map<String, Integer> cityIndex = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            TrafficResponse row = rows.get(i);
+            columns.road[i] = indexOf(row.getRoadName(), roadIndex, columns.roads);
+            columns.city[i] = indexOf(row.getCity(), cityIndex, columns.cities);
+            columns.id[i] = row.getId() != null ? row.getId() : -1;
+            LocalDateTime time = row.getRequestTime();
+            columns.requestTime[i] = time != null ? time.atZone(zone).toEpochSecond() : -1;
+            columns.evaluationStatus[i] = row.getEvaluationStatus() != null ? row.getEvaluationStatus() : -1;
+            columns.speed[i] = row.getSpeed() != null ? row.getSpeed().floatValue() : Float.NaN;
+            columns.congestionDistance[i] = row.getCongestionDistance() != null ? row.getCongestionDistance() : -1;
+        }
+        if (rows.stream().anyMatch(row -> row.getValidUntil() != null)) {
+            columns.validUntil = new long[n];
+            for (int i = 0; i < n; i++) {
+                LocalDateTime validUntil = rows.get(i).getValidUntil();
+                columns.validUntil[i] = validUntil != null ? validUntil.atZone(zone).toEpochSecond() : -1;
+            }
+        }
+        addSummaryColumns(columns, rows);
+        return columns;
+    }
+
+    /**
+     * 汇总和降采样结果的附加列，与 JSON 中的同名字段一致
+     */
+    private static void addSummaryColumns(TrafficColumns columns, List<TrafficResponse> rows) {
+        int n = rows.size();
+        SortedSet<Integer> statuses = new TreeSet<>();
+        boolean summarized = false;
+        for (TrafficResponse row : rows) {
+            summarized |= row.getSampleCount() != null || row.getMinSpeed() != null || row.getMaxSpeed() != null
+                    || row.getMinEvaluationStatus() != null || row.getMaxEvaluationStatus() != null;
+            if (row.getStatusHistogram() != null) {
+                statuses.addAll(row.getStatusHistogram().keySet());
+            }
+        }
+        if (summarized) {
+            columns.sampleCount = new long[n];
+            columns.minSpeed = new float[n];
+            columns.maxSpeed = new float[n];
+            columns.minEvaluationStatus = new int[n];
+            columns.maxEvaluationStatus = new int[n];
+            for (int i = 0; i < n; i++) {
+                TrafficResponse row = rows.get(i);
+                columns.sampleCount[i] = row.getSampleCount() != null ? row.getSampleCount() : -1;
+                columns.minSpeed[i] = row.getMinSpeed() != null ? row.getMinSpeed().floatValue() : Float.NaN;
+                columns.maxSpeed[i] = row.getMaxSpeed() != null ? row.getMaxSpeed().floatValue() : Float.NaN;
+                columns.minEvaluationStatus[i] = row.getMinEvaluationStatus() != null ? row.getMinEvaluationStatus() : -1;
+                columns.maxEvaluationStatus[i] = row.getMaxEvaluationStatus() != null ? row.getMaxEvaluationStatus() : -1;
+            }
+        }
+        if (!statuses.isEmpty()) {
+            columns.statuses = new ArrayList<>(statuses);
+            columns.statusHistogram = new long[statuses.size()][n];
+            for (int i = 0; i < n; i++) {
+                Map<Integer, Long> histogram = rows.get(i).getStatusHistogram();
+                for (int k = 0; k < columns.statuses.size(); k++) {
+                    Long count = histogram != null ? histogram.get(columns.statuses.get(k)) : null;
+                    columns.statusHistogram[k][i] = count != null ? count : histogram != null ? 0 : -1;
+                }
+            }
+        }
+    }
+
+    private static int indexOf(String value, Map<String, Integer> index, List<String> values) {
+        if (value == null) {
+            return -1;
+        }
+        return index.computeIfAbsent(value, v -> {
+            values.add(v);
+            return values.size() - 1;
+        });
+    }
+
+    // Getters and Setters
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+
+    public List<String> getRoads() {
+        return roads;
+    }
+
+    public void setRoads(List<String> roads) {
+        this.roads = roads;
+    }
+
+    public List<String> getCities() {
+        return cities;
+    }
+
+    public void setCities(List<String> cities) {
+        this.cities = cities;
+    }
+
+    public int[] getRoad() {
+        return road;
+    }
+
+    public void setRoad(int[] road) {
+        this.road = road;
+    }
+
+    public int[] getCity() {
+        return city;
+    }
+
+    public void setCity(int[] city) {
+        this.city = city;
+    }
+
+    public long[] getId() {
+        return id;
+    }
+
+    public void setId(long[] id) {
+        this.id = id;
+    }
+
+    public long[] getRequestTime() {
+        return requestTime;
+    }
+
+    public void setRequestTime(long[] requestTime) {
+        this.requestTime = requestTime;
+    }
+
+    public long[] getValidUntil() {
+        return validUntil;
+    }
+
+    public void setValidUntil(long[] validUntil) {
+        this.validUntil = validUntil;
+    }
+
+    public int[] getEvaluationStatus() {
+        return evaluationStatus;
+    }
+
+    public void setEvaluationStatus(int[] evaluationStatus) {
+        this.evaluationStatus = evaluationStatus;
+    }
+
+    public float[] getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(float[] speed) {
+        this.speed = speed;
+    }
+
+    public int[] getCongestionDistance() {
+        return congestionDistance;
+    }
+
+    public void setCongestionDistance(int[] congestionDistance) {
+        this.congestionDistance = congestionDistance;
+    }
+
+    public long[] getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(long[] sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public float[] getMinSpeed() {
+        return minSpeed;
+    }
+
+    public void setMinSpeed(float[] minSpeed) {
+        this.minSpeed = minSpeed;
+    }
+
+    public float[] getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(float[] maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    public int[] getMinEvaluationStatus() {
+        return minEvaluationStatus;
+    }
+
+    public void setMinEvaluationStatus(int[] minEvaluationStatus) {
+        this.minEvaluationStatus = minEvaluationStatus;
+    }
+
+    public int[] getMaxEvaluationStatus() {
+        return maxEvaluationStatus;
+    }
+
+    public void setMaxEvaluationStatus(int[] maxEvaluationStatus) {
+        this.maxEvaluationStatus = maxEvaluationStatus;
+    }
+
+    public List<Integer> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(List<Integer> statuses) {
+        this.statuses = statuses;
+    }
+
+    public long[][] getStatusHistogram() {
+        return statusHistogram;
+    }
+
+    public void setStatusHistogram(long[][] statusHistogram) {
+        this.statusHistogram = statusHistogram;
+    }
+}
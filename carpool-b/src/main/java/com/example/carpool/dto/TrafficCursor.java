@@ -0,0 +1,52 @@
+package com.example.carpool.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 游标分页位置：(requestTime, id)，对外编码为不透明字符串
+ */
+public class TrafficCursor {
+    private final LocalDateTime requestTime;
+    private final Long id;
+
+    public TrafficCursor(LocalDateTime requestTime, Long id) {
+        this.requestTime = requestTime;
+        this.id = id;
+    }
+
+    /**
+     * 编码为URL安全的字符串
+     */
+    public String encode() {
+        String raw = requestTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析客户端传回的游标，为空表示从第一页开始
+     */
+    public static TrafficCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new TrafficCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+    }
+
+    public LocalDateTime getRequestTime() {
+        return requestTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
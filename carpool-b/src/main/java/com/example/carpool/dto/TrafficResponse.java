@@ -2,6 +2,7 @@ package com.example.carpool.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 public class TrafficResponse {
     private Long id;
@@ -14,11 +15,23 @@ public class TrafficResponse {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime requestTime;
 
+    // 状态持续多次采集的记录最后一次采集的时间，只有未展开的记录列表才有
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime validUntil;
+
     // 从拥堵路段计算得出的字段
     private Double speed;
     private Integer congestionDistance;
     private String statusText;
 
+    // 时间桶汇总数据才有的字段
+    private Double minSpeed;
+    private Double maxSpeed;
+    private Long sampleCount;
+    private Map<Integer, Long> statusHistogram;
+    private Integer minEvaluationStatus;
+    private Integer maxEvaluationStatus;
+
     // 默认构造函数
     public TrafficResponse() {}
 
@@ -104,6 +117,14 @@ public class TrafficResponse {
         this.requestTime = requestTime;
     }
 
+    public LocalDateTime getValidUntil() {
+        return validUntil;
+    }
+
+    public void setValidUntil(LocalDateTime validUntil) {
+        this.validUntil = validUntil;
+    }
+
     public Double getSpeed() {
         return speed;
     }
@@ -127,4 +148,52 @@ public class TrafficResponse {
     public void setStatusText(String statusText) {
         this.statusText = statusText;
     }
-}
\ No newline at end of file
+
+    public Double getMinSpeed() {
+        return minSpeed;
+    }
+
+    public void setMinSpeed(Double minSpeed) {
+        this.minSpeed = minSpeed;
+    }
+
+    public Double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(Double maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public Map<Integer, Long> getStatusHistogram() {
+        return statusHistogram;
+    }
+
+    public void setStatusHistogram(Map<Integer, Long> statusHistogram) {
+        this.statusHistogram = statusHistogram;
+    }
+
+    public Integer getMinEvaluationStatus() {
+        return minEvaluationStatus;
+    }
+
+    public void setMinEvaluationStatus(Integer minEvaluationStatus) {
+        this.minEvaluationStatus = minEvaluationStatus;
+    }
+
+    public Integer getMaxEvaluationStatus() {
+        return maxEvaluationStatus;
+    }
+
+    public void setMaxEvaluationStatus(Integer maxEvaluationStatus) {
+        this.maxEvaluationStatus = maxEvaluationStatus;
+    }
+}
@@ -9,6 +9,8 @@ public class TrafficStatsResponse {
     private Long congestedRoads;
     private Long heavyRoads;
     private Map<String, Long> statusDistribution;
+    private Integer windowMinutes;
+    private String city;
 
     // 默认构造函数
     public TrafficStatsResponse() {}
@@ -70,4 +72,20 @@ public class TrafficStatsResponse {
     public void setStatusDistribution(Map<String, Long> statusDistribution) {
         this.statusDistribution = statusDistribution;
     }
+
+    public Integer getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    public void setWindowMinutes(Integer windowMinutes) {
+        this.windowMinutes = windowMinutes;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
 }
\ No newline at end of file
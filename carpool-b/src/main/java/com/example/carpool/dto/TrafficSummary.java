@@ -0,0 +1,137 @@
+package com.example.carpool.dto;
+
+import com.example.carpool.entity.RoadTrafficOverall;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路况列表使用的精简投影：只包含列表响应需要的列，不加载 description 等大字段，
+ * 也不进入持久化上下文（无脏检查）
+ */
+public class TrafficSummary {
+    private Long id;
+    private Integer roadId;
+    private String roadName;
+    private String city;
+    private Integer evaluationStatus;
+    private LocalDateTime requestTime;
+    private LocalDateTime validUntil;
+
+    // 默认构造函数
+    public TrafficSummary() {}
+
+    // 带参构造函数（供 JPQL 构造表达式使用）
+    public TrafficSummary(Long id, Integer roadId, String roadName, String city,
+                          Integer evaluationStatus, LocalDateTime requestTime) {
+        this.id = id;
+        this.roadId = roadId;
+        this.roadName = roadName;
+        this.city = city;
+        this.evaluationStatus = evaluationStatus;
+        this.requestTime = requestTime;
+    }
+
+    // 带参构造函数（含 valid_until）
+    public TrafficSummary(Long id, Integer roadId, String roadName, String city,
+                          Integer evaluationStatus, LocalDateTime requestTime, LocalDateTime validUntil) {
+        this(id, roadId, roadName, city, evaluationStatus, requestTime);
+        this.validUntil = validUntil;
+    }
+
+    /**
+     * 从完整的路况实体截取列表需要的字段（增量同步拿到的是完整实体）
+     */
+    public static TrafficSummary of(RoadTrafficOverall traffic) {
+        return new TrafficSummary(traffic.getId(), traffic.getRoadId(), traffic.getRoadName(),
+                traffic.getCity(), traffic.getEvaluationStatus(), traffic.getRequestTime(), traffic.getValidUntil());
+    }
+
+    /**
+     * 这条记录对应的各次采集时间：valid_until 为空时只有 request_time，
+     * 否则按采集间隔 interval 估算采集次数，在 request_time 与 valid_until 之间均匀取点（含两端，精确到秒）
+     */
+    public List<LocalDateTime> observationTimes(Duration interval) {
+        List<LocalDateTime> times = new ArrayList<>();
+        if (requestTime == null) {
+            return times;
+        }
+        times.add(requestTime);
+        if (validUntil == null || !validUntil.isAfter(requestTime)) {
+            return times;
+        }
+        Duration span = Duration.between(requestTime, validUntil);
+        long steps = Math.max(1, Math.round((double) span.toMillis() / interval.toMillis()));
+        for (long i = 1; i < steps; i++) {
+            times.add(requestTime.plus(span.multipliedBy(i).dividedBy(steps)).truncatedTo(ChronoUnit.SECONDS));
+        }
+        times.add(validUntil);
+        return times;
+    }
+
+    /**
+     * 同一记录在另一次采集时间的快照（展开区间时使用）
+     */
+    public TrafficSummary at(LocalDateTime observedAt) {
+        return new TrafficSummary(id, roadId, roadName, city, evaluationStatus, observedAt);
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getRoadId() {
+        return roadId;
+    }
+
+    public void setRoadId(Integer roadId) {
+        this.roadId = roadId;
+    }
+
+    public String getRoadName() {
+        return roadName;
+    }
+
+    public void setRoadName(String roadName) {
+        this.roadName = roadName;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public Integer getEvaluationStatus() {
+        return evaluationStatus;
+    }
+
+    public void setEvaluationStatus(Integer evaluationStatus) {
+        this.evaluationStatus = evaluationStatus;
+    }
+
+    public LocalDateTime getRequestTime() {
+        return requestTime;
+    }
+
+    public void setRequestTime(LocalDateTime requestTime) {
+        this.requestTime = requestTime;
+    }
+
+    public LocalDateTime getValidUntil() {
+        return validUntil;
+    }
+
+    public void setValidUntil(LocalDateTime validUntil) {
+        this.validUntil = validUntil;
+    }
+}
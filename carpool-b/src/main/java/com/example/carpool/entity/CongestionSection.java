@@ -16,6 +16,10 @@ public class CongestionSection {
     @Column(name = "overall_id", nullable = false)
     private Long overallId;
 
+    // 道路维度id（与所属路况记录一致）
+    @Column(name = "road_id")
+    private Integer roadId;
+
     @Column(name = "road_name", length = 100)
     private String roadName;
 
@@ -75,6 +79,14 @@ public class CongestionSection {
         this.overallId = overallId;
     }
 
+    public Integer getRoadId() {
+        return roadId;
+    }
+
+    public void setRoadId(Integer roadId) {
+        this.roadId = roadId;
+    }
+
     public String getRoadName() {
         return roadName;
     }
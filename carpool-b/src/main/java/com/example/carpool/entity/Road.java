@@ -0,0 +1,76 @@
+package com.example.carpool.entity;
+
+import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.LocalDateTime;
+
+/**
+ * 道路维度：道路名称 + 标准城市名称，路况事实表通过 road_id 引用
+ */
+@Entity
+@Table(name = "road")
+public class Road {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "road_name", nullable = false, length = 100)
+    private String roadName;
+
+    // 标准城市名称（去掉"市"/"自治区"等后缀）
+    @Column(name = "city", nullable = false, length = 50)
+    private String city;
+
+    @Column(name = "created_at", updatable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    // JPA生命周期回调
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // 默认构造函数
+    public Road() {}
+
+    // 带参构造函数
+    public Road(String roadName, String city) {
+        this.roadName = roadName;
+        this.city = city;
+    }
+
+    // Getters and Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getRoadName() {
+        return roadName;
+    }
+
+    public void setRoadName(String roadName) {
+        this.roadName = roadName;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -12,10 +12,19 @@ public class RoadTrafficOverall {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // 道路维度id（road.id），查询、分组和关联都使用该整数列
+    @Column(name = "road_id")
+    private Integer roadId;
+
     @Column(name = "request_time")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime requestTime;
 
+    // 状态不变时最后一次采集的时间，为空表示只采集一次
+    @Column(name = "valid_until")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime validUntil;
+
     @Column(name = "road_name", nullable = false, length = 100)
     private String roadName;
 
@@ -71,6 +80,14 @@ public class RoadTrafficOverall {
         this.id = id;
     }
 
+    public Integer getRoadId() {
+        return roadId;
+    }
+
+    public void setRoadId(Integer roadId) {
+        this.roadId = roadId;
+    }
+
     public LocalDateTime getRequestTime() {
         return requestTime;
     }
@@ -79,6 +96,14 @@ public class RoadTrafficOverall {
         this.requestTime = requestTime;
     }
 
+    public LocalDateTime getValidUntil() {
+        return validUntil;
+    }
+
+    public void setValidUntil(LocalDateTime validUntil) {
+        this.validUntil = validUntil;
+    }
+
     public String getRoadName() {
         return roadName;
     }
@@ -0,0 +1,52 @@
+package com.example.carpool.entity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 路况汇总的时间粒度
+ */
+public enum RollupGranularity {
+    FIVE_MINUTES(Duration.ofMinutes(5)),
+    HOUR(Duration.ofHours(1)),
+    DAY(Duration.ofDays(1));
+
+    private final Duration length;
+
+    RollupGranularity(Duration length) {
+        this.length = length;
+    }
+
+    public Duration getLength() {
+        return length;
+    }
+
+    /**
+     * 计算时间点所在时间桶的起始时间
+     */
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        switch (this) {
+            case FIVE_MINUTES:
+                LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+                return hour.plusMinutes(time.getMinute() / 5 * 5);
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            default:
+                return time.truncatedTo(ChronoUnit.DAYS);
+        }
+    }
+
+    /**
+     * 选取不超过目标分辨率的最粗粒度，目标分辨率小于最细粒度时返回null（应查询原始数据）
+     */
+    public static RollupGranularity coarsestWithin(Duration resolution) {
+        RollupGranularity chosen = null;
+        for (RollupGranularity granularity : values()) {
+            if (granularity.length.compareTo(resolution) <= 0) {
+                chosen = granularity;
+            }
+        }
+        return chosen;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.carpool.entity;
+
+import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "road_traffic_rollup")
+public class TrafficRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 20)
+    private RollupGranularity granularity;
+
+    @Column(name = "road_id", nullable = false)
+    private Integer roadId;
+
+    @Column(name = "bucket_start", nullable = false)
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime bucketStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    // 整体路况评价直方图（0:未知 1:畅通 2:缓行 3:拥堵 4:严重拥堵）
+    @Column(name = "status0_count", nullable = false)
+    private Long status0Count;
+
+    @Column(name = "status1_count", nullable = false)
+    private Long status1Count;
+
+    @Column(name = "status2_count", nullable = false)
+    private Long status2Count;
+
+    @Column(name = "status3_count", nullable = false)
+    private Long status3Count;
+
+    @Column(name = "status4_count", nullable = false)
+    private Long status4Count;
+
+    // 拥堵路段速度统计
+    @Column(name = "speed_sum")
+    private Double speedSum;
+
+    @Column(name = "speed_count", nullable = false)
+    private Long speedCount;
+
+    @Column(name = "min_speed")
+    private BigDecimal minSpeed;
+
+    @Column(name = "max_speed")
+    private BigDecimal maxSpeed;
+
+    // 拥堵距离累计（米）
+    @Column(name = "congestion_distance_sum", nullable = false)
+    private Long congestionDistanceSum;
+
+    @Column(name = "updated_at")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    // 默认构造函数
+    public TrafficRollup() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(RollupGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Integer getRoadId() {
+        return roadId;
+    }
+
+    public void setRoadId(Integer roadId) {
+        this.roadId = roadId;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public Long getStatus0Count() {
+        return status0Count;
+    }
+
+    public void setStatus0Count(Long status0Count) {
+        this.status0Count = status0Count;
+    }
+
+    public Long getStatus1Count() {
+        return status1Count;
+    }
+
+    public void setStatus1Count(Long status1Count) {
+        this.status1Count = status1Count;
+    }
+
+    public Long getStatus2Count() {
+        return status2Count;
+    }
+
+    public void setStatus2Count(Long status2Count) {
+        this.status2Count = status2Count;
+    }
+
+    public Long getStatus3Count() {
+        return status3Count;
+    }
+
+    public void setStatus3Count(Long status3Count) {
+        this.status3Count = status3Count;
+    }
+
+    public Long getStatus4Count() {
+        return status4Count;
+    }
+
+    public void setStatus4Count(Long status4Count) {
+        this.status4Count = status4Count;
+    }
+
+    public Double getSpeedSum() {
+        return speedSum;
+    }
+
+    public void setSpeedSum(Double speedSum) {
+        this.speedSum = speedSum;
+    }
+
+    public Long getSpeedCount() {
+        return speedCount;
+    }
+
+    public void setSpeedCount(Long speedCount) {
+        this.speedCount = speedCount;
+    }
+
+    public BigDecimal getMinSpeed() {
+        return minSpeed;
+    }
+
+    public void setMinSpeed(BigDecimal minSpeed) {
+        this.minSpeed = minSpeed;
+    }
+
+    public BigDecimal getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(BigDecimal maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    public Long getCongestionDistanceSum() {
+        return congestionDistanceSum;
+    }
+
+    public void setCongestionDistanceSum(Long congestionDistanceSum) {
+        this.congestionDistanceSum = congestionDistanceSum;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficRollup{" +
+                "granularity=" + granularity +
+                ", roadId=" + roadId +
+                ", bucketStart=" + bucketStart +
+                ", sampleCount=" + sampleCount +
+                '}';
+    }
+}
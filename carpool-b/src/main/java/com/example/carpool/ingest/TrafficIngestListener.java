@@ -0,0 +1,39 @@
+package com.example.carpool.ingest;
+
+import com.example.carpool.dto.TrafficSummary;
+
+import java.util.List;
+
+/**
+ * 路况数据入库监听器，内存中维护的各类路况视图通过它感知新数据
+ */
+public interface TrafficIngestListener {
+
+    // 监听器按 @Order 依次加载和回调：道路字典最先，其他监听器通过它解析道路；查询规划从汇总表加载计数，排在汇总之后
+    int DICTIONARY_ORDER = 0;
+
+    int ROLLUP_ORDER = 10;
+
+    int PLANNER_ORDER = 20;
+
+    int VIEW_ORDER = 30;
+
+    /**
+     * 启动时加载初始状态，在增量水位确定之后调用；lastSeenId 为增量同步的起始水位，
+     * 之后入库的记录会在第一次轮询时分发，按记录计数的回填应只统计 id 不超过它的记录
+     */
+    default void loadInitialState(long lastSeenId) {
+    }
+
+    /**
+     * 新路况记录入库后回调，rows 按 id 升序排列
+     */
+    void onTrafficIngested(List<TrafficSummary> rows);
+
+    /**
+     * 采集结果与道路上一条记录相同、只延长了该记录的 valid_until 时回调：
+     * rows 中 id、requestTime 为原记录，validUntil 为本次采集时间，视为一次新的采集
+     */
+    default void onTrafficExtended(List<TrafficSummary> rows) {
+    }
+}
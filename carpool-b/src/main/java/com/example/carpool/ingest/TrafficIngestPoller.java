@@ -0,0 +1,125 @@
+package com.example.carpool.ingest;
+
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.repository.RoadTrafficRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增量同步 road_traffic_overall 新入库的记录（按自增 id 追踪水位），并分发给各个监听器
+ */
+@Component
+public class TrafficIngestPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficIngestPoller.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private RoadTrafficRepository roadTrafficRepository;
+
+    @Autowired(required = false)
+    private List<TrafficIngestListener> listeners = Collections.emptyList();
+
+    private final AtomicLong lastSeenId = new AtomicLong();
+
+    // 分发过的延续批次数，最新路况的时间随之变化而记录 id 不变
+    private final AtomicLong extendedBatches = new AtomicLong();
+
+    // 最近一次同步到新记录的时间（毫秒），启动时取初始化时间
+    private volatile long lastIngestTime;
+
+    /**
+     * 先确定水位再按 @Order 顺序加载监听器初始状态（道路字典最先），两者之间入库的记录会在第一次轮询时补齐
+     */
+    @PostConstruct
+    public void init() {
+        Long maxId = roadTrafficRepository.findMaxId();
+        lastSeenId.set(maxId != null ? maxId : 0L);
+        lastIngestTime = System.currentTimeMillis();
+
+        for (TrafficIngestListener listener : listeners) {
+            listener.loadInitialState(lastSeenId.get());
+        }
+        log.info("路况增量同步初始化完成，起始水位 id={}", lastSeenId.get());
+    }
+
+    /**
+     * 定时拉取水位之后的新记录
+     */
+    @Scheduled(fixedDelayString = "${traffic.ingest.poll-interval-ms:5000}")
+    public synchronized void poll() {
+        List<TrafficSummary> rows;
+        do {
+            rows = roadTrafficRepository.findByIdGreaterThanOrderByIdAsc(
+                    lastSeenId.get(), PageRequest.of(0, BATCH_SIZE));
+            if (rows.isEmpty()) {
+                return;
+            }
+            publish(rows);
+            lastSeenId.set(rows.get(rows.size() - 1).getId());
+            lastIngestTime = System.currentTimeMillis();
+        } while (rows.size() == BATCH_SIZE);
+    }
+
+    /**
+     * 将新记录分发给所有监听器，单个监听器出错不影响其他监听器
+     */
+    public void publish(List<TrafficSummary> rows) {
+        for (TrafficIngestListener listener : listeners) {
+            try {
+                listener.onTrafficIngested(rows);
+            } catch (Exception e) {
+                log.error("路况监听器 {} 处理新数据失败", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * 将只延长了 valid_until 的采集结果分发给所有监听器（不产生新记录，轮询感知不到）
+     */
+    public void publishExtended(List<TrafficSummary> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        for (TrafficIngestListener listener : listeners) {
+            try {
+                listener.onTrafficExtended(rows);
+            } catch (Exception e) {
+                log.error("路况监听器 {} 处理延续数据失败", listener.getClass().getSimpleName(), e);
+            }
+        }
+        extendedBatches.incrementAndGet();
+        lastIngestTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 当前已同步到的最大记录 id
+     */
+    public long getLastSeenId() {
+        return lastSeenId.get();
+    }
+
+    /**
+     * 已分发的延续批次数
+     */
+    public long getExtendedBatches() {
+        return extendedBatches.get();
+    }
+
+    /**
+     * 最近一次同步到新记录（或延续记录）的时间（毫秒）
+     */
+    public long getLastIngestTime() {
+        return lastIngestTime;
+    }
+}
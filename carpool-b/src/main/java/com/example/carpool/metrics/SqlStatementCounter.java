@@ -0,0 +1,67 @@
+package com.example.carpool.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 统计一次业务调用中 Hibernate 实际发出的 SQL 语句条数，
+ * 以 traffic.sql.statements（operation 标签区分调用）分布指标暴露
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final String METRIC_NAME = "traffic.sql.statements";
+
+    // 当前线程正在统计的计数器，未在统计范围内时为 null
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] counter = CURRENT.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+        return sql;
+    }
+
+    /**
+     * 执行 action 并记录其间发出的 SQL 条数（异常时同样记录）
+     */
+    public <T> T measure(String operation, Supplier<T> action) {
+        int[] previous = CURRENT.get();
+        int[] counter = new int[1];
+        CURRENT.set(counter);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                // 嵌套统计时外层也要计入
+                previous[0] += counter[0];
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("SQL statements issued per call")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .record(counter[0]);
+        }
+    }
+}
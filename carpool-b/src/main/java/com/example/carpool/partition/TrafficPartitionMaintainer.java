@@ -0,0 +1,156 @@
+package com.example.carpool.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 按月分区的路况表维护（分区结构见 script/partition_traffic_tables.sql）：
+ * 启动时及每天定时为未来若干个月预建分区（从空的 pmax 分区拆出，不搬移数据），
+ * 并处理超过保留期的月份分区：ARCHIVE 时交换到独立的归档表 {表名}_pYYYYMM 后删除分区，DROP 时直接删除。
+ * 表未分区（未执行分区脚本或测试库）时跳过
+ */
+@Component
+public class TrafficPartitionMaintainer {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficPartitionMaintainer.class);
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p\\d{6}");
+
+    private static final String MAX_PARTITION = "pmax";
+
+    // 按月分区的表
+    private static final List<String> TABLES = List.of("road_traffic_overall", "congestion_sections");
+
+    /**
+     * 过期分区的处理方式
+     */
+    public enum ExpiredAction {
+        ARCHIVE, DROP
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${traffic.partition.enabled:true}")
+    private boolean enabled;
+
+    // 提前建好的未来月份数
+    @Value("${traffic.partition.months-ahead:3}")
+    private int monthsAhead;
+
+    // 保留的月份数（含当月），0 表示不清理
+    @Value("${traffic.partition.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${traffic.partition.expired-action:ARCHIVE}")
+    private ExpiredAction expiredAction;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${traffic.partition.cron:0 30 3 * * *}")
+    public synchronized void maintain() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (String table : TABLES) {
+            try {
+                maintain(table, current);
+            } catch (Exception e) {
+                log.error("维护表 {} 的分区失败", table, e);
+            }
+        }
+    }
+
+    private void maintain(String table, YearMonth current) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, table);
+        if (!partitions.contains(MAX_PARTITION)) {
+            log.debug("表 {} 未按月分区，跳过分区维护", table);
+            return;
+        }
+        List<String> monthPartitions = partitions.stream()
+                .filter(name -> MONTH_PARTITION.matcher(name).matches())
+                .toList();
+
+        // 预建分区：只能在最后一个月份分区之后、按顺序从 pmax 拆出
+        YearMonth last = monthPartitions.stream()
+                .map(TrafficPartitionMaintainer::monthOf)
+                .max(YearMonth::compareTo)
+                .orElse(current.minusMonths(1));
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" +
+                    "PARTITION " + partitionName(month) + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00'), " +
+                    "PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+            log.info("表 {} 新建分区 {}", table, partitionName(month));
+        }
+
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths - 1L);
+        for (String partition : monthPartitions) {
+            if (!monthOf(partition).isBefore(oldestKept)) {
+                continue;
+            }
+            if (expiredAction == ExpiredAction.ARCHIVE) {
+                archive(table, partition);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+            log.info("表 {} 的过期分区 {} 已{}", table, partition, expiredAction == ExpiredAction.ARCHIVE ? "归档" : "删除");
+        }
+    }
+
+    /**
+     * 将分区数据交换到结构相同的非分区表（只交换元数据，不复制数据），原分区随后变为空分区。
+     * 归档表已有数据说明上次已交换、只是删除分区失败，此时不再交换
+     */
+    private void archive(String table, String partition) {
+        String archiveTable = table + "_" + partition;
+        Integer exists = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                Integer.class, archiveTable);
+        if (exists == null || exists == 0) {
+            jdbcTemplate.execute("CREATE TABLE " + archiveTable + " LIKE " + table);
+            jdbcTemplate.execute("ALTER TABLE " + archiveTable + " REMOVE PARTITIONING");
+        }
+        if (!hasRows(archiveTable)) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " EXCHANGE PARTITION " + partition + " WITH TABLE " + archiveTable);
+        } else if (hasRows(table + " PARTITION (" + partition + ")")) {
+            throw new IllegalStateException("归档表 " + archiveTable + " 已有数据，分区 " + partition + " 未归档");
+        }
+    }
+
+    private boolean hasRows(String source) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM " + source + " LIMIT 1").isEmpty();
+    }
+
+    static String partitionName(YearMonth month) {
+        return month.atDay(1).format(PARTITION_NAME);
+    }
+
+    static YearMonth monthOf(String partition) {
+        return YearMonth.from(LocalDate.parse(partition + "01", DateTimeFormatter.ofPattern("'p'yyyyMMdd")));
+    }
+}
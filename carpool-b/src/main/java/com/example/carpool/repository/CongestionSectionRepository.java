@@ -1,16 +1,27 @@
 package com.example.carpool.repository;
 
+import com.example.carpool.dto.SectionAggregate;
+import com.example.carpool.dto.TrafficSummary;
 import com.example.carpool.entity.CongestionSection;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 @Repository
 public interface CongestionSectionRepository extends JpaRepository<CongestionSection, Long> {
 
+    /**
+     * 拥堵路段与所属路况记录在同一事务中写入，created_at 与 request_time 的差距不超过该时长
+     */
+    Duration CREATED_AT_SLACK = Duration.ofMinutes(10);
+
     /**
      * 根据overall_id查询拥堵路段信息
      */
@@ -43,4 +54,78 @@ public interface CongestionSectionRepository extends JpaRepository<CongestionSec
      */
     @Query("SELECT COALESCE(SUM(cs.congestionDistance), 0) FROM CongestionSection cs WHERE cs.overallId = :overallId AND cs.congestionDistance IS NOT NULL")
     Integer getTotalCongestionDistance(@Param("overallId") Long overallId);
-}
\ No newline at end of file
+
+    /**
+     * 批量获取多条路况记录的速度统计和总拥堵距离（一次分组聚合查询）
+     */
+    @Query("SELECT new com.example.carpool.dto.SectionAggregate(cs.overallId, AVG(cs.speed), SUM(cs.congestionDistance), " +
+           "COUNT(cs.speed), MIN(cs.speed), MAX(cs.speed)) " +
+           "FROM CongestionSection cs WHERE cs.overallId IN :overallIds GROUP BY cs.overallId")
+    List<SectionAggregate> aggregateByOverallIds(@Param("overallIds") Collection<Long> overallIds);
+
+    /**
+     * 批量获取一批路况记录下各拥堵路段的速度（overall_id, speed）
+     */
+    @Query("SELECT cs.overallId, cs.speed FROM CongestionSection cs WHERE cs.overallId IN :overallIds AND cs.speed IS NOT NULL")
+    List<Object[]> findSpeedsByOverallIds(@Param("overallIds") Collection<Long> overallIds);
+
+    /**
+     * 批量聚合拥堵路段，created_at 须落在这批记录 request_time ± CREATED_AT_SLACK 的窗口内，否则会漏掉路段
+     */
+    @Query("SELECT new com.example.carpool.dto.SectionAggregate(cs.overallId, AVG(cs.speed), SUM(cs.congestionDistance), " +
+           "COUNT(cs.speed), MIN(cs.speed), MAX(cs.speed)) " +
+           "FROM CongestionSection cs WHERE cs.overallId IN :overallIds " +
+           "AND cs.createdAt BETWEEN :createdFrom AND :createdTo GROUP BY cs.overallId")
+    List<SectionAggregate> aggregateByOverallIdsCreatedBetween(
+            @Param("overallIds") Collection<Long> overallIds,
+            @Param("createdFrom") LocalDateTime createdFrom,
+            @Param("createdTo") LocalDateTime createdTo);
+
+    /**
+     * 批量获取拥堵路段速度，created_at 窗口约定同 {@link #aggregateByOverallIdsCreatedBetween}（request_time ± CREATED_AT_SLACK）
+     */
+    @Query("SELECT cs.overallId, cs.speed FROM CongestionSection cs WHERE cs.overallId IN :overallIds " +
+           "AND cs.createdAt BETWEEN :createdFrom AND :createdTo AND cs.speed IS NOT NULL")
+    List<Object[]> findSpeedsByOverallIdsCreatedBetween(
+            @Param("overallIds") Collection<Long> overallIds,
+            @Param("createdFrom") LocalDateTime createdFrom,
+            @Param("createdTo") LocalDateTime createdTo);
+
+    /**
+     * 批量获取一批路况记录的拥堵路段聚合信息，并按这批记录的 request_time 范围限定 created_at，
+     * congestion_sections 按月分区后只扫描这些记录所在月份的分区
+     */
+    default List<SectionAggregate> aggregateBySummaries(List<TrafficSummary> rows) {
+        List<Long> ids = rows.stream().map(TrafficSummary::getId).toList();
+        LocalDateTime[] range = requestTimeRange(rows);
+        return range == null
+                ? aggregateByOverallIds(ids)
+                : aggregateByOverallIdsCreatedBetween(ids, range[0], range[1]);
+    }
+
+    /**
+     * 批量获取一批路况记录下各拥堵路段的速度，分区裁剪方式同 {@link #aggregateBySummaries}
+     */
+    default List<Object[]> findSpeedsBySummaries(List<TrafficSummary> rows) {
+        List<Long> ids = rows.stream().map(TrafficSummary::getId).toList();
+        LocalDateTime[] range = requestTimeRange(rows);
+        return range == null
+                ? findSpeedsByOverallIds(ids)
+                : findSpeedsByOverallIdsCreatedBetween(ids, range[0], range[1]);
+    }
+
+    /**
+     * 这批记录的 request_time 范围（前后放宽 CREATED_AT_SLACK），有记录缺少时间时返回 null
+     */
+    private static LocalDateTime[] requestTimeRange(List<TrafficSummary> rows) {
+        if (rows.stream().map(TrafficSummary::getRequestTime).anyMatch(Objects::isNull)) {
+            return null;
+        }
+        LocalDateTime min = rows.stream().map(TrafficSummary::getRequestTime).min(LocalDateTime::compareTo).orElse(null);
+        LocalDateTime max = rows.stream().map(TrafficSummary::getRequestTime).max(LocalDateTime::compareTo).orElse(null);
+        if (min == null) {
+            return null;
+        }
+        return new LocalDateTime[]{min.minus(CREATED_AT_SLACK), max.plus(CREATED_AT_SLACK)};
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.carpool.repository;
+
+import com.example.carpool.entity.Road;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RoadRepository extends JpaRepository<Road, Integer> {
+
+    /**
+     * 根据道路名称和标准城市名称查询道路
+     */
+    Optional<Road> findByRoadNameAndCity(String roadName, String city);
+
+    /**
+     * 登记道路，已存在时忽略（唯一键 city + road_name）
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO road (road_name, city, created_at) VALUES (:roadName, :city, NOW())",
+           nativeQuery = true)
+    int insertIgnore(@Param("roadName") String roadName, @Param("city") String city);
+}
@@ -1,6 +1,8 @@
 package com.example.carpool.repository;
 
+import com.example.carpool.dto.TrafficSummary;
 import com.example.carpool.entity.RoadTrafficOverall;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -8,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -15,10 +18,22 @@ import java.util.List;
 public interface RoadTrafficRepository extends JpaRepository<RoadTrafficOverall, Long> {
 
     /**
-     * 根据道路名称和城市查询最新的路况信息
+     * 一条记录 [request_time, valid_until] 区间的最大长度（采集端保证），按时间范围查询时 request_time 的下界据此前移
      */
-    @Query("SELECT r FROM RoadTrafficOverall r WHERE r.roadName = :roadName AND r.city = :city ORDER BY r.requestTime DESC")
-    Page<RoadTrafficOverall> findLatestByRoadAndCity(@Param("roadName") String roadName, @Param("city") String city, Pageable pageable);
+    Duration MAX_VALID_SPAN = Duration.ofHours(1);
+
+    /**
+     * 列表查询使用的构造表达式：只读取列表需要的列，不加载 description、message 等字段，结果不进入持久化上下文
+     */
+    String SELECT_SUMMARY = "SELECT new com.example.carpool.dto.TrafficSummary(" +
+            "r.id, r.roadId, r.roadName, r.city, r.evaluationStatus, r.requestTime, r.validUntil) FROM RoadTrafficOverall r ";
+
+    /**
+     * 根据道路id查询最新的路况信息
+     */
+    @Query(value = SELECT_SUMMARY + "WHERE r.roadId = :roadId ORDER BY r.requestTime DESC",
+           countQuery = "SELECT COUNT(r) FROM RoadTrafficOverall r WHERE r.roadId = :roadId")
+    Page<TrafficSummary> findLatestByRoad(@Param("roadId") Integer roadId, Pageable pageable);
 
     /**
      * 根据城市查询所有路况信息
@@ -28,12 +43,15 @@ public interface RoadTrafficRepository extends JpaRepository<RoadTrafficOverall,
     /**
      * 根据城市查询路况信息，分页
      */
-    Page<RoadTrafficOverall> findByCityOrderByRequestTimeDesc(String city, Pageable pageable);
+    @Query(value = SELECT_SUMMARY + "WHERE r.city = :city ORDER BY r.requestTime DESC",
+           countQuery = "SELECT COUNT(r) FROM RoadTrafficOverall r WHERE r.city = :city")
+    Page<TrafficSummary> findSummariesByCity(@Param("city") String city, Pageable pageable);
 
     /**
      * 根据拥堵状态查询路况信息
      */
-    List<RoadTrafficOverall> findByEvaluationStatusOrderByRequestTimeDesc(Integer evaluationStatus);
+    @Query(SELECT_SUMMARY + "WHERE r.evaluationStatus = :status ORDER BY r.requestTime DESC")
+    List<TrafficSummary> findSummariesByStatus(@Param("status") Integer status);
 
     /**
      * 查询指定时间之后的所有路况信息
@@ -42,75 +60,89 @@ public interface RoadTrafficRepository extends JpaRepository<RoadTrafficOverall,
     List<RoadTrafficOverall> findLatestSince(@Param("since") LocalDateTime since);
 
     /**
-     * 获取每个道路的最新路况信息
+     * 获取每个道路的最新路况信息（请求时间最晚的记录；重放的溢出日志 id 更大但时间更早，不能按最大 id 取）
      */
-    @Query("SELECT r FROM RoadTrafficOverall r WHERE r.id IN " +
-           "(SELECT MAX(r2.id) FROM RoadTrafficOverall r2 GROUP BY r2.roadName, r2.city) " +
+    @Query(SELECT_SUMMARY + "WHERE r.requestTime = " +
+           "(SELECT MAX(r2.requestTime) FROM RoadTrafficOverall r2 WHERE r2.roadId = r.roadId) " +
            "ORDER BY r.requestTime DESC")
-    List<RoadTrafficOverall> findLatestForEachRoad();
+    List<TrafficSummary> findLatestForEachRoad();
 
     /**
-     * 获取每个道路的最新路况信息，分页
+     * 获取最大记录id
      */
-    @Query("SELECT r FROM RoadTrafficOverall r WHERE r.id IN " +
-           "(SELECT MAX(r2.id) FROM RoadTrafficOverall r2 GROUP BY r2.roadName, r2.city) " +
-           "ORDER BY r.requestTime DESC")
-    Page<RoadTrafficOverall> findLatestForEachRoad(Pageable pageable);
+    @Query("SELECT MAX(r.id) FROM RoadTrafficOverall r")
+    Long findMaxId();
+
+    /**
+     * 按id升序获取指定id之后入库的记录（用于增量同步）
+     */
+    @Query(SELECT_SUMMARY + "WHERE r.id > :id ORDER BY r.id ASC")
+    List<TrafficSummary> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Pageable pageable);
 
     /**
-     * 根据道路名称模糊查询
+     * 按城市、拥堵状态和分钟统计指定时间之后、id 不超过 maxId 的快照数量（用于回填滑动窗口计数器）
      */
-    @Query("SELECT r FROM RoadTrafficOverall r WHERE r.roadName LIKE %:keyword% OR r.city LIKE %:keyword% ORDER BY r.requestTime DESC")
-    List<RoadTrafficOverall> findByKeyword(@Param("keyword") String keyword);
+    @Query(value = "SELECT city, evaluation_status, request_time - INTERVAL SECOND(request_time) SECOND AS minute_start, COUNT(*) " +
+                   "FROM road_traffic_overall WHERE request_time >= :since AND id <= :maxId " +
+                   "GROUP BY city, evaluation_status, minute_start",
+           nativeQuery = true)
+    List<Object[]> countByCityStatusAndMinuteSince(@Param("since") LocalDateTime since, @Param("maxId") long maxId);
 
     /**
-     * 获取路况统计信息
+     * 指定时间之后开始、状态持续过多次采集（valid_until 不为空）的记录
      */
-    @Query("SELECT r.evaluationStatus, COUNT(r) FROM RoadTrafficOverall r WHERE r.requestTime >= :since GROUP BY r.evaluationStatus")
-    List<Object[]> getTrafficStatsSince(@Param("since") LocalDateTime since);
+    @Query(SELECT_SUMMARY + "WHERE r.requestTime >= :since AND r.validUntil IS NOT NULL")
+    List<TrafficSummary> findExtendedSince(@Param("since") LocalDateTime since);
 
     /**
-     * 检查道路是否存在
+     * id 不超过 maxId、valid_until 晚于 since 的记录（用于补齐汇总中延续的采集），
+     * fromTime 为 since 减去 MAX_VALID_SPAN，按 request_time 限定扫描范围
      */
-    boolean existsByRoadNameAndCity(String roadName, String city);
+    @Query(SELECT_SUMMARY + "WHERE r.requestTime >= :fromTime AND r.validUntil > :since AND r.id <= :maxId")
+    List<TrafficSummary> findExtendedAfter(@Param("fromTime") LocalDateTime fromTime,
+                                           @Param("since") LocalDateTime since,
+                                           @Param("maxId") long maxId);
 
     // ========== 历史数据查询相关方法 ==========
 
     /**
-     * 获取指定道路在指定时间范围内的历史数据
+     * 获取指定道路与时间范围（含两端）有交集的记录，按 (requestTime, id) 倒序，最多 limit 条；
+     * 区间 [request_time, valid_until] 与 [startTime, endTime] 有交集即返回，调用方按采集间隔展开
      */
-    @Query("SELECT r FROM RoadTrafficOverall r WHERE " +
-           "r.roadName = :roadName AND r.city = :city AND " +
-           "r.requestTime BETWEEN :startTime AND :endTime " +
-           "ORDER BY r.requestTime DESC")
-    Page<RoadTrafficOverall> findHistoricalTraffic(
-            @Param("roadName") String roadName,
-            @Param("city") String city,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime,
-            Pageable pageable);
+    default List<TrafficSummary> findHistoricalTraffic(Integer roadId, LocalDateTime startTime,
+                                                       LocalDateTime endTime, Limit limit) {
+        return findHistoricalIntervals(roadId, startTime.minus(MAX_VALID_SPAN), startTime, endTime, limit);
+    }
 
     /**
-     * 获取所有不重复的城市列表
+     * request_time 在 [fromTime, endTime] 内（走 idx_road_time_id、按月裁剪分区）且区间结束不早于 startTime 的记录
      */
-    @Query("SELECT DISTINCT r.city FROM RoadTrafficOverall r ORDER BY r.city")
-    List<String> findDistinctCities();
+    @Query(SELECT_SUMMARY + "WHERE " +
+           "r.roadId = :roadId AND " +
+           "r.requestTime BETWEEN :fromTime AND :endTime AND " +
+           "COALESCE(r.validUntil, r.requestTime) >= :startTime " +
+           "ORDER BY r.requestTime DESC, r.id DESC")
+    List<TrafficSummary> findHistoricalIntervals(
+            @Param("roadId") Integer roadId,
+            @Param("fromTime") LocalDateTime fromTime,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime,
+            Limit limit);
 
     /**
-     * 获取指定城市的所有不重复道路列表
+     * 获取路况表中出现过的所有城市写法
      */
-    @Query("SELECT DISTINCT r.roadName FROM RoadTrafficOverall r WHERE r.city = :city ORDER BY r.roadName")
-    List<String> findDistinctRoadsByCity(@Param("city") String city);
+    @Query("SELECT DISTINCT r.city FROM RoadTrafficOverall r")
+    List<String> findDistinctCities();
 
     /**
      * 获取指定道路最新的平均速度
      */
     @Query("SELECT AVG(cs.speed) FROM CongestionSection cs WHERE cs.overallId IN " +
-           "(SELECT r.id FROM RoadTrafficOverall r WHERE r.roadName = :roadName AND r.city = :city " +
-           "AND r.requestTime BETWEEN :startTime AND :endTime) AND cs.speed IS NOT NULL")
+           "(SELECT r.id FROM RoadTrafficOverall r WHERE r.roadId = :roadId " +
+           "AND r.requestTime BETWEEN :startTime AND :endTime) AND cs.roadId = :roadId AND cs.speed IS NOT NULL")
     Double getAverageSpeedByRoadAndTimeRange(
-            @Param("roadName") String roadName,
-            @Param("city") String city,
+            @Param("roadId") Integer roadId,
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime);
 
@@ -118,25 +150,50 @@ public interface RoadTrafficRepository extends JpaRepository<RoadTrafficOverall,
      * 获取指定道路在指定时间范围内的拥堵统计
      */
     @Query("SELECT r.evaluationStatus, COUNT(r) FROM RoadTrafficOverall r WHERE " +
-           "r.roadName = :roadName AND r.city = :city AND " +
+           "r.roadId = :roadId AND " +
            "r.requestTime BETWEEN :startTime AND :endTime " +
            "GROUP BY r.evaluationStatus")
     List<Object[]> getCongestionStatsByRoadAndTimeRange(
-            @Param("roadName") String roadName,
-            @Param("city") String city,
+            @Param("roadId") Integer roadId,
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime);
 
+    // ========== 游标（keyset）分页查询，按 (requestTime, id) 倒序，不执行 COUNT ==========
+
+    /**
+     * 游标分页：城市路况（第一页）
+     */
+    @Query(SELECT_SUMMARY + "WHERE r.city = :city ORDER BY r.requestTime DESC, r.id DESC")
+    List<TrafficSummary> scrollByCity(@Param("city") String city, Limit limit);
+
     /**
-     * 检查时间范围是否超过限制（防止查询过多数据）
+     * 游标分页：城市路况（游标之后）
      */
-    @Query("SELECT COUNT(r) FROM RoadTrafficOverall r WHERE " +
-           "r.roadName = :roadName AND r.city = :city AND " +
-           "r.requestTime BETWEEN :startTime AND :endTime")
-    Long countHistoricalTraffic(
-            @Param("roadName") String roadName,
+    @Query(SELECT_SUMMARY + "WHERE r.city = :city AND " +
+           "(r.requestTime < :cursorTime OR (r.requestTime = :cursorTime AND r.id < :cursorId)) " +
+           "ORDER BY r.requestTime DESC, r.id DESC")
+    List<TrafficSummary> scrollByCityAfter(
             @Param("city") String city,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime);
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
+
+    /**
+     * 游标分页：指定道路路况（第一页）
+     */
+    @Query(SELECT_SUMMARY + "WHERE r.roadId = :roadId " +
+           "ORDER BY r.requestTime DESC, r.id DESC")
+    List<TrafficSummary> scrollByRoad(@Param("roadId") Integer roadId, Limit limit);
 
+    /**
+     * 游标分页：指定道路路况（游标之后）
+     */
+    @Query(SELECT_SUMMARY + "WHERE r.roadId = :roadId AND " +
+           "(r.requestTime < :cursorTime OR (r.requestTime = :cursorTime AND r.id < :cursorId)) " +
+           "ORDER BY r.requestTime DESC, r.id DESC")
+    List<TrafficSummary> scrollByRoadAfter(
+            @Param("roadId") Integer roadId,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.example.carpool.repository;
+
+import com.example.carpool.entity.RollupGranularity;
+import com.example.carpool.entity.TrafficRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TrafficRollupRepository extends JpaRepository<TrafficRollup, Long> {
+
+    /**
+     * 获取指定道路在指定时间范围内某一粒度的汇总数据（分页但不执行COUNT，总数由查询规划估算）
+     */
+    @Query("SELECT r FROM TrafficRollup r WHERE " +
+           "r.granularity = :granularity AND r.roadId = :roadId AND " +
+           "r.bucketStart BETWEEN :startTime AND :endTime " +
+           "ORDER BY r.bucketStart ASC")
+    List<TrafficRollup> findRollups(
+            @Param("granularity") RollupGranularity granularity,
+            @Param("roadId") Integer roadId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime,
+            Pageable pageable);
+
+    /**
+     * 获取指定时间之后某一粒度所有道路的时间桶快照数量（道路id, 时间桶起始时间, 快照数量）
+     */
+    @Query("SELECT r.roadId, r.bucketStart, r.sampleCount FROM TrafficRollup r WHERE " +
+           "r.granularity = :granularity AND r.bucketStart >= :since")
+    List<Object[]> findSampleCountsSince(
+            @Param("granularity") RollupGranularity granularity,
+            @Param("since") LocalDateTime since);
+
+    /**
+     * 将一批路况记录的增量累加到对应时间桶（不存在则新建）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO road_traffic_rollup " +
+            "(granularity, road_id, bucket_start, sample_count, " +
+            "status0_count, status1_count, status2_count, status3_count, status4_count, " +
+            "speed_sum, speed_count, min_speed, max_speed, congestion_distance_sum, updated_at) " +
+            "VALUES (:granularity, :roadId, :bucketStart, :sampleCount, " +
+            ":status0, :status1, :status2, :status3, :status4, " +
+            ":speedSum, :speedCount, :minSpeed, :maxSpeed, :distanceSum, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "sample_count = sample_count + VALUES(sample_count), " +
+            "status0_count = status0_count + VALUES(status0_count), " +
+            "status1_count = status1_count + VALUES(status1_count), " +
+            "status2_count = status2_count + VALUES(status2_count), " +
+            "status3_count = status3_count + VALUES(status3_count), " +
+            "status4_count = status4_count + VALUES(status4_count), " +
+            "speed_sum = COALESCE(speed_sum, 0) + COALESCE(VALUES(speed_sum), 0), " +
+            "speed_count = speed_count + VALUES(speed_count), " +
+            "min_speed = LEAST(COALESCE(min_speed, VALUES(min_speed)), COALESCE(VALUES(min_speed), min_speed)), " +
+            "max_speed = GREATEST(COALESCE(max_speed, VALUES(max_speed)), COALESCE(VALUES(max_speed), max_speed)), " +
+            "congestion_distance_sum = congestion_distance_sum + VALUES(congestion_distance_sum), " +
+            "updated_at = NOW()",
+            nativeQuery = true)
+    int upsertRollup(
+            @Param("granularity") String granularity,
+            @Param("roadId") int roadId,
+            @Param("bucketStart") LocalDateTime bucketStart,
+            @Param("sampleCount") long sampleCount,
+            @Param("status0") long status0,
+            @Param("status1") long status1,
+            @Param("status2") long status2,
+            @Param("status3") long status3,
+            @Param("status4") long status4,
+            @Param("speedSum") Double speedSum,
+            @Param("speedCount") long speedCount,
+            @Param("minSpeed") BigDecimal minSpeed,
+            @Param("maxSpeed") BigDecimal maxSpeed,
+            @Param("distanceSum") long distanceSum);
+
+    /**
+     * 将一批拥堵路段速度累加到 (道路, 小时, 速度桶) 的计数（不存在则新建）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO road_speed_histogram (road_id, bucket_start, bin, sample_count) " +
+            "VALUES (:roadId, :bucketStart, :bin, :sampleCount) " +
+            "ON DUPLICATE KEY UPDATE sample_count = sample_count + VALUES(sample_count)",
+            nativeQuery = true)
+    int upsertSpeedBin(
+            @Param("roadId") int roadId,
+            @Param("bucketStart") LocalDateTime bucketStart,
+            @Param("bin") int bin,
+            @Param("sampleCount") long sampleCount);
+
+    /**
+     * 合并指定道路在时间范围内各小时的速度草图（速度桶号, 样本数）
+     */
+    @Query(value = "SELECT bin, SUM(sample_count) FROM road_speed_histogram " +
+            "WHERE road_id = :roadId AND bucket_start BETWEEN :startTime AND :endTime " +
+            "GROUP BY bin",
+            nativeQuery = true)
+    List<Object[]> sumSpeedBins(
+            @Param("roadId") int roadId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 获取已汇总到的最大路况记录id
+     */
+    @Query(value = "SELECT last_overall_id FROM traffic_rollup_checkpoint WHERE name = 'rollup'", nativeQuery = true)
+    Long findCheckpoint();
+
+    /**
+     * 保存已汇总到的最大路况记录id
+     */
+    @Modifying
+    @Query(value = "INSERT INTO traffic_rollup_checkpoint (name, last_overall_id) VALUES ('rollup', :lastOverallId) " +
+            "ON DUPLICATE KEY UPDATE last_overall_id = VALUES(last_overall_id)",
+            nativeQuery = true)
+    int saveCheckpoint(@Param("lastOverallId") Long lastOverallId);
+
+    /**
+     * 获取延续采集已汇总到的时间（DATETIME，驱动返回 Timestamp 或 LocalDateTime）
+     */
+    @Query(value = "SELECT extended_until FROM traffic_rollup_checkpoint WHERE name = 'rollup'", nativeQuery = true)
+    Object findExtensionCheckpoint();
+
+    /**
+     * 保存延续采集已汇总到的时间
+     */
+    @Modifying
+    @Query(value = "UPDATE traffic_rollup_checkpoint SET extended_until = :extendedUntil WHERE name = 'rollup'",
+            nativeQuery = true)
+    int saveExtensionCheckpoint(@Param("extendedUntil") LocalDateTime extendedUntil);
+}
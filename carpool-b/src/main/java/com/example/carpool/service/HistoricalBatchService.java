@@ -0,0 +1,176 @@
+package com.example.carpool.service;
+
+import com.example.carpool.datasource.ReadWriteRoutingDataSource;
+import com.example.carpool.dto.HistoricalBatchRequest;
+import com.example.carpool.dto.HistoricalBatchResponse;
+import com.example.carpool.dto.TrafficResponse;
+import com.example.carpool.entity.RollupGranularity;
+import com.example.carpool.timeseries.TrafficTimeSeriesStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 多条道路历史数据对比：每条道路的查询在独立的虚拟线程上并行执行，
+ * 需要访问数据库的查询受信号量限制并发数，总耗时接近最慢的单条道路而不是各道路之和。
+ * 各道路的数据点都归约到同一个时间网格上，序列逐点对应，前端可以直接共用时间轴
+ */
+@Service
+public class HistoricalBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoricalBatchService.class);
+
+    // 单次最多对比20条道路
+    static final int MAX_BATCH_ROADS = 20;
+
+    @Autowired
+    private TrafficService trafficService;
+
+    @Autowired
+    private TrafficTimeSeriesStore trafficTimeSeriesStore;
+
+    // 采集间隔，未指定分辨率和点数时作为网格步长
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMs;
+
+    // 同时访问数据库的道路查询数量上限，避免一次对比请求占满连接池
+    @Value("${traffic.historical.batch.db-concurrency:4}")
+    private int dbConcurrency;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Semaphore dbPermits;
+
+    @PostConstruct
+    public void init() {
+        dbPermits = new Semaphore(dbConcurrency, true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并行查询多条道路在同一时间范围内的历史数据
+     */
+    public HistoricalBatchResponse getHistoricalTraffic(HistoricalBatchRequest request) {
+        List<HistoricalBatchRequest.RoadRef> roads = request.getRoads();
+        if (roads == null || roads.isEmpty()) {
+            throw new IllegalArgumentException("道路列表不能为空");
+        }
+        if (roads.size() > MAX_BATCH_ROADS) {
+            throw new IllegalArgumentException("单次最多对比" + MAX_BATCH_ROADS + "条道路");
+        }
+        if (request.getStartTime() == null || request.getEndTime() == null) {
+            throw new IllegalArgumentException("开始时间和结束时间不能为空");
+        }
+        if (request.getStartTime().isAfter(request.getEndTime())) {
+            throw new IllegalArgumentException("开始时间必须早于结束时间");
+        }
+        HistoricalGrid grid = new HistoricalGrid(request.getStartTime(), request.getEndTime(),
+                gridStep(request), HistoricalQueryPlanner.MAX_RAW_ROWS);
+
+        // 固定到主库的标记保存在请求线程的 ThreadLocal 中，需要带到各个虚拟线程
+        boolean pinned = ReadWriteRoutingDataSource.isPinnedToPrimary();
+        List<Future<HistoricalBatchResponse.Series>> futures = new ArrayList<>(roads.size());
+        for (HistoricalBatchRequest.RoadRef road : roads) {
+            futures.add(executor.submit(() -> querySeries(road, request, grid, pinned)));
+        }
+
+        List<HistoricalBatchResponse.Series> series = new ArrayList<>(roads.size());
+        try {
+            for (Future<HistoricalBatchResponse.Series> future : futures) {
+                series.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("历史数据对比查询被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("历史数据对比查询失败", e.getCause());
+        }
+        return new HistoricalBatchResponse(request.getStartTime(), request.getEndTime(),
+                grid.getStepMinutes(), request.getMaxPoints(), series);
+    }
+
+    /**
+     * 网格步长：指定分辨率时直接使用；指定点数时取能容纳整个范围的最小整分钟步长，且不细于采集间隔；
+     * 都未指定时取采集间隔
+     */
+    private Duration gridStep(HistoricalBatchRequest request) {
+        long intervalMinutes = Math.max(1, Duration.ofMillis(collectIntervalMs).toMinutes());
+        if (request.getResolutionMinutes() != null) {
+            if (request.getResolutionMinutes() <= 0) {
+                throw new IllegalArgumentException("分辨率必须大于0分钟");
+            }
+            return Duration.ofMinutes(request.getResolutionMinutes());
+        }
+        if (request.getMaxPoints() != null) {
+            if (request.getMaxPoints() <= 0) {
+                throw new IllegalArgumentException("maxPoints必须大于0");
+            }
+            long rangeMinutes = Math.max(1, Duration.between(request.getStartTime(), request.getEndTime()).toMinutes());
+            long stepMinutes = (rangeMinutes + request.getMaxPoints() - 1) / request.getMaxPoints();
+            return Duration.ofMinutes(Math.max(stepMinutes, intervalMinutes));
+        }
+        return Duration.ofMinutes(intervalMinutes);
+    }
+
+    /**
+     * 查询单条道路在整个时间范围内的数据并对齐到网格，参数错误只记录在该道路的结果中。
+     * 未指定分辨率且范围在近期时间序列窗口内时读取内存中的原始数据，否则按网格步长读取不超过该步长的最粗汇总粒度
+     */
+    private HistoricalBatchResponse.Series querySeries(HistoricalBatchRequest.RoadRef road,
+                                                       HistoricalBatchRequest request,
+                                                       HistoricalGrid grid,
+                                                       boolean pinned) throws InterruptedException {
+        if (pinned) {
+            ReadWriteRoutingDataSource.pinToPrimary();
+        }
+        boolean inMemory = trafficTimeSeriesStore.covers(request.getStartTime());
+        Integer resolutionMinutes = request.getResolutionMinutes() == null && inMemory
+                ? null
+                : Integer.valueOf(grid.getStepMinutes());
+        // 近期原始数据直接从内存读取，不占用数据库并发名额
+        boolean needsDatabase = !inMemory || (resolutionMinutes != null
+                && RollupGranularity.coarsestWithin(Duration.ofMinutes(resolutionMinutes)) != null);
+        if (needsDatabase) {
+            dbPermits.acquire();
+        }
+        try {
+            // 查询规划保证行数或时间桶数在上限附近，一页取完整个范围
+            List<TrafficResponse> data = trafficService.getHistoricalTraffic(
+                    road.getRoadName(), road.getCity(),
+                    request.getStartTime(), request.getEndTime(),
+                    resolutionMinutes, null, PageRequest.of(0, Integer.MAX_VALUE))
+                    .getContent();
+            return new HistoricalBatchResponse.Series(road.getRoadName(), road.getCity(),
+                    grid.align(road.getRoadName(), road.getCity(), data), null);
+        } catch (IllegalArgumentException e) {
+            return new HistoricalBatchResponse.Series(road.getRoadName(), road.getCity(), List.of(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("道路 {} / {} 的历史数据查询失败", road.getRoadName(), road.getCity(), e);
+            return new HistoricalBatchResponse.Series(road.getRoadName(), road.getCity(), List.of(), "查询失败");
+        } finally {
+            if (needsDatabase) {
+                dbPermits.release();
+            }
+            ReadWriteRoutingDataSource.clearPin();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.carpool.service;
+
+import com.example.carpool.dto.TrafficResponse;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 历史序列降采样：按请求时间升序逐个输入数据点，单次遍历、只缓存当前和下一个桶。
+ * 速度用 Largest-Triangle-Three-Buckets 选出每个桶中最能保留曲线形状的点，
+ * 拥堵状态按桶归约为众数（并列时取更拥堵的）、最小值和最大值，并附带状态分布与速度范围。
+ * 首尾两个点单独成桶，原样保留
+ */
+final class HistoricalDownsampler {
+
+    private final long total;
+
+    private final int maxPoints;
+
+    // 中间每个桶平均容纳的点数
+    private final double bucketSize;
+
+    private final List<TrafficResponse> output;
+
+    private long index;
+
+    // 上一个桶选中的点（LTTB 三角形的第一个顶点）
+    private TrafficResponse selected;
+
+    private List<TrafficResponse> current = new ArrayList<>();
+
+    private List<TrafficResponse> pending = new ArrayList<>();
+
+    private long currentBucket;
+
+    /**
+     * @param total     输入点总数
+     * @param maxPoints 输出点数上限，不小于3
+     */
+    HistoricalDownsampler(long total, int maxPoints) {
+        this.total = total;
+        this.maxPoints = maxPoints;
+        this.bucketSize = total > maxPoints ? (double) (total - 2) / (maxPoints - 2) : 1;
+        this.output = new ArrayList<>((int) Math.min(total, maxPoints));
+    }
+
+    void add(TrafficResponse point) {
+        long position = index++;
+        if (total <= maxPoints) {
+            output.add(point);
+            return;
+        }
+        if (position == 0) {
+            output.add(point);
+            selected = point;
+            return;
+        }
+        if (position == total - 1) {
+            if (!pending.isEmpty()) {
+                flushCurrent(pending);
+            }
+            if (!current.isEmpty()) {
+                flushCurrent(List.of(point));
+            }
+            output.add(point);
+            return;
+        }
+
+        long bucket = (long) ((position - 1) / bucketSize);
+        if (current.isEmpty()) {
+            currentBucket = bucket;
+            current.add(point);
+        } else if (bucket == currentBucket) {
+            current.add(point);
+        } else if (bucket == currentBucket + 1) {
+            pending.add(point);
+        } else {
+            // 下一个桶已经完整，可以为当前桶选点
+            flushCurrent(pending);
+            pending.add(point);
+        }
+    }
+
+    List<TrafficResponse> finish() {
+        return output;
+    }
+
+    /**
+     * 以下一个桶的平均值为三角形第三个顶点，为当前桶选点并归约状态，然后下一个桶成为当前桶
+     */
+    private void flushCurrent(List<TrafficResponse> next) {
+        double nextX = 0;
+        double nextY = 0;
+        int speedCount = 0;
+        for (TrafficResponse point : next) {
+            nextX += x(point);
+            if (point.getSpeed() != null) {
+                nextY += point.getSpeed();
+                speedCount++;
+            }
+        }
+        nextX /= next.size();
+        nextY = speedCount > 0 ? nextY / speedCount : Double.NaN;
+
+        double ax = x(selected);
+        double ay = selected.getSpeed() != null ? selected.getSpeed() : nextY;
+        if (Double.isNaN(nextY)) {
+            nextY = ay;
+        }
+
+        TrafficResponse chosen = null;
+        double maxArea = -1;
+        for (TrafficResponse point : current) {
+            if (point.getSpeed() == null) {
+                continue;
+            }
+            double area = Double.isNaN(ay)
+                    ? 0
+                    : Math.abs((ax - nextX) * (point.getSpeed() - ay) - (ax - x(point)) * (nextY - ay));
+            if (area > maxArea) {
+                maxArea = area;
+                chosen = point;
+            }
+        }
+        if (chosen == null) {
+            // 桶内都没有速度数据时取中间的点
+            chosen = current.get(current.size() / 2);
+        }
+
+        output.add(reduce(chosen, current));
+        selected = chosen;
+
+        current = pending == next ? pending : new ArrayList<>(next);
+        pending = new ArrayList<>();
+        currentBucket++;
+    }
+
+    /**
+     * 将桶内的状态归约到选中的点上：状态取众数，同时记录最小/最大状态、状态分布、样本数和速度范围
+     */
+    static TrafficResponse reduce(TrafficResponse chosen, List<TrafficResponse> bucket) {
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        long samples = 0;
+        Double minSpeed = null;
+        Double maxSpeed = null;
+        for (TrafficResponse point : bucket) {
+            if (point.getStatusHistogram() != null) {
+                point.getStatusHistogram().forEach((status, count) -> {
+                    if (count > 0) {
+                        histogram.merge(status, count, Long::sum);
+                    }
+                });
+            } else if (point.getEvaluationStatus() != null) {
+                histogram.merge(point.getEvaluationStatus(), 1L, Long::sum);
+            }
+            samples += point.getSampleCount() != null ? point.getSampleCount() : 1;
+
+            Double low = point.getMinSpeed() != null ? point.getMinSpeed() : point.getSpeed();
+            Double high = point.getMaxSpeed() != null ? point.getMaxSpeed() : point.getSpeed();
+            if (low != null && (minSpeed == null || low < minSpeed)) {
+                minSpeed = low;
+            }
+            if (high != null && (maxSpeed == null || high > maxSpeed)) {
+                maxSpeed = high;
+            }
+        }
+
+        Integer mode = null;
+        Integer min = null;
+        Integer max = null;
+        for (Map.Entry<Integer, Long> entry : histogram.entrySet()) {
+            int status = entry.getKey();
+            long count = entry.getValue();
+            if (mode == null || count > histogram.get(mode) || (count == histogram.get(mode) && status > mode)) {
+                mode = status;
+            }
+            min = min == null ? status : Math.min(min, status);
+            max = max == null ? status : Math.max(max, status);
+        }
+
+        TrafficResponse response = new TrafficResponse(chosen.getId(), chosen.getRoadName(), chosen.getCity(),
+                mode != null ? mode : chosen.getEvaluationStatus(), null, chosen.getRequestTime());
+        response.setSpeed(chosen.getSpeed());
+        response.setCongestionDistance(chosen.getCongestionDistance());
+        response.setMinSpeed(minSpeed);
+        response.setMaxSpeed(maxSpeed);
+        response.setSampleCount(samples);
+        response.setStatusHistogram(histogram);
+        response.setMinEvaluationStatus(min);
+        response.setMaxEvaluationStatus(max);
+        return response;
+    }
+
+    private static double x(TrafficResponse point) {
+        return point.getRequestTime().toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.carpool.service;
+
+import com.example.carpool.dto.TrafficResponse;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多条道路对比使用的公共时间网格：从按步长对齐的起点开始，每个步长一个时间桶，覆盖整个查询范围。
+ * 起点按纪元分钟对齐，步长为5分钟、1小时、1天的倍数时与汇总表的时间桶边界一致。
+ * 每条道路的数据点按请求时间落入对应的桶并归约为一个点（时间取桶起点），没有数据的桶输出样本数为0的空点，
+ * 对齐后所有道路的序列长度相同、第 i 个点的时间相同
+ */
+final class HistoricalGrid {
+
+    private final LocalDateTime origin;
+
+    private final long stepSeconds;
+
+    private final int size;
+
+    /**
+     * @param startTime 查询开始时间
+     * @param endTime   查询结束时间
+     * @param step      时间桶步长，不小于1分钟
+     * @param maxSize   时间桶数量上限
+     */
+    HistoricalGrid(LocalDateTime startTime, LocalDateTime endTime, Duration step, long maxSize) {
+        this.stepSeconds = step.getSeconds();
+        long start = startTime.toEpochSecond(ZoneOffset.UTC);
+        long end = endTime.toEpochSecond(ZoneOffset.UTC);
+        long originSeconds = Math.floorDiv(start, stepSeconds) * stepSeconds;
+        long buckets = Math.max(1, (end - originSeconds + stepSeconds - 1) / stepSeconds);
+        if (buckets > maxSize) {
+            throw new IllegalArgumentException("对比时间点过多，请增大分辨率或缩小时间范围");
+        }
+        this.origin = LocalDateTime.ofEpochSecond(originSeconds, 0, ZoneOffset.UTC);
+        this.size = (int) buckets;
+    }
+
+    int getStepMinutes() {
+        return (int) (stepSeconds / 60);
+    }
+
+    int size() {
+        return size;
+    }
+
+    LocalDateTime bucketStart(int index) {
+        return origin.plusSeconds(index * stepSeconds);
+    }
+
+    /**
+     * 将一条道路的数据点（任意顺序）对齐到网格，结果按时间升序
+     */
+    List<TrafficResponse> align(String roadName, String city, List<TrafficResponse> points) {
+        List<List<TrafficResponse>> buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (TrafficResponse point : points) {
+            if (point.getRequestTime() != null) {
+                buckets.get(indexOf(point.getRequestTime())).add(point);
+            }
+        }
+
+        List<TrafficResponse> aligned = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<TrafficResponse> bucket = buckets.get(i);
+            if (bucket.isEmpty()) {
+                TrafficResponse empty = new TrafficResponse(null, roadName, city, null, null, bucketStart(i));
+                empty.setSampleCount(0L);
+                aligned.add(empty);
+            } else {
+                aligned.add(HistoricalDownsampler.reduce(average(bucket, bucketStart(i)), bucket));
+            }
+        }
+        return aligned;
+    }
+
+    /**
+     * 范围两端的汇总桶起点可能早于网格起点，落在网格之外的点归入首尾两个桶
+     */
+    private int indexOf(LocalDateTime time) {
+        long offset = time.toEpochSecond(ZoneOffset.UTC) - origin.toEpochSecond(ZoneOffset.UTC);
+        long index = Math.floorDiv(offset, stepSeconds);
+        return (int) Math.max(0, Math.min(size - 1, index));
+    }
+
+    /**
+     * 桶的代表点：时间为桶起点，速度和拥堵距离按样本数加权平均
+     */
+    private static TrafficResponse average(List<TrafficResponse> bucket, LocalDateTime bucketStart) {
+        double speedSum = 0;
+        long speedWeight = 0;
+        double distanceSum = 0;
+        long distanceWeight = 0;
+        for (TrafficResponse point : bucket) {
+            long weight = point.getSampleCount() != null ? point.getSampleCount() : 1;
+            if (point.getSpeed() != null) {
+                speedSum += point.getSpeed() * weight;
+                speedWeight += weight;
+            }
+            if (point.getCongestionDistance() != null) {
+                distanceSum += (double) point.getCongestionDistance() * weight;
+                distanceWeight += weight;
+            }
+        }
+        TrafficResponse first = bucket.get(0);
+        TrafficResponse average = new TrafficResponse(null, first.getRoadName(), first.getCity(),
+                first.getEvaluationStatus(), null, bucketStart);
+        average.setSpeed(speedWeight > 0 ? speedSum / speedWeight : null);
+        average.setCongestionDistance(distanceWeight > 0 ? (int) Math.round(distanceSum / distanceWeight) : null);
+        return average;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.carpool.service;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.entity.RollupGranularity;
+import com.example.carpool.ingest.TrafficIngestListener;
+import com.example.carpool.repository.TrafficRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 历史查询规划：根据内存中每条道路每小时的快照数量估算结果规模，
+ * 决定读取原始数据还是汇总表，并代替 COUNT(*) 提供分页总数，执行时只需一条数据查询
+ */
+@Component
+@Order(TrafficIngestListener.PLANNER_ORDER)
+public class HistoricalQueryPlanner implements TrafficIngestListener {
+
+    // 原始数据单次查询最多5000条
+    static final long MAX_RAW_ROWS = 5000;
+
+    // 原始数据查询时间范围不能超过30天
+    static final long MAX_RAW_RANGE_HOURS = 30 * 24;
+
+    private static final long HOUR_SECONDS = Duration.ofHours(1).getSeconds();
+
+    @Autowired
+    private TrafficRollupRepository trafficRollupRepository;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    // 内存中保留的小时计数天数，更早的时间范围只能给出上界估算
+    @Value("${traffic.historical.planner-retention-days:90}")
+    private int retentionDays;
+
+    // 道路id -> (小时 -> 快照数量)
+    private final Map<Integer, NavigableMap<LocalDateTime, AtomicLong>> hourlyCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 从小时汇总加载计数；汇总检查点与增量同步水位之间的少量记录可能漏计，只影响估算精度
+     */
+    @Override
+    public void loadInitialState(long lastSeenId) {
+        for (Object[] row : trafficRollupRepository.findSampleCountsSince(RollupGranularity.HOUR, retentionStart())) {
+            add((Integer) row[0], (LocalDateTime) row[1], ((Number) row[2]).longValue());
+        }
+    }
+
+    @Override
+    public void onTrafficIngested(List<TrafficSummary> rows) {
+        for (TrafficSummary row : rows) {
+            RoadDictionary.Road road = roadDictionary.resolve(row);
+            if (road != null && row.getRequestTime() != null) {
+                add(road.getId(), RollupGranularity.HOUR.bucketStart(row.getRequestTime()), 1);
+            }
+        }
+        LocalDateTime cutoff = retentionStart();
+        for (NavigableMap<LocalDateTime, AtomicLong> hours : hourlyCounts.values()) {
+            hours.headMap(cutoff).clear();
+        }
+    }
+
+    @Override
+    public void onTrafficExtended(List<TrafficSummary> rows) {
+        for (TrafficSummary row : rows) {
+            RoadDictionary.Road road = roadDictionary.resolve(row);
+            if (road != null) {
+                add(road.getId(), RollupGranularity.HOUR.bucketStart(row.getValidUntil()), 1);
+            }
+        }
+    }
+
+    /**
+     * 生成查询计划：指定分辨率且不小于最细汇总粒度时读汇总表，否则读原始数据并检查范围和估算行数
+     */
+    public Plan plan(RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime, Integer resolutionMinutes) {
+        if (resolutionMinutes != null) {
+            if (resolutionMinutes <= 0) {
+                throw new IllegalArgumentException("分辨率必须大于0分钟");
+            }
+            RollupGranularity granularity = RollupGranularity.coarsestWithin(Duration.ofMinutes(resolutionMinutes));
+            if (granularity != null) {
+                return new Plan(road, granularity, estimateBuckets(granularity, road.getId(), startTime, endTime));
+            }
+        }
+
+        if (ChronoUnit.HOURS.between(startTime, endTime) > MAX_RAW_RANGE_HOURS) {
+            throw new IllegalArgumentException("查询时间范围不能超过30天");
+        }
+        long estimatedRows = estimateRows(road.getId(), startTime, endTime);
+        if (estimatedRows > MAX_RAW_ROWS) {
+            throw new IllegalArgumentException("查询数据量过大，请缩小时间范围");
+        }
+        return new Plan(road, null, estimatedRows);
+    }
+
+    /**
+     * 生成降采样查询的计划：原始数据在30天以内且估算行数不超过上限时读原始数据，
+     * 否则自动选择时间桶数量不超过上限的最细汇总粒度（都超过时取最粗粒度），不因范围或数据量过大而报错
+     */
+    public Plan planDownsampled(RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime) {
+        if (ChronoUnit.HOURS.between(startTime, endTime) <= MAX_RAW_RANGE_HOURS) {
+            long estimatedRows = estimateRows(road.getId(), startTime, endTime);
+            if (estimatedRows <= MAX_RAW_ROWS) {
+                return new Plan(road, null, estimatedRows);
+            }
+        }
+        RollupGranularity[] granularities = RollupGranularity.values();
+        for (RollupGranularity granularity : granularities) {
+            long buckets = estimateBuckets(granularity, road.getId(), startTime, endTime);
+            if (buckets <= MAX_RAW_ROWS || granularity == granularities[granularities.length - 1]) {
+                return new Plan(road, granularity, buckets);
+            }
+        }
+        throw new IllegalStateException("没有可用的汇总粒度");
+    }
+
+    /**
+     * 估算原始数据行数：按时间范围与每个小时的重叠比例折算该小时的快照数量
+     */
+    long estimateRows(int roadId, LocalDateTime startTime, LocalDateTime endTime) {
+        NavigableMap<LocalDateTime, AtomicLong> hours = hourlyCounts.get(roadId);
+        if (hours == null) {
+            return 0;
+        }
+        double rows = 0;
+        for (Map.Entry<LocalDateTime, AtomicLong> entry
+                : hours.subMap(RollupGranularity.HOUR.bucketStart(startTime), true, endTime, true).entrySet()) {
+            LocalDateTime hourStart = entry.getKey();
+            LocalDateTime hourEnd = hourStart.plusHours(1);
+            LocalDateTime from = startTime.isAfter(hourStart) ? startTime : hourStart;
+            LocalDateTime to = endTime.isBefore(hourEnd) ? endTime : hourEnd;
+            double overlap = Math.max(Duration.between(from, to).getSeconds(), 0) / (double) HOUR_SECONDS;
+            rows += entry.getValue().get() * overlap;
+        }
+        return (long) Math.ceil(rows);
+    }
+
+    /**
+     * 估算汇总数据的时间桶数量：范围在内存保留期内时按有数据的小时计算，否则取理论上界
+     */
+    long estimateBuckets(RollupGranularity granularity, int roadId, LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime firstBucket = granularity.bucketStart(startTime);
+        long upperBound = Duration.between(firstBucket, endTime).getSeconds()
+                / granularity.getLength().getSeconds() + 1;
+        if (firstBucket.isBefore(retentionStart())) {
+            return upperBound;
+        }
+
+        NavigableMap<LocalDateTime, AtomicLong> hours = hourlyCounts.get(roadId);
+        if (hours == null) {
+            return 0;
+        }
+        long fiveMinuteBuckets = 0;
+        Set<LocalDateTime> buckets = new HashSet<>();
+        for (Map.Entry<LocalDateTime, AtomicLong> entry
+                : hours.subMap(RollupGranularity.HOUR.bucketStart(startTime), true, endTime, true).entrySet()) {
+            // 每小时最多12个5分钟时间桶
+            fiveMinuteBuckets += Math.min(entry.getValue().get(), 12);
+            buckets.add(granularity.bucketStart(entry.getKey()));
+        }
+        return Math.min(granularity == RollupGranularity.FIVE_MINUTES ? fiveMinuteBuckets : buckets.size(), upperBound);
+    }
+
+    private void add(int roadId, LocalDateTime hour, long count) {
+        hourlyCounts.computeIfAbsent(roadId, id -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(hour, h -> new AtomicLong())
+                .addAndGet(count);
+    }
+
+    private LocalDateTime retentionStart() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(retentionDays);
+    }
+
+    /**
+     * 查询计划：granularity 为 null 时读取原始数据；estimatedRows 为预计结果行数（汇总数据为时间桶数）
+     */
+    public record Plan(RoadDictionary.Road road, RollupGranularity granularity, long estimatedRows) {
+
+        /**
+         * 分页总数的估算值（只有整页返回时才需要）：取规划估算的行数，但不小于已返回到的位置 offset + returned，
+         * 估算偏小时当前页会被视为最后一页
+         */
+        public long totalFor(long offset, int returned) {
+            return Math.max(estimatedRows, offset + returned);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.carpool.service;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.repository.CongestionSectionRepository;
+import com.example.carpool.repository.RoadTrafficRepository;
+import com.example.carpool.timeseries.TrafficColdArchive;
+import com.example.carpool.timeseries.TrafficTimeSeriesStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 历史路况批量导出：通过只进游标逐行读取并直接写入输出流，内存占用与导出范围无关；
+ * 已归档的月份逐月读取冷数据（不含状态描述和路况描述）
+ */
+@Service
+public class TrafficExportService {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final String EXPORT_SQL =
+            "SELECT o.id, o.road_name, o.city, o.request_time, o.valid_until, o.evaluation_status, o.evaluation_status_desc, " +
+            "o.description, " +
+            "(SELECT AVG(cs.speed) FROM congestion_sections cs " +
+            " WHERE cs.overall_id = o.id AND cs.created_at BETWEEN ? AND ?) AS avg_speed, " +
+            "(SELECT SUM(cs.congestion_distance) FROM congestion_sections cs " +
+            " WHERE cs.overall_id = o.id AND cs.created_at BETWEEN ? AND ?) AS congestion_distance " +
+            "FROM road_traffic_overall o " +
+            "WHERE o.road_id = ? AND o.request_time BETWEEN ? AND ? AND COALESCE(o.valid_until, o.request_time) >= ? " +
+            "ORDER BY o.request_time ASC, o.id ASC";
+
+    private static final String CSV_HEADER =
+            "id,roadName,city,requestTime,evaluationStatus,evaluationStatusDesc,description,speed,congestionDistanceMeters";
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format parse(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("不支持的导出格式: " + value);
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    @Autowired
+    private TrafficColdArchive trafficColdArchive;
+
+    // 采集间隔，状态持续多次采集的记录按它展开为多行
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    /**
+     * 校验导出参数并解析道路，需在开始写响应之前调用，以便返回正常的错误响应
+     */
+    public RoadDictionary.Road validate(String roadName, String city, LocalDateTime startTime, LocalDateTime endTime) {
+        if (roadName == null || roadName.trim().isEmpty()) {
+            throw new IllegalArgumentException("道路名称不能为空");
+        }
+        if (city == null || city.trim().isEmpty()) {
+            throw new IllegalArgumentException("城市名称不能为空");
+        }
+        if (startTime == null || endTime == null) {
+            throw new IllegalArgumentException("开始时间和结束时间不能为空");
+        }
+        if (startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("开始时间必须早于结束时间");
+        }
+        RoadDictionary.Road road = roadDictionary.findRoad(roadName, city);
+        if (road == null) {
+            throw new IllegalArgumentException("道路 '" + roadName + "' 在城市 '" + city + "' 中不存在");
+        }
+        return road;
+    }
+
+    /**
+     * 按时间升序导出指定道路的历史数据，状态持续多次采集的记录按采集间隔展开为多行（记录id相同）。
+     * 时间范围按月份是否已归档切分为各段依次导出
+     */
+    public void export(RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime,
+                       Format format, OutputStream out) throws IOException {
+        RowSink sink = format == Format.CSV ? new CsvSink(out) : new NdjsonSink(out);
+        try {
+            for (TrafficColdArchive.Range range : trafficColdArchive.ranges(startTime, endTime)) {
+                if (range.archived()) {
+                    exportArchived(road, range.start(), range.end(), sink);
+                } else {
+                    exportLive(road, range, endTime, sink);
+                }
+            }
+            sink.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 导出已归档的一段，冷数据按月读取，每次只在内存中保留一个月的快照
+     */
+    private void exportArchived(RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime,
+                                RowSink sink) throws IOException {
+        for (LocalDateTime from = startTime; !from.isAfter(endTime); ) {
+            LocalDateTime nextMonth = from.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+            LocalDateTime to = nextMonth.isAfter(endTime) ? endTime : nextMonth.minusSeconds(1);
+            for (TrafficTimeSeriesStore.Point point : ascending(trafficColdArchive.query(road.getId(), from, to))) {
+                sink.write(ExportRow.of(road, point));
+            }
+            from = nextMonth;
+        }
+    }
+
+    /**
+     * 流式导出数据库中未归档的一段；上个月已归档时，其记录延续到本段开头的快照只在冷数据中，按时间穿插写出
+     */
+    private void exportLive(RoadDictionary.Road road, TrafficColdArchive.Range range, LocalDateTime endTime,
+                            RowSink sink) throws IOException {
+        LocalDateTime until = range.expandUntil(endTime);
+        LocalDateTime carriedUntil = range.start().plus(RoadTrafficRepository.MAX_VALID_SPAN);
+        Deque<TrafficTimeSeriesStore.Point> carried = new ArrayDeque<>(ascending(trafficColdArchive.query(
+                road.getId(), range.start(), carriedUntil.isBefore(range.end()) ? carriedUntil : range.end())));
+        Duration interval = Duration.ofMillis(collectIntervalMillis);
+        LocalDateTime rowsFrom = range.start().minus(RoadTrafficRepository.MAX_VALID_SPAN);
+        // 拥堵路段的 created_at 与所属记录的 request_time 一致，限定窗口后只扫描对应的分区
+        Timestamp sectionFrom = Timestamp.valueOf(rowsFrom.minus(CongestionSectionRepository.CREATED_AT_SLACK));
+        Timestamp sectionTo = Timestamp.valueOf(range.end().plus(CongestionSectionRepository.CREATED_AT_SLACK));
+        // 放在只读事务中执行，配置了从库时导出读取从库
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    EXPORT_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL驱动只有在fetchSize为Integer.MIN_VALUE时才逐行流式读取，否则会把整个结果集读入内存
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, sectionFrom);
+            ps.setTimestamp(2, sectionTo);
+            ps.setTimestamp(3, sectionFrom);
+            ps.setTimestamp(4, sectionTo);
+            ps.setInt(5, road.getId());
+            ps.setTimestamp(6, Timestamp.valueOf(rowsFrom));
+            ps.setTimestamp(7, Timestamp.valueOf(range.end()));
+            ps.setTimestamp(8, Timestamp.valueOf(range.start()));
+            return ps;
+        }, (ResultSet rs) -> {
+            LocalDateTime requestTime = rs.getTimestamp("request_time").toLocalDateTime();
+            if (trafficColdArchive.isArchived(requestTime)) {
+                // 回溯读取到的已归档月份的记录以冷数据为准
+                return;
+            }
+            Timestamp validUntil = rs.getTimestamp("valid_until");
+            TrafficSummary row = new TrafficSummary(rs.getLong("id"), road.getId(), null, null, null,
+                    requestTime, validUntil != null ? validUntil.toLocalDateTime() : null);
+            try {
+                for (LocalDateTime time : row.observationTimes(interval)) {
+                    if (!time.isBefore(range.start()) && !time.isAfter(until)) {
+                        while (!carried.isEmpty() && carried.peekFirst().requestTime().isBefore(time)) {
+                            sink.write(ExportRow.of(road, carried.pollFirst()));
+                        }
+                        sink.write(ExportRow.of(rs, time));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        for (TrafficTimeSeriesStore.Point point : carried) {
+            sink.write(ExportRow.of(road, point));
+        }
+    }
+
+    /**
+     * 冷数据查询结果按时间倒序，导出按时间升序
+     */
+    private static List<TrafficTimeSeriesStore.Point> ascending(List<TrafficTimeSeriesStore.Point> points) {
+        Collections.reverse(points);
+        return points;
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time != null ? time.format(TIME_FORMAT) : null;
+    }
+
+    private static Double nullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * 导出的一行，requestTime 为该行对应的采集时间
+     */
+    private record ExportRow(long id, String roadName, String city, LocalDateTime requestTime,
+                             Long evaluationStatus, String evaluationStatusDesc, String description,
+                             Double speed, Long congestionDistance) {
+
+        static ExportRow of(ResultSet rs, LocalDateTime requestTime) throws SQLException {
+            return new ExportRow(rs.getLong("id"), rs.getString("road_name"), rs.getString("city"), requestTime,
+                    nullableLong(rs, "evaluation_status"), rs.getString("evaluation_status_desc"),
+                    rs.getString("description"), nullableDouble(rs, "avg_speed"),
+                    nullableLong(rs, "congestion_distance"));
+        }
+
+        /**
+         * 冷数据中的快照，只保存了状态、速度和拥堵距离
+         */
+        static ExportRow of(RoadDictionary.Road road, TrafficTimeSeriesStore.Point point) {
+            return new ExportRow(point.id(), road.getName(), road.getCity().getName(), point.requestTime(),
+                    point.evaluationStatus() != null ? point.evaluationStatus().longValue() : null, null, null,
+                    point.speed(), point.congestionDistance());
+        }
+    }
+
+    /**
+     * 逐行写出结果
+     */
+    private interface RowSink {
+        void write(ExportRow row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * 每行一个JSON对象
+     */
+    private class NdjsonSink implements RowSink {
+        private final JsonGenerator generator;
+        private long rows;
+
+        NdjsonSink(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ExportRow row) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.id());
+            generator.writeStringField("roadName", row.roadName());
+            generator.writeStringField("city", row.city());
+            generator.writeStringField("requestTime", formatTime(row.requestTime()));
+            generator.writeObjectField("evaluationStatus", row.evaluationStatus());
+            generator.writeStringField("evaluationStatusDesc", row.evaluationStatusDesc());
+            generator.writeStringField("description", row.description());
+            generator.writeObjectField("speed", row.speed());
+            generator.writeObjectField("congestionDistanceMeters", row.congestionDistance());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                generator.flush();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * CSV，带UTF-8 BOM以便Excel正确识别中文
+     */
+    private static class CsvSink implements RowSink {
+        private final Writer writer;
+        private long rows;
+
+        CsvSink(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write('\uFEFF');
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(ExportRow row) throws IOException {
+            writer.write(String.valueOf(row.id()));
+            writer.write(',');
+            writer.write(csv(row.roadName()));
+            writer.write(',');
+            writer.write(csv(row.city()));
+            writer.write(',');
+            writer.write(csv(formatTime(row.requestTime())));
+            writer.write(',');
+            writer.write(csv(row.evaluationStatus()));
+            writer.write(',');
+            writer.write(csv(row.evaluationStatusDesc()));
+            writer.write(',');
+            writer.write(csv(row.description()));
+            writer.write(',');
+            writer.write(csv(row.speed()));
+            writer.write(',');
+            writer.write(csv(row.congestionDistance()));
+            writer.write('\n');
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private static String csv(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.carpool.service;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.collect.TrafficWriteBuffer;
+import com.example.carpool.dto.SectionAggregate;
+import com.example.carpool.dto.SpeedPercentilesResponse;
+import com.example.carpool.dto.TrafficResponse;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.entity.RollupGranularity;
+import com.example.carpool.entity.TrafficRollup;
+import com.example.carpool.ingest.TrafficIngestListener;
+import com.example.carpool.repository.CongestionSectionRepository;
+import com.example.carpool.repository.RoadTrafficRepository;
+import com.example.carpool.repository.TrafficRollupRepository;
+import com.example.carpool.stats.SpeedSketch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 路况时间桶汇总（5分钟/小时/天）及每小时速度草图的增量维护与查询
+ */
+@Service
+@Order(TrafficIngestListener.ROLLUP_ORDER)
+public class TrafficRollupService implements TrafficIngestListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficRollupService.class);
+
+    private static final int CATCH_UP_BATCH_SIZE = 500;
+
+    // 延续汇总水位至少落后当前时间的余量，覆盖采集开始到放入写缓冲之间的延迟
+    private static final Duration EXTENSION_LAG = Duration.ofMinutes(1);
+
+    @Autowired
+    private RoadTrafficRepository roadTrafficRepository;
+
+    @Autowired
+    private CongestionSectionRepository congestionSectionRepository;
+
+    @Autowired
+    private TrafficRollupRepository trafficRollupRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    // 采集进程的写缓冲，只在本实例运行采集时存在；写缓冲依赖增量同步，而增量同步分发给本服务，因此延迟获取
+    @Autowired
+    private ObjectProvider<TrafficWriteBuffer> trafficWriteBuffer;
+
+    // 采集间隔：状态持续多次采集的记录按它展开为各次采集计入时间桶
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    // 已汇总到的最大路况记录id，与数据库中的检查点保持一致
+    private final AtomicLong checkpoint = new AtomicLong();
+
+    // 延续汇总水位：id 不超过检查点的记录，采集时间不晚于它的各次采集都已计入时间桶；加载检查点之前为空
+    private volatile LocalDateTime extendedUntil;
+
+    /**
+     * 读取检查点并补齐停机期间入库的数据；停机期间延续的采集由第一次定时的 rollUpExtensions 补齐
+     * （需要先确认写缓冲中没有更早的待写入数据）
+     */
+    @Override
+    public void loadInitialState(long lastSeenId) {
+        Long saved = trafficRollupRepository.findCheckpoint();
+        if (saved == null) {
+            // 首次启动：历史数据由 script/create_rollup_tables.sql 回填，这里从当前最大id开始增量维护
+            Long maxId = roadTrafficRepository.findMaxId();
+            long start = maxId != null ? maxId : 0L;
+            transactionTemplate.executeWithoutResult(status -> trafficRollupRepository.saveCheckpoint(start));
+            saved = start;
+        }
+        checkpoint.set(saved);
+
+        LocalDateTime savedExtendedUntil = toLocalDateTime(trafficRollupRepository.findExtensionCheckpoint());
+        if (savedExtendedUntil == null) {
+            // 首次启用延续汇总：此前的记录都没有 valid_until，从当前时间开始维护
+            LocalDateTime start = LocalDateTime.now().minus(EXTENSION_LAG).truncatedTo(ChronoUnit.SECONDS);
+            transactionTemplate.executeWithoutResult(status -> trafficRollupRepository.saveExtensionCheckpoint(start));
+            savedExtendedUntil = start;
+        }
+        extendedUntil = savedExtendedUntil;
+
+        catchUp();
+        log.info("路况汇总检查点 id={}，延续水位 {}", checkpoint.get(), extendedUntil);
+    }
+
+    @Override
+    public void onTrafficIngested(List<TrafficSummary> rows) {
+        rollUp(rows);
+    }
+
+    /**
+     * 按查询计划读取汇总数据（一条查询），转换为与原始历史数据相同的响应结构，分页总数取计划的估算值（见 Plan.totalFor）
+     */
+    public Page<TrafficResponse> findRollups(HistoricalQueryPlanner.Plan plan,
+                                             LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        RollupGranularity granularity = plan.granularity();
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        List<TrafficResponse> content = trafficRollupRepository.findRollups(granularity, plan.road().getId(),
+                        granularity.bucketStart(startTime), endTime, unsorted)
+                .stream()
+                .map(this::convertToTrafficResponse)
+                .collect(Collectors.toList());
+        return PageableExecutionUtils.getPage(content, unsorted,
+                () -> plan.totalFor(unsorted.getOffset(), content.size()));
+    }
+
+    /**
+     * 合并时间范围内（按整小时）各小时的速度草图并估算分位数，只读取草图计数，不扫描拥堵路段原始数据
+     */
+    public SpeedPercentilesResponse getSpeedPercentiles(RoadDictionary.Road road,
+                                                        LocalDateTime startTime, LocalDateTime endTime) {
+        SpeedSketch sketch = new SpeedSketch();
+        for (Object[] row : trafficRollupRepository.sumSpeedBins(
+                road.getId(), RollupGranularity.HOUR.bucketStart(startTime), endTime)) {
+            sketch.addBin(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+        }
+
+        SpeedPercentilesResponse response = new SpeedPercentilesResponse();
+        response.setRoadName(road.getName());
+        response.setCity(road.getCity().getName());
+        response.setStartTime(startTime);
+        response.setEndTime(endTime);
+        response.setSampleCount(sketch.getCount());
+        response.setP50(sketch.quantile(0.5));
+        response.setP90(sketch.quantile(0.9));
+        response.setP99(sketch.quantile(0.99));
+        response.setRelativeAccuracy(SpeedSketch.RELATIVE_ACCURACY);
+        return response;
+    }
+
+    /**
+     * 汇总增量同步分发的一批新记录。分发的批次与检查点之间有空缺时（上一批汇总失败、增量同步已越过，
+     * 或记录id本身不连续）不信任这一批，改为从数据库读取检查点之后的全部记录，失败的记录不会被跳过
+     */
+    private synchronized void rollUp(List<TrafficSummary> rows) {
+        long from = checkpoint.get();
+        List<TrafficSummary> pending = rows.stream()
+                .filter(row -> row.getId() > from)
+                .collect(Collectors.toList());
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (pending.get(0).getId() != from + 1) {
+            catchUp();
+            return;
+        }
+        rollUpBatch(pending);
+    }
+
+    /**
+     * 从数据库分批读取检查点之后的记录并汇总
+     */
+    private synchronized void catchUp() {
+        List<TrafficSummary> rows;
+        do {
+            rows = roadTrafficRepository.findByIdGreaterThanOrderByIdAsc(
+                    checkpoint.get(), PageRequest.of(0, CATCH_UP_BATCH_SIZE));
+            if (!rows.isEmpty()) {
+                rollUpBatch(rows);
+            }
+        } while (rows.size() == CATCH_UP_BATCH_SIZE);
+    }
+
+    /**
+     * 将一批检查点之后的新记录（按id升序）累加到各粒度的时间桶，同一事务内推进检查点。
+     * 记录本身的采集时间总是计入，已延续的采集只计入不晚于延续水位的部分（见 extendedObservations），其余由 rollUpExtensions 补齐
+     */
+    private void rollUpBatch(List<TrafficSummary> pending) {
+        long lastId = pending.get(pending.size() - 1).getId();
+        LocalDateTime until = extendedUntil;
+        accumulate(pending, row -> observationsUntil(row, until), lastId, null);
+        checkpoint.set(lastId);
+    }
+
+    /**
+     * 记录本身的采集时间，加上不晚于 until 的延续采集
+     */
+    private List<LocalDateTime> observationsUntil(TrafficSummary row, LocalDateTime until) {
+        List<LocalDateTime> counted = new ArrayList<>();
+        counted.add(row.getRequestTime());
+        if (until != null) {
+            counted.addAll(extendedObservations(row, row.getRequestTime(), until));
+        }
+        return counted;
+    }
+
+    /**
+     * 记录在 (after, until] 内延续的采集：从实际写入的 valid_until 起按采集间隔向前推算，
+     * 已计入的采集不会因 valid_until 更新后重新均分而被再次计入或漏计。
+     * 与记录本身的采集时间相距不到半个采集间隔的推算时间视为记录本身的采集，不再计入
+     */
+    private List<LocalDateTime> extendedObservations(TrafficSummary row, LocalDateTime after, LocalDateTime until) {
+        List<LocalDateTime> times = new ArrayList<>();
+        LocalDateTime validUntil = row.getValidUntil();
+        if (validUntil == null || !validUntil.isAfter(row.getRequestTime()) || !validUntil.isAfter(after)) {
+            return times;
+        }
+        Duration interval = Duration.ofMillis(collectIntervalMillis);
+        LocalDateTime floor = row.getRequestTime().plus(interval.dividedBy(2));
+        if (after.isAfter(floor)) {
+            floor = after;
+        }
+        // valid_until 本身总是一次新的采集，即使距记录本身不到半个采集间隔
+        if (!validUntil.isAfter(until)) {
+            times.add(validUntil);
+        }
+        for (LocalDateTime time = validUntil.minus(interval); time.isAfter(floor); time = time.minus(interval)) {
+            if (!time.isAfter(until)) {
+                times.add(time);
+            }
+        }
+        return times;
+    }
+
+    /**
+     * 定时推进延续水位，将已汇总记录在两个水位之间延续的采集计入时间桶。
+     * 新水位不超过当前时间减去余量，本实例运行采集时还要早于写缓冲中最早的待写入数据（含溢出日志），
+     * 保证水位之前的 valid_until 都已写入数据库，之后才写入的延续不会被跳过。
+     * 延续只更新 valid_until、不产生新记录，从数据库读取而不依赖采集进程的回调，重启或采集运行在其他实例时同样生效
+     */
+    @Scheduled(fixedDelayString = "${traffic.rollup.extension-interval-ms:60000}")
+    public synchronized void rollUpExtensions() {
+        LocalDateTime from = extendedUntil;
+        if (from == null) {
+            return;
+        }
+        LocalDateTime to = LocalDateTime.now().minus(EXTENSION_LAG);
+        TrafficWriteBuffer buffer = trafficWriteBuffer.getIfAvailable();
+        LocalDateTime pendingSince = buffer != null ? buffer.getPendingSince() : null;
+        if (pendingSince != null && !pendingSince.isAfter(to)) {
+            // 启动时遗留的溢出日志（时间未知）重放完成之前水位不前进
+            if (!pendingSince.isAfter(from)) {
+                return;
+            }
+            to = pendingSince.minusSeconds(1);
+        }
+        LocalDateTime until = to.truncatedTo(ChronoUnit.SECONDS);
+        if (!until.isAfter(from)) {
+            return;
+        }
+        List<TrafficSummary> rows = roadTrafficRepository.findExtendedAfter(
+                from.minus(RoadTrafficRepository.MAX_VALID_SPAN), from, checkpoint.get());
+        accumulate(rows, row -> extendedObservations(row, from, until), null, until);
+        extendedUntil = until;
+    }
+
+    /**
+     * 按 observedAt 取得的各次采集时间累加到各粒度的时间桶和速度草图，
+     * checkpointId / extensionCheckpoint 不为空时在同一事务内保存对应的检查点
+     */
+    private void accumulate(List<TrafficSummary> pending, Function<TrafficSummary, List<LocalDateTime>> observedAt,
+                            Long checkpointId, LocalDateTime extensionCheckpoint) {
+        // 先在内存中展开各条记录的采集时间，按时间桶合并，减少写库次数
+        Map<Long, List<LocalDateTime>> observations = new HashMap<>();
+        List<TrafficSummary> observed = new ArrayList<>();
+        for (TrafficSummary row : pending) {
+            List<LocalDateTime> times = observedAt.apply(row);
+            if (!times.isEmpty()) {
+                observations.put(row.getId(), times);
+                observed.add(row);
+            }
+        }
+
+        Map<RollupKey, RollupDelta> deltas = new LinkedHashMap<>();
+        Map<Long, List<SketchKey>> sketchKeys = new HashMap<>();
+        if (!observed.isEmpty()) {
+            Map<Long, SectionAggregate> sections = congestionSectionRepository.aggregateBySummaries(observed).stream()
+                    .collect(Collectors.toMap(SectionAggregate::getOverallId, Function.identity()));
+            for (TrafficSummary row : observed) {
+                RoadDictionary.Road road = roadDictionary.resolve(row);
+                if (road == null) {
+                    continue;
+                }
+                for (LocalDateTime time : observations.get(row.getId())) {
+                    for (RollupGranularity granularity : RollupGranularity.values()) {
+                        RollupKey key = new RollupKey(granularity, road.getId(), granularity.bucketStart(time));
+                        deltas.computeIfAbsent(key, k -> new RollupDelta()).add(row, sections.get(row.getId()));
+                    }
+                    sketchKeys.computeIfAbsent(row.getId(), id -> new ArrayList<>())
+                            .add(new SketchKey(road.getId(), RollupGranularity.HOUR.bucketStart(time)));
+                }
+            }
+        }
+
+        // 每条道路每小时的速度草图增量，每次采集各计一次
+        Map<SketchKey, SpeedSketch> sketches = new LinkedHashMap<>();
+        if (!sketchKeys.isEmpty()) {
+            for (Object[] speed : congestionSectionRepository.findSpeedsBySummaries(observed)) {
+                List<SketchKey> keys = sketchKeys.get((Long) speed[0]);
+                if (keys == null) {
+                    continue;
+                }
+                for (SketchKey key : keys) {
+                    sketches.computeIfAbsent(key, k -> new SpeedSketch()).add(((BigDecimal) speed[1]).doubleValue());
+                }
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            deltas.forEach((key, delta) -> trafficRollupRepository.upsertRollup(
+                    key.granularity().name(), key.roadId(), key.bucketStart(),
+                    delta.sampleCount,
+                    delta.statusCounts[0], delta.statusCounts[1], delta.statusCounts[2],
+                    delta.statusCounts[3], delta.statusCounts[4],
+                    delta.speedCount > 0 ? delta.speedSum : null, delta.speedCount,
+                    delta.minSpeed, delta.maxSpeed, delta.distanceSum));
+            sketches.forEach((key, sketch) -> sketch.getBins().forEach((bin, samples) ->
+                    trafficRollupRepository.upsertSpeedBin(key.roadId(), key.hour(), bin, samples)));
+            if (checkpointId != null) {
+                trafficRollupRepository.saveCheckpoint(checkpointId);
+            }
+            if (extensionCheckpoint != null) {
+                trafficRollupRepository.saveExtensionCheckpoint(extensionCheckpoint);
+            }
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    /**
+     * 转换TrafficRollup为TrafficResponse，状态取时间桶内出现最多的评价（并列时取更拥堵的），道路和城市名称从字典解析
+     */
+    private TrafficResponse convertToTrafficResponse(TrafficRollup rollup) {
+        long[] counts = {
+                rollup.getStatus0Count(), rollup.getStatus1Count(), rollup.getStatus2Count(),
+                rollup.getStatus3Count(), rollup.getStatus4Count()
+        };
+        int dominant = 0;
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        for (int status = 0; status < counts.length; status++) {
+            histogram.put(status, counts[status]);
+            if (counts[status] > 0 && counts[status] >= counts[dominant]) {
+                dominant = status;
+            }
+        }
+
+        RoadDictionary.Road road = roadDictionary.findRoad(rollup.getRoadId());
+        TrafficResponse response = new TrafficResponse(null,
+                road != null ? road.getName() : null,
+                road != null ? road.getCity().getName() : null,
+                dominant, null, rollup.getBucketStart());
+        response.setSampleCount(rollup.getSampleCount());
+        response.setStatusHistogram(histogram);
+        if (rollup.getSpeedCount() > 0 && rollup.getSpeedSum() != null) {
+            response.setSpeed(rollup.getSpeedSum() / rollup.getSpeedCount());
+            response.setMinSpeed(rollup.getMinSpeed() != null ? rollup.getMinSpeed().doubleValue() : null);
+            response.setMaxSpeed(rollup.getMaxSpeed() != null ? rollup.getMaxSpeed().doubleValue() : null);
+        }
+        if (rollup.getSampleCount() > 0 && rollup.getCongestionDistanceSum() > 0) {
+            // 时间桶内每次采样的平均拥堵距离，转换为公里
+            response.setCongestionDistance((int) (rollup.getCongestionDistanceSum() / rollup.getSampleCount() / 1000));
+        }
+        return response;
+    }
+
+    private record RollupKey(RollupGranularity granularity, int roadId, LocalDateTime bucketStart) {
+    }
+
+    private record SketchKey(int roadId, LocalDateTime hour) {
+    }
+
+    /**
+     * 单个时间桶的待写入增量
+     */
+    private static class RollupDelta {
+        private long sampleCount;
+        private final long[] statusCounts = new long[5];
+        private double speedSum;
+        private long speedCount;
+        private BigDecimal minSpeed;
+        private BigDecimal maxSpeed;
+        private long distanceSum;
+
+        void add(TrafficSummary row, SectionAggregate sections) {
+            sampleCount++;
+            Integer status = row.getEvaluationStatus();
+            statusCounts[status != null && status >= 0 && status < statusCounts.length ? status : 0]++;
+
+            if (sections == null) {
+                return;
+            }
+            if (sections.getSpeedSampleCount() != null && sections.getSpeedSampleCount() > 0) {
+                speedSum += sections.getAvgSpeed() * sections.getSpeedSampleCount();
+                speedCount += sections.getSpeedSampleCount();
+                minSpeed = minSpeed == null || sections.getMinSpeed().compareTo(minSpeed) < 0 ? sections.getMinSpeed() : minSpeed;
+                maxSpeed = maxSpeed == null || sections.getMaxSpeed().compareTo(maxSpeed) > 0 ? sections.getMaxSpeed() : maxSpeed;
+            }
+            if (sections.getTotalDistance() != null) {
+                distanceSum += sections.getTotalDistance();
+            }
+        }
+    }
+}
@@ -1,40 +1,108 @@
 package com.example.carpool.service;
 
+import com.example.carpool.cache.LatestTrafficSnapshot;
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.cache.RoadSearchIndex;
+import com.example.carpool.cache.TrafficDetailCache;
+import com.example.carpool.dto.CursorPage;
+import com.example.carpool.dto.SectionAggregate;
+import com.example.carpool.dto.SpeedPercentilesResponse;
+import com.example.carpool.dto.TrafficCursor;
 import com.example.carpool.dto.TrafficResponse;
 import com.example.carpool.dto.TrafficStatsResponse;
-import com.example.carpool.entity.CongestionSection;
+import com.example.carpool.dto.TrafficSummary;
 import com.example.carpool.entity.RoadTrafficOverall;
+import com.example.carpool.metrics.SqlStatementCounter;
 import com.example.carpool.repository.CongestionSectionRepository;
 import com.example.carpool.repository.RoadTrafficRepository;
+import com.example.carpool.stats.TrafficStatusWindow;
+import com.example.carpool.timeseries.TrafficColdArchive;
+import com.example.carpool.timeseries.TrafficTimeSeriesStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 public class TrafficService {
 
+    private static final int MAX_SCROLL_SIZE = 1000;
+
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    // 降采样至少保留首尾两点和一个中间桶
+    private static final int MIN_DOWNSAMPLE_POINTS = 3;
+
     @Autowired
     private RoadTrafficRepository roadTrafficRepository;
 
     @Autowired
     private CongestionSectionRepository congestionSectionRepository;
 
+    @Autowired
+    private LatestTrafficSnapshot latestTrafficSnapshot;
+
+    @Autowired
+    private TrafficRollupService trafficRollupService;
+
+    @Autowired
+    private TrafficStatusWindow trafficStatusWindow;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    @Autowired
+    private RoadSearchIndex roadSearchIndex;
+
+    @Autowired
+    private TrafficDetailCache trafficDetailCache;
+
+    @Autowired
+    private HistoricalQueryPlanner historicalQueryPlanner;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Autowired
+    private TrafficTimeSeriesStore trafficTimeSeriesStore;
+
+    @Autowired
+    private TrafficColdArchive trafficColdArchive;
+
+    // 采集间隔：状态持续多次采集的记录（valid_until 不为空）按它展开为均匀分布的快照
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
     /**
-     * 获取所有道路的最新路况信息
+     * 获取所有道路的最新路况信息（直接读取内存快照，不开启事务也不访问数据库）
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<TrafficResponse> getAllLatestTraffic(Pageable pageable) {
-        Page<RoadTrafficOverall> trafficPage = roadTrafficRepository.findLatestForEachRoad(pageable);
+        Page<TrafficSummary> trafficPage = latestTrafficSnapshot.findAll(pageable);
         return convertToTrafficResponsePage(trafficPage);
     }
 
@@ -42,41 +110,105 @@ public class TrafficService {
      * 根据城市获取路况信息
      */
     public Page<TrafficResponse> getTrafficByCity(String city, Pageable pageable) {
-        Page<RoadTrafficOverall> trafficPage = roadTrafficRepository.findByCityOrderByRequestTimeDesc(city, pageable);
+        Page<TrafficSummary> trafficPage = roadTrafficRepository.findSummariesByCity(city, pageable);
         return convertToTrafficResponsePage(trafficPage);
     }
 
     /**
-     * 根据道路名称和城市查询路况
+     * 根据道路名称和城市查询路况（先在字典中解析道路id），数据库中的记录取完后接着读取已归档月份的记录
      */
     public Page<TrafficResponse> getTrafficByRoadAndCity(String roadName, String city, Pageable pageable) {
-        Page<RoadTrafficOverall> trafficPage = roadTrafficRepository.findLatestByRoadAndCity(roadName, city, pageable);
+        RoadDictionary.Road road = roadDictionary.findRoad(roadName, city);
+        if (road == null) {
+            return Page.empty(pageable);
+        }
+        Page<TrafficSummary> trafficPage = roadTrafficRepository.findLatestByRoad(road.getId(), pageable);
+        if (!trafficColdArchive.isEmpty()) {
+            trafficPage = withArchivedRows(road, trafficPage, pageable);
+        }
         return convertToTrafficResponsePage(trafficPage);
     }
 
+    /**
+     * 已归档的记录都早于数据库中的记录：数据库的记录不足一页时按时间倒序用冷数据补齐，总数加上已归档的记录数
+     */
+    private Page<TrafficSummary> withArchivedRows(RoadDictionary.Road road, Page<TrafficSummary> livePage,
+                                                  Pageable pageable) {
+        List<TrafficSummary> rows = withoutArchivedMonths(livePage.getContent());
+        if (livePage.getNumberOfElements() < pageable.getPageSize()) {
+            long offset = Math.max(0, pageable.getOffset() - livePage.getTotalElements());
+            rows.addAll(trafficColdArchive.findRows(road, null, null, offset, pageable.getPageSize() - rows.size()));
+        }
+        return new PageImpl<>(rows, pageable, livePage.getTotalElements() + trafficColdArchive.countRows(road.getId()));
+    }
+
     /**
      * 根据拥堵状态查询路况
      */
     public List<TrafficResponse> getTrafficByStatus(Integer status) {
-        List<RoadTrafficOverall> trafficList = roadTrafficRepository.findByEvaluationStatusOrderByRequestTimeDesc(status);
+        List<TrafficSummary> trafficList = roadTrafficRepository.findSummariesByStatus(status);
         return convertToTrafficResponseList(trafficList);
     }
 
     /**
-     * 根据关键字搜索路况
+     * 根据关键字搜索路况：n-gram 索引定位候选道路，按相关度排序，每条道路只返回最新路况
      */
-    public List<TrafficResponse> searchTraffic(String keyword) {
-        List<RoadTrafficOverall> trafficList = roadTrafficRepository.findByKeyword(keyword);
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<TrafficResponse> searchTraffic(String keyword, int limit) {
+        if (limit <= 0 || limit > MAX_SEARCH_LIMIT) {
+            throw new IllegalArgumentException("返回条数必须在1到" + MAX_SEARCH_LIMIT + "之间");
+        }
+        List<TrafficSummary> trafficList = new ArrayList<>();
+        for (RoadDictionary.Road road : roadSearchIndex.search(keyword, limit)) {
+            latestTrafficSnapshot.find(road.getId()).ifPresent(trafficList::add);
+        }
         return convertToTrafficResponseList(trafficList);
     }
 
     /**
-     * 获取路况统计信息
+     * 获取最近24小时的路况统计信息
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public TrafficStatsResponse getTrafficStats() {
-        LocalDateTime since = LocalDateTime.now().minusHours(24); // 获取最近24小时的统计
+        return getTrafficStats(TrafficStatusWindow.MAX_WINDOW_MINUTES, null);
+    }
 
-        List<Object[]> stats = roadTrafficRepository.getTrafficStatsSince(since);
+    /**
+     * 获取最近 windowMinutes 分钟的路况统计信息，city 为空时统计所有城市（读取内存滑动窗口，不访问数据库）
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public TrafficStatsResponse getTrafficStats(int windowMinutes, String city) {
+        long[] counts = new long[TrafficStatusWindow.STATUS_COUNT];
+        if (city == null || city.trim().isEmpty()) {
+            city = null;
+            counts = trafficStatusWindow.counts(null, windowMinutes);
+        } else {
+            // 滑动窗口已按城市显示名称合并各种写法
+            RoadDictionary.City resolved = roadDictionary.findCity(city);
+            city = resolved != null ? resolved.getName() : city.trim();
+            long[] cityCounts = resolved != null ? trafficStatusWindow.counts(resolved.getName(), windowMinutes) : null;
+            if (cityCounts != null) {
+                counts = cityCounts;
+            }
+        }
+        return buildTrafficStats(counts, windowMinutes, city);
+    }
+
+    /**
+     * 按城市获取最近 windowMinutes 分钟的路况统计信息
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Map<String, TrafficStatsResponse> getTrafficStatsByCity(int windowMinutes) {
+        Map<String, TrafficStatsResponse> result = new LinkedHashMap<>();
+        trafficStatusWindow.countsByCity(windowMinutes)
+                .forEach((city, counts) -> result.put(city, buildTrafficStats(counts, windowMinutes, city)));
+        return result;
+    }
+
+    /**
+     * 根据各状态的快照数量构造统计响应
+     */
+    private TrafficStatsResponse buildTrafficStats(long[] counts, int windowMinutes, String city) {
         Map<String, Long> statusDistribution = new HashMap<>();
         long total = 0;
         long smooth = 0;
@@ -84,13 +216,13 @@ public class TrafficService {
         long congested = 0;
         long heavy = 0;
 
-        for (Object[] stat : stats) {
-            Integer status = (Integer) stat[0];
-            Long count = (Long) stat[1];
+        for (int status = 0; status < counts.length; status++) {
+            long count = counts[status];
+            if (count == 0) {
+                continue;
+            }
             total += count;
-
-            String statusKey = getStatusKey(status);
-            statusDistribution.put(statusKey, count);
+            statusDistribution.merge(getStatusKey(status), count, Long::sum);
 
             switch (status) {
                 case 0:
@@ -111,64 +243,70 @@ public class TrafficService {
 
         TrafficStatsResponse response = new TrafficStatsResponse(total, smooth, slow, congested, heavy);
         response.setStatusDistribution(statusDistribution);
+        response.setWindowMinutes(windowMinutes);
+        response.setCity(city);
         return response;
     }
 
     /**
-     * 获取路况详情（包含拥堵路段信息）
+     * 获取路况详情（包含拥堵路段信息），优先读取详情缓存。记录入库后只有 valid_until 会随状态延续而更新，
+     * 详情不包含 valid_until，缓存的内容不会过时；需要时从记录列表读取
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public TrafficResponse getTrafficDetails(Long id) {
+        return trafficDetailCache.get(id, this::loadTrafficDetails);
+    }
+
+    private TrafficResponse loadTrafficDetails(Long id) {
         RoadTrafficOverall traffic = roadTrafficRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("路况信息不存在: " + id));
 
-        TrafficResponse response = convertToTrafficResponse(traffic);
-
-        // 获取拥堵路段的额外信息
-        List<CongestionSection> sections = congestionSectionRepository.findByOverallIdOrderByCreatedAtDesc(id);
-        if (!sections.isEmpty()) {
-            // 计算平均速度
-            Double avgSpeed = congestionSectionRepository.getAverageSpeedByOverallId(id);
-            if (avgSpeed != null) {
-                response.setSpeed(avgSpeed);
-            }
+        // 只有详情返回路况描述
+        TrafficResponse response = new TrafficResponse(
+            traffic.getId(),
+            traffic.getRoadName(),
+            traffic.getCity(),
+            traffic.getEvaluationStatus(),
+            traffic.getDescription(),
+            traffic.getRequestTime()
+        );
 
-            // 获取总拥堵距离
-            Integer totalDistance = congestionSectionRepository.getTotalCongestionDistance(id);
-            if (totalDistance != null && totalDistance > 0) {
-                response.setCongestionDistance(totalDistance / 1000); // 转换为公里
-            }
-        }
+        // 补充拥堵路段的平均速度和总拥堵距离
+        applySectionAggregate(response, loadSectionAggregates(List.of(TrafficSummary.of(traffic))).get(id));
 
         return response;
     }
 
     /**
-     * 转换RoadTrafficOverall为TrafficResponse
+     * 转换TrafficSummary为TrafficResponse（列表不包含路况描述，需要时调用详情接口）
      */
-    private TrafficResponse convertToTrafficResponse(RoadTrafficOverall traffic) {
-        return new TrafficResponse(
+    private TrafficResponse convertToTrafficResponse(TrafficSummary traffic) {
+        TrafficResponse response = new TrafficResponse(
             traffic.getId(),
             traffic.getRoadName(),
             traffic.getCity(),
             traffic.getEvaluationStatus(),
-            traffic.getDescription(),
+            null,
             traffic.getRequestTime()
         );
+        // 未展开的记录带上最后一次采集的时间，展开后的各次采集没有
+        response.setValidUntil(traffic.getValidUntil());
+        return response;
     }
 
     /**
-     * 批量转换RoadTrafficOverall为TrafficResponse
+     * 批量转换TrafficSummary为TrafficResponse
      */
-    private List<TrafficResponse> convertToTrafficResponseList(List<RoadTrafficOverall> trafficList) {
+    private List<TrafficResponse> convertToTrafficResponseList(List<TrafficSummary> trafficList) {
         return trafficList.stream()
                 .map(this::convertToTrafficResponse)
                 .collect(Collectors.toList());
     }
 
     /**
-     * 转换Page<RoadTrafficOverall>为Page<TrafficResponse>
+     * 转换Page<TrafficSummary>为Page<TrafficResponse>
      */
-    private Page<TrafficResponse> convertToTrafficResponsePage(Page<RoadTrafficOverall> trafficPage) {
+    private Page<TrafficResponse> convertToTrafficResponsePage(Page<TrafficSummary> trafficPage) {
         List<TrafficResponse> responseList = convertToTrafficResponseList(trafficPage.getContent());
         return new PageImpl<>(responseList, trafficPage.getPageable(), trafficPage.getTotalElements());
     }
@@ -193,85 +331,339 @@ public class TrafficService {
     /**
      * 获取指定道路在指定时间范围内的历史数据
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<TrafficResponse> getHistoricalTraffic(
             String roadName, String city,
             LocalDateTime startTime, LocalDateTime endTime,
             Pageable pageable) {
+        return getHistoricalTraffic(roadName, city, startTime, endTime, null, null, pageable);
+    }
 
-        // 参数验证
-        validateHistoricalQueryParams(roadName, city, startTime, endTime);
+    /**
+     * 获取指定道路在指定时间范围内的历史数据，指定分辨率（分钟）时从满足该分辨率的最粗粒度汇总表读取。
+     * 道路在内存字典中解析，行数由查询规划估算（不执行COUNT）；时间范围在近期时间序列窗口内时直接从内存读取，
+     * 否则原始数据只发出一条数据查询和一条拥堵路段批量聚合。不开启外层事务，内存命中时不占用数据库连接，
+     * 每次调用的SQL条数记录在 traffic.sql.statements{operation=historical} 指标中。
+     * 指定 maxPoints 时忽略分页，读取整个时间范围后按时间升序降采样到不超过 maxPoints 个点；
+     * 未指定分辨率时由查询规划按数据量自动选择原始数据或汇总粒度，长时间范围不会因原始数据过多而报错
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<TrafficResponse> getHistoricalTraffic(
+            String roadName, String city,
+            LocalDateTime startTime, LocalDateTime endTime,
+            Integer resolutionMinutes, Integer maxPoints, Pageable pageable) {
+        return sqlStatementCounter.measure("historical", () -> {
+            // 参数验证，同时解析道路id
+            RoadDictionary.Road road = validateHistoricalQueryParams(roadName, city, startTime, endTime);
+            if (maxPoints != null && maxPoints < MIN_DOWNSAMPLE_POINTS) {
+                throw new IllegalArgumentException("maxPoints不能小于" + MIN_DOWNSAMPLE_POINTS);
+            }
+            if (maxPoints == null) {
+                return findHistoricalPage(historicalQueryPlanner.plan(road, startTime, endTime, resolutionMinutes),
+                        startTime, endTime, pageable);
+            }
+            HistoricalQueryPlanner.Plan plan = resolutionMinutes != null
+                    ? historicalQueryPlanner.plan(road, startTime, endTime, resolutionMinutes)
+                    : historicalQueryPlanner.planDownsampled(road, startTime, endTime);
+            return new PageImpl<>(downsample(plan, startTime, endTime, maxPoints));
+        });
+    }
 
-        // 检查时间范围是否超过限制
-        long hoursBetween = ChronoUnit.HOURS.between(startTime, endTime);
-        if (hoursBetween > 30 * 24) { // 30天限制
-            throw new IllegalArgumentException("查询时间范围不能超过30天");
+    /**
+     * 读取整个时间范围（查询规划保证行数或时间桶数在上限附近）并降采样。
+     * 汇总数据按时间升序返回，原始数据按 (时间, id) 倒序返回，从尾部向前输入降采样器，都不需要再排序
+     */
+    List<TrafficResponse> downsample(HistoricalQueryPlanner.Plan plan, LocalDateTime startTime,
+                                     LocalDateTime endTime, int maxPoints) {
+        List<TrafficResponse> rows = findHistoricalPage(plan, startTime, endTime,
+                PageRequest.of(0, Integer.MAX_VALUE)).getContent();
+        HistoricalDownsampler downsampler = new HistoricalDownsampler(rows.size(), maxPoints);
+        if (plan.granularity() != null) {
+            rows.forEach(downsampler::add);
+        } else {
+            for (ListIterator<TrafficResponse> it = rows.listIterator(rows.size()); it.hasPrevious(); ) {
+                downsampler.add(it.previous());
+            }
+        }
+        return downsampler.finish();
+    }
+
+    /**
+     * 按查询计划读取一页历史数据：汇总表、近期时间序列、冷数据与原始数据表合并或原始数据表
+     */
+    private Page<TrafficResponse> findHistoricalPage(HistoricalQueryPlanner.Plan plan,
+                                                     LocalDateTime startTime, LocalDateTime endTime,
+                                                     Pageable pageable) {
+        if (plan.granularity() != null) {
+            return trafficRollupService.findRollups(plan, startTime, endTime, pageable);
+        }
+        if (trafficTimeSeriesStore.covers(startTime)) {
+            return getHistoricalTrafficFromMemory(plan.road(), startTime, endTime, pageable);
+        }
+        if (trafficColdArchive.overlaps(startTime, endTime)) {
+            return getHistoricalTrafficWithArchive(plan.road(), startTime, endTime, pageable);
         }
 
-        // 标准化城市名称用于查询
-        String normalizedCity = normalizeCityName(city.trim());
-        String trimmedRoadName = roadName.trim();
+        // 同一道路的记录区间互不重叠，每条记录在范围内至少展开为一个快照，
+        // 按时间倒序的前 offset + size 个快照一定来自前 offset + size 条记录
+        int limit = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE);
+        List<TrafficSummary> rows = roadTrafficRepository.findHistoricalTraffic(
+                plan.road().getId(), startTime, endTime, Limit.of(limit));
+        List<TrafficSummary> points = expandIntervals(rows, startTime, endTime);
+        int from = (int) Math.min(pageable.getOffset(), points.size());
+        int to = Math.min(from + pageable.getPageSize(), points.size());
+
+        // 一次分组聚合查询为整页历史数据补充速度和拥堵距离信息
+        List<TrafficResponse> responses = enrichWithSectionAggregates(points.subList(from, to), rows);
+        // 记录不足 limit 条时已取完整个范围，总数准确；否则使用查询规划的估算值，已展开的快照数为其下界
+        return PageableExecutionUtils.getPage(responses, pageable,
+                () -> rows.size() < limit ? points.size() : plan.totalFor(from, points.size() - from));
+    }
+
+    /**
+     * 从近期时间序列读取原始历史数据，结果已包含速度和拥堵距离，不访问数据库
+     */
+    private Page<TrafficResponse> getHistoricalTrafficFromMemory(
+            RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        List<TrafficTimeSeriesStore.Point> points = trafficTimeSeriesStore.query(road.getId(), startTime, endTime);
+        int from = (int) Math.min(pageable.getOffset(), points.size());
+        int to = Math.min(from + pageable.getPageSize(), points.size());
+
+        List<TrafficResponse> responses = new ArrayList<>(to - from);
+        for (TrafficTimeSeriesStore.Point point : points.subList(from, to)) {
+            responses.add(convertToTrafficResponse(road, point));
+        }
+        return new PageImpl<>(responses, pageable, points.size());
+    }
 
-        // 检查数据量是否过大（使用标准化的城市名称）
-        Long dataCount = roadTrafficRepository.countHistoricalTraffic(trimmedRoadName, normalizedCity, startTime, endTime);
-        if (dataCount > 5000) { // 单次查询最多5000条数据
-            throw new IllegalArgumentException("查询数据量过大，请缩小时间范围");
+    /**
+     * 时间范围涉及已归档月份时，合并冷数据文件与数据库中未归档月份的原始数据（范围不超过30天，整体在内存中排序分页），
+     * 只为当前页中来自数据库的记录查询拥堵路段聚合
+     */
+    private Page<TrafficResponse> getHistoricalTrafficWithArchive(
+            RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        List<TrafficResponse> responses = new ArrayList<>();
+        for (TrafficTimeSeriesStore.Point point : trafficColdArchive.query(road.getId(), startTime, endTime)) {
+            responses.add(convertToTrafficResponse(road, point));
         }
+        Map<Long, TrafficSummary> liveRows = new HashMap<>();
+        for (TrafficColdArchive.Range range : trafficColdArchive.liveRanges(startTime, endTime)) {
+            List<TrafficSummary> rows = findLiveHistoricalTraffic(road, range, (int) HistoricalQueryPlanner.MAX_RAW_ROWS);
+            rows.forEach(row -> liveRows.put(row.getId(), row));
+            for (TrafficSummary point : expandIntervals(rows, range.start(), range.expandUntil(endTime))) {
+                responses.add(convertToTrafficResponse(point));
+            }
+        }
+        responses.sort(Comparator.comparing(TrafficResponse::getRequestTime)
+                .thenComparing(TrafficResponse::getId).reversed());
+
+        int from = (int) Math.min(pageable.getOffset(), responses.size());
+        int to = Math.min(from + pageable.getPageSize(), responses.size());
+        List<TrafficResponse> page = responses.subList(from, to);
+        List<TrafficSummary> livePage = page.stream()
+                .map(response -> liveRows.get(response.getId()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, SectionAggregate> aggregates = loadSectionAggregates(livePage);
+        for (TrafficResponse response : page) {
+            applySectionAggregate(response, aggregates.get(response.getId()));
+        }
+        return new PageImpl<>(new ArrayList<>(page), pageable, responses.size());
+    }
+
+    /**
+     * 读取数据库中未归档的一段；按 MAX_VALID_SPAN 回溯读取到的已归档月份的记录以冷数据为准，不再返回
+     */
+    private List<TrafficSummary> findLiveHistoricalTraffic(RoadDictionary.Road road, TrafficColdArchive.Range range,
+                                                           int limit) {
+        return withoutArchivedMonths(roadTrafficRepository.findHistoricalTraffic(
+                road.getId(), range.start(), range.end(), Limit.of(limit)));
+    }
+
+    private List<TrafficSummary> withoutArchivedMonths(List<TrafficSummary> rows) {
+        return rows.stream()
+                .filter(row -> !trafficColdArchive.isArchived(row.getRequestTime()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 转换内存时间序列或冷数据中的快照，速度和拥堵距离已随快照保存
+     */
+    private TrafficResponse convertToTrafficResponse(RoadDictionary.Road road, TrafficTimeSeriesStore.Point point) {
+        TrafficResponse response = new TrafficResponse(
+            point.id(),
+            road.getName(),
+            road.getCity().getName(),
+            point.evaluationStatus(),
+            null,
+            point.requestTime()
+        );
+        applySectionAggregate(response, new SectionAggregate(
+                point.id(), point.speed(), point.congestionDistance(), null, null, null));
+        return response;
+    }
+
+    /**
+     * 获取指定道路在时间范围内的拥堵路段速度分位数（p50/p90/p99），由每小时的速度草图合并得出，不限制时间范围
+     */
+    public SpeedPercentilesResponse getSpeedPercentiles(String roadName, String city,
+                                                        LocalDateTime startTime, LocalDateTime endTime) {
+        RoadDictionary.Road road = validateHistoricalQueryParams(roadName, city, startTime, endTime);
+        return trafficRollupService.getSpeedPercentiles(road, startTime, endTime);
+    }
 
-        // 先尝试标准化的城市名称
-        Page<RoadTrafficOverall> trafficPage = roadTrafficRepository.findHistoricalTraffic(
-                trimmedRoadName, normalizedCity, startTime, endTime, pageable);
+    // ========== 游标分页查询相关方法 ==========
 
-        // 如果没有找到数据，尝试原始城市名称
-        if (trafficPage.getContent().isEmpty()) {
-            trafficPage = roadTrafficRepository.findHistoricalTraffic(
-                    trimmedRoadName, city.trim(), startTime, endTime, pageable);
+    /**
+     * 游标分页获取历史数据，不执行COUNT，翻页代价与页深无关。
+     * 状态持续的记录展开为各次采集，游标指向展开后的快照（时间, 记录id）
+     */
+    public CursorPage<TrafficResponse> scrollHistoricalTraffic(
+            String roadName, String city,
+            LocalDateTime startTime, LocalDateTime endTime,
+            String cursor, int size) {
+
+        RoadDictionary.Road road = validateHistoricalQueryParams(roadName, city, startTime, endTime);
+        if (ChronoUnit.HOURS.between(startTime, endTime) > 30 * 24) { // 30天限制
+            throw new IllegalArgumentException("查询时间范围不能超过30天");
         }
+        int limit = checkScrollSize(size);
+        TrafficCursor position = TrafficCursor.decode(cursor);
+
+        // 同一道路的记录区间互不重叠，游标所在的记录可能已没有游标之后的快照，多取两条记录即可凑够 limit + 1 个快照
+        LocalDateTime to = position != null && position.getRequestTime().isBefore(endTime)
+                ? position.getRequestTime() : endTime;
+        if (trafficColdArchive.overlaps(startTime, to)) {
+            return scrollHistoricalTrafficWithArchive(road, startTime, to, position, limit);
+        }
+        List<TrafficSummary> rows = roadTrafficRepository.findHistoricalTraffic(
+                road.getId(), startTime, to, Limit.of(limit + 2));
+        List<TrafficSummary> points = expandIntervals(rows, startTime, endTime).stream()
+                .filter(point -> position == null || isBeforeCursor(point, position))
+                .limit(limit + 1)
+                .collect(Collectors.toList());
+        return toCursorPage(points, limit, page -> enrichWithSectionAggregates(page, rows));
+    }
 
-        // 为每条历史数据补充速度信息
-        List<TrafficResponse> responses = trafficPage.getContent().stream()
-                .map(traffic -> {
-                    TrafficResponse response = convertToTrafficResponse(traffic);
-                    // 获取该时间点的平均速度
-                    Double avgSpeed = getAverageSpeedForTraffic(traffic);
-                    if (avgSpeed != null) {
-                        response.setSpeed(avgSpeed);
-                    }
-                    // 获取拥堵距离
-                    Integer congestionDistance = getCongestionDistanceForTraffic(traffic);
-                    if (congestionDistance != null) {
-                        response.setCongestionDistance(congestionDistance);
-                    }
-                    return response;
-                })
+    /**
+     * 时间范围涉及已归档月份时的游标分页：冷数据的快照与数据库中未归档各段展开的快照合并后按游标过滤，
+     * 各段都只需取游标之前的 limit + 2 条记录
+     */
+    private CursorPage<TrafficResponse> scrollHistoricalTrafficWithArchive(
+            RoadDictionary.Road road, LocalDateTime startTime, LocalDateTime endTime,
+            TrafficCursor position, int limit) {
+        List<TrafficSummary> points = new ArrayList<>();
+        Map<Long, SectionAggregate> archived = new HashMap<>();
+        for (TrafficTimeSeriesStore.Point point : trafficColdArchive.query(road.getId(), startTime, endTime)) {
+            points.add(new TrafficSummary(point.id(), road.getId(), road.getName(), road.getCity().getName(),
+                    point.evaluationStatus(), point.requestTime()));
+            archived.putIfAbsent(point.id(), new SectionAggregate(
+                    point.id(), point.speed(), point.congestionDistance(), null, null, null));
+        }
+        List<TrafficSummary> rows = new ArrayList<>();
+        for (TrafficColdArchive.Range range : trafficColdArchive.liveRanges(startTime, endTime)) {
+            List<TrafficSummary> rangeRows = findLiveHistoricalTraffic(road, range, limit + 2);
+            rows.addAll(rangeRows);
+            points.addAll(expandIntervals(rangeRows, range.start(), range.expandUntil(endTime)));
+        }
+        List<TrafficSummary> page = points.stream()
+                .filter(point -> position == null || isBeforeCursor(point, position))
+                .sorted(Comparator.comparing(TrafficSummary::getRequestTime)
+                        .thenComparing(TrafficSummary::getId).reversed())
+                .limit(limit + 1)
                 .collect(Collectors.toList());
+        return toCursorPage(page, limit, pageRows -> {
+            List<TrafficResponse> responses = enrichWithSectionAggregates(pageRows, rows);
+            responses.forEach(response -> applySectionAggregate(response, archived.get(response.getId())));
+            return responses;
+        });
+    }
+
+    private static boolean isBeforeCursor(TrafficSummary point, TrafficCursor position) {
+        int compare = point.getRequestTime().compareTo(position.getRequestTime());
+        return compare < 0 || (compare == 0 && point.getId() < position.getId());
+    }
+
+    /**
+     * 游标分页获取城市路况
+     */
+    public CursorPage<TrafficResponse> scrollTrafficByCity(String city, String cursor, int size) {
+        int limit = checkScrollSize(size);
+        TrafficCursor position = TrafficCursor.decode(cursor);
+        List<TrafficSummary> rows = position == null
+                ? roadTrafficRepository.scrollByCity(city, Limit.of(limit + 1))
+                : roadTrafficRepository.scrollByCityAfter(
+                        city, position.getRequestTime(), position.getId(), Limit.of(limit + 1));
+        return toCursorPage(rows, limit, this::convertToTrafficResponseList);
+    }
+
+    /**
+     * 游标分页获取指定道路路况，数据库中的记录取完后接着读取已归档月份的记录（都早于数据库中的记录）
+     */
+    public CursorPage<TrafficResponse> scrollTrafficByRoadAndCity(String roadName, String city, String cursor, int size) {
+        int limit = checkScrollSize(size);
+        TrafficCursor position = TrafficCursor.decode(cursor);
+        RoadDictionary.Road road = roadDictionary.findRoad(roadName, city);
+        if (road == null) {
+            return new CursorPage<>(List.of(), limit, null);
+        }
+        List<TrafficSummary> rows = position == null
+                ? roadTrafficRepository.scrollByRoad(road.getId(), Limit.of(limit + 1))
+                : roadTrafficRepository.scrollByRoadAfter(
+                        road.getId(), position.getRequestTime(), position.getId(), Limit.of(limit + 1));
+        if (!trafficColdArchive.isEmpty() && rows.size() <= limit) {
+            rows = withoutArchivedMonths(rows);
+            rows.addAll(trafficColdArchive.findRows(road,
+                    position != null ? position.getRequestTime() : null, position != null ? position.getId() : null,
+                    0, limit + 1 - rows.size()));
+        }
+        return toCursorPage(rows, limit, this::convertToTrafficResponseList);
+    }
 
-        return new PageImpl<>(responses, trafficPage.getPageable(), trafficPage.getTotalElements());
+    /**
+     * 多查询的一条用于判断是否还有下一页，下一页游标取本页最后一条记录
+     */
+    private CursorPage<TrafficResponse> toCursorPage(
+            List<TrafficSummary> rows, int size,
+            Function<List<TrafficSummary>, List<TrafficResponse>> converter) {
+        boolean hasNext = rows.size() > size;
+        List<TrafficSummary> pageRows = hasNext ? rows.subList(0, size) : rows;
+
+        String next = null;
+        if (hasNext) {
+            TrafficSummary last = pageRows.get(pageRows.size() - 1);
+            next = new TrafficCursor(last.getRequestTime(), last.getId()).encode();
+        }
+        return new CursorPage<>(converter.apply(pageRows), size, next);
+    }
+
+    private int checkScrollSize(int size) {
+        if (size <= 0 || size > MAX_SCROLL_SIZE) {
+            throw new IllegalArgumentException("每页大小必须在1到" + MAX_SCROLL_SIZE + "之间");
+        }
+        return size;
     }
 
     /**
-     * 获取所有支持的城市列表
+     * 获取所有支持的城市列表（读取内存字典）
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<String> getSupportedCities() {
-        return roadTrafficRepository.findDistinctCities();
+        return roadDictionary.getCityNames();
     }
 
     /**
-     * 获取指定城市的所有道路列表
+     * 获取指定城市的所有道路列表（读取内存字典，城市名称带不带"市"等后缀均可）
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<String> getRoadsByCity(String city) {
         if (city == null || city.trim().isEmpty()) {
             throw new IllegalArgumentException("城市名称不能为空");
         }
 
-        // 尝试标准化的城市名称（移除"市"后缀）
-        String normalizedCity = normalizeCityName(city.trim());
-        List<String> roads = roadTrafficRepository.findDistinctRoadsByCity(normalizedCity);
-
-        // 如果没有找到，尝试原始城市名称
-        if (roads.isEmpty()) {
-            roads = roadTrafficRepository.findDistinctRoadsByCity(city.trim());
-        }
-
+        RoadDictionary.City resolved = roadDictionary.findCity(city);
+        List<String> roads = resolved != null ? resolved.getRoadNames() : List.of();
         if (roads.isEmpty()) {
             throw new IllegalArgumentException("城市 '" + city + "' 暂无数据或城市名称错误");
         }
@@ -279,9 +671,9 @@ public class TrafficService {
     }
 
     /**
-     * 验证历史数据查询参数
+     * 验证历史数据查询参数，返回解析出的道路
      */
-    private void validateHistoricalQueryParams(String roadName, String city, LocalDateTime startTime, LocalDateTime endTime) {
+    private RoadDictionary.Road validateHistoricalQueryParams(String roadName, String city, LocalDateTime startTime, LocalDateTime endTime) {
         if (roadName == null || roadName.trim().isEmpty()) {
             throw new IllegalArgumentException("道路名称不能为空");
         }
@@ -301,64 +693,77 @@ public class TrafficService {
             throw new IllegalArgumentException("结束时间不能超过当前时间");
         }
 
-        // 标准化城市名称（移除"市"后缀）
-        String normalizedCity = normalizeCityName(city.trim());
-        String trimmedRoadName = roadName.trim();
+        // 检查道路是否存在（内存字典查找，不访问数据库）
+        RoadDictionary.Road road = roadDictionary.findRoad(roadName, city);
+        if (road == null) {
+            throw new IllegalArgumentException("道路 '" + roadName + "' 在城市 '" + city + "' 中不存在");
+        }
+        return road;
+    }
 
-        // 检查道路是否存在
-        if (!roadTrafficRepository.existsByRoadNameAndCity(trimmedRoadName, normalizedCity)) {
-            // 尝试原始城市名称
-            if (!roadTrafficRepository.existsByRoadNameAndCity(trimmedRoadName, city.trim())) {
-                throw new IllegalArgumentException("道路 '" + roadName + "' 在城市 '" + city + "' 中不存在");
+    /**
+     * 把记录展开为时间范围内（含两端）的各次采集，按时间倒序、id倒序排列
+     */
+    private List<TrafficSummary> expandIntervals(List<TrafficSummary> rows,
+                                                 LocalDateTime startTime, LocalDateTime endTime) {
+        Duration interval = Duration.ofMillis(collectIntervalMillis);
+        List<TrafficSummary> points = new ArrayList<>(rows.size());
+        for (TrafficSummary row : rows) {
+            for (LocalDateTime time : row.observationTimes(interval)) {
+                if (!time.isBefore(startTime) && !time.isAfter(endTime)) {
+                    points.add(row.at(time));
+                }
             }
         }
+        points.sort(Comparator.comparing(TrafficSummary::getRequestTime)
+                .thenComparing(TrafficSummary::getId).reversed());
+        return points;
     }
 
     /**
-     * 标准化城市名称，移除常见的后缀
+     * 转换展开后的快照并批量补充拥堵路段聚合信息；聚合按原记录（rows）查询，
+     * 拥堵路段的 created_at 与原记录的 request_time 一致
      */
-    private String normalizeCityName(String cityName) {
-        if (cityName == null) return null;
+    private List<TrafficResponse> enrichWithSectionAggregates(List<TrafficSummary> trafficList,
+                                                              List<TrafficSummary> rows) {
+        Set<Long> ids = trafficList.stream().map(TrafficSummary::getId).collect(Collectors.toSet());
+        Map<Long, SectionAggregate> aggregates = loadSectionAggregates(rows.stream()
+                .filter(row -> ids.contains(row.getId()))
+                .collect(Collectors.toList()));
 
-        // 移除常见的城市后缀
-        if (cityName.endsWith("市")) {
-            return cityName.substring(0, cityName.length() - 1);
-        }
-        if (cityName.endsWith("自治区")) {
-            return cityName.substring(0, cityName.length() - 3);
-        }
-        if (cityName.endsWith("自治州")) {
-            return cityName.substring(0, cityName.length() - 3);
-        }
-        if (cityName.endsWith("地区")) {
-            return cityName.substring(0, cityName.length() - 2);
-        }
-
-        return cityName;
+        return trafficList.stream()
+                .map(traffic -> {
+                    TrafficResponse response = convertToTrafficResponse(traffic);
+                    applySectionAggregate(response, aggregates.get(traffic.getId()));
+                    return response;
+                })
+                .collect(Collectors.toList());
     }
 
     /**
-     * 获取指定路况记录的平均速度
+     * 批量加载拥堵路段聚合信息，按overall_id索引
      */
-    private Double getAverageSpeedForTraffic(RoadTrafficOverall traffic) {
-        List<CongestionSection> sections = congestionSectionRepository.findByOverallIdOrderByCreatedAtDesc(traffic.getId());
-        if (sections.isEmpty()) {
-            return null;
+    private Map<Long, SectionAggregate> loadSectionAggregates(List<TrafficSummary> trafficList) {
+        if (trafficList.isEmpty()) {
+            return Collections.emptyMap();
         }
-
-        java.util.OptionalDouble avgSpeed = sections.stream()
-                .filter(section -> section.getSpeed() != null)
-                .mapToDouble(section -> section.getSpeed().doubleValue())
-                .average();
-
-        return avgSpeed.isPresent() ? avgSpeed.getAsDouble() : null;
+        return congestionSectionRepository.aggregateBySummaries(trafficList).stream()
+                .collect(Collectors.toMap(SectionAggregate::getOverallId, Function.identity()));
     }
 
     /**
-     * 获取指定路况记录的拥堵距离
+     * 将拥堵路段聚合信息写入响应
      */
-    private Integer getCongestionDistanceForTraffic(RoadTrafficOverall traffic) {
-        Integer totalDistance = congestionSectionRepository.getTotalCongestionDistance(traffic.getId());
-        return (totalDistance != null && totalDistance > 0) ? totalDistance / 1000 : null; // 转换为公里
+    private void applySectionAggregate(TrafficResponse response, SectionAggregate aggregate) {
+        if (aggregate == null) {
+            return;
+        }
+        if (aggregate.getAvgSpeed() != null) {
+            response.setSpeed(aggregate.getAvgSpeed());
+        }
+        Long totalDistance = aggregate.getTotalDistance();
+        if (totalDistance != null && totalDistance > 0) {
+            response.setCongestionDistance((int) (totalDistance / 1000)); // 转换为公里
+        }
     }
 }
\ No newline at end of file
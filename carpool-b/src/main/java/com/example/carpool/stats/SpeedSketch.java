@@ -0,0 +1,86 @@
+package com.example.carpool.stats;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 拥堵路段速度的分位数草图（对数分桶，相对误差1%）
+ * 第 i 号桶（i ≥ 1）容纳 (γ^(i-1), γ^i] 范围内的速度，不超过1km/h的速度计入0号桶；
+ * 草图只保存各桶计数，同一道路不同时间桶的草图直接按桶号相加即可合并，
+ * 0~200km/h 的速度最多占用约270个桶，内存与样本数无关
+ */
+public final class SpeedSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // 不超过该速度（km/h）的样本计入0号桶
+    private static final double MIN_INDEXABLE_SPEED = 1.0;
+
+    // 桶号 -> 样本数
+    private final TreeMap<Integer, Long> bins = new TreeMap<>();
+
+    private long count;
+
+    /**
+     * 速度所在的桶号（与 script/create_speed_histogram_table.sql 中的回填公式一致）
+     */
+    public static int binOf(double speed) {
+        return speed <= MIN_INDEXABLE_SPEED ? 0 : (int) Math.ceil(Math.log(speed) / LOG_GAMMA);
+    }
+
+    /**
+     * 桶的代表值：与桶内任意速度的相对误差不超过 RELATIVE_ACCURACY
+     */
+    public static double valueOf(int bin) {
+        return bin == 0 ? 0 : 2 * Math.pow(GAMMA, bin) / (GAMMA + 1);
+    }
+
+    public void add(double speed) {
+        addBin(binOf(speed), 1);
+    }
+
+    public void addBin(int bin, long samples) {
+        if (samples <= 0) {
+            return;
+        }
+        bins.merge(bin, samples, Long::sum);
+        count += samples;
+    }
+
+    public void merge(SpeedSketch other) {
+        other.bins.forEach(this::addBin);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 各桶计数（按桶号升序）
+     */
+    public Map<Integer, Long> getBins() {
+        return bins;
+    }
+
+    /**
+     * 估算分位数，q 取值 [0, 1]；没有样本时返回 null
+     */
+    public Double quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : bins.entrySet()) {
+            seen += entry.getValue();
+            if (seen > rank) {
+                return valueOf(entry.getKey());
+            }
+        }
+        return valueOf(bins.lastKey());
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.carpool.stats;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.ingest.TrafficIngestListener;
+import com.example.carpool.repository.RoadTrafficRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 最近24小时各拥堵状态快照数量的滑动窗口计数器
+ * 以分钟为槽位的环形缓冲区，新数据累加到所在分钟的槽位；
+ * 1小时/6小时/24小时窗口维护滚动合计，过期槽位从合计中减去，查询为常数时间
+ */
+@Component
+@Order(TrafficIngestListener.VIEW_ORDER)
+public class TrafficStatusWindow implements TrafficIngestListener {
+
+    public static final int MAX_WINDOW_MINUTES = 24 * 60;
+
+    public static final int STATUS_COUNT = 5;
+
+    private static final int[] TRACKED_WINDOWS = {60, 6 * 60, MAX_WINDOW_MINUTES};
+
+    @Autowired
+    private RoadTrafficRepository roadTrafficRepository;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    // 采集间隔，用于把状态持续多次采集的记录展开为各次采集
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    private final StatusRing total = new StatusRing();
+
+    // 城市显示名称（同一城市的各种写法合并）-> 计数器
+    private final Map<String, StatusRing> byCity = new HashMap<>();
+
+    /**
+     * 从数据库按 (城市, 状态, 分钟) 分组回填最近24小时的数据；
+     * 只统计增量水位之内的记录，水位之后的记录由第一次轮询计入
+     */
+    @Override
+    public synchronized void loadInitialState(long lastSeenId) {
+        LocalDateTime now = LocalDateTime.now();
+        advanceAll(toMinute(now));
+
+        List<Object[]> rows = roadTrafficRepository.countByCityStatusAndMinuteSince(
+                now.minusMinutes(MAX_WINDOW_MINUTES), lastSeenId);
+        for (Object[] row : rows) {
+            String city = (String) row[0];
+            Integer status = row[1] != null ? ((Number) row[1]).intValue() : null;
+            LocalDateTime minute = row[2] instanceof Timestamp timestamp
+                    ? timestamp.toLocalDateTime()
+                    : (LocalDateTime) row[2];
+            long count = ((Number) row[3]).longValue();
+            add(city, status, toMinute(minute), count);
+        }
+
+        // 上面只计入了每条记录的 request_time，状态持续的记录再补计之后的各次采集（轮询只分发 request_time，不限水位）
+        LocalDateTime since = now.minusMinutes(MAX_WINDOW_MINUTES);
+        Duration interval = Duration.ofMillis(collectIntervalMillis);
+        for (TrafficSummary row : roadTrafficRepository.findExtendedSince(since.minus(RoadTrafficRepository.MAX_VALID_SPAN))) {
+            List<LocalDateTime> times = row.observationTimes(interval);
+            for (LocalDateTime time : times.subList(1, times.size())) {
+                if (!time.isBefore(since)) {
+                    add(row.getCity(), row.getEvaluationStatus(), toMinute(time), 1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onTrafficIngested(List<TrafficSummary> rows) {
+        for (TrafficSummary row : rows) {
+            if (row.getRequestTime() != null) {
+                add(row.getCity(), row.getEvaluationStatus(), toMinute(row.getRequestTime()), 1);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onTrafficExtended(List<TrafficSummary> rows) {
+        for (TrafficSummary row : rows) {
+            add(row.getCity(), row.getEvaluationStatus(), toMinute(row.getValidUntil()), 1);
+        }
+    }
+
+    /**
+     * 获取最近 windowMinutes 分钟内各状态的快照数量，city 为空时统计所有城市（可用城市的任意写法）；城市无数据时返回null
+     */
+    public synchronized long[] counts(String city, int windowMinutes) {
+        checkWindow(windowMinutes);
+        long now = toMinute(LocalDateTime.now());
+        StatusRing ring = city == null ? total : byCity.get(cityName(city));
+        if (ring == null) {
+            return null;
+        }
+        ring.advance(now);
+        return ring.totals(windowMinutes);
+    }
+
+    /**
+     * 按城市（显示名称）获取最近 windowMinutes 分钟内各状态的快照数量
+     */
+    public synchronized Map<String, long[]> countsByCity(int windowMinutes) {
+        checkWindow(windowMinutes);
+        long now = toMinute(LocalDateTime.now());
+        Map<String, long[]> result = new LinkedHashMap<>();
+        new TreeMap<>(byCity).forEach((city, ring) -> {
+            ring.advance(now);
+            result.put(city, ring.totals(windowMinutes));
+        });
+        return result;
+    }
+
+    private void add(String city, Integer status, long minute, long count) {
+        int index = status != null && status >= 0 && status < STATUS_COUNT ? status : 0;
+        total.add(minute, index, count);
+        if (city != null) {
+            byCity.computeIfAbsent(cityName(city), c -> {
+                StatusRing ring = new StatusRing();
+                ring.advance(total.now);
+                return ring;
+            }).add(minute, index, count);
+        }
+    }
+
+    /**
+     * 城市的显示名称，与 RoadDictionary 合并城市写法的规则一致
+     */
+    private String cityName(String city) {
+        RoadDictionary.City resolved = roadDictionary.findCity(city);
+        return resolved != null ? resolved.getName() : city;
+    }
+
+    private void advanceAll(long minute) {
+        total.advance(minute);
+        byCity.values().forEach(ring -> ring.advance(minute));
+    }
+
+    private static void checkWindow(int windowMinutes) {
+        if (windowMinutes <= 0 || windowMinutes > MAX_WINDOW_MINUTES) {
+            throw new IllegalArgumentException("统计窗口必须在1分钟到24小时之间");
+        }
+    }
+
+    private static long toMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * 单个统计范围（全部或单个城市）的环形缓冲区
+     */
+    private static final class StatusRing {
+        private final long[] slotMinute = new long[MAX_WINDOW_MINUTES];
+        private final long[][] slotCounts = new long[MAX_WINDOW_MINUTES][STATUS_COUNT];
+        private final long[][] windowTotals = new long[TRACKED_WINDOWS.length][STATUS_COUNT];
+        private long now = Long.MIN_VALUE;
+
+        StatusRing() {
+            Arrays.fill(slotMinute, Long.MIN_VALUE);
+        }
+
+        /**
+         * 推进当前分钟，把离开各窗口的槽位从滚动合计中减去
+         */
+        void advance(long minute) {
+            if (now == Long.MIN_VALUE) {
+                now = minute;
+                return;
+            }
+            if (minute <= now) {
+                return;
+            }
+            for (int w = 0; w < TRACKED_WINDOWS.length; w++) {
+                int window = TRACKED_WINDOWS[w];
+                if (minute - now >= window) {
+                    Arrays.fill(windowTotals[w], 0);
+                    continue;
+                }
+                // 离开窗口的分钟区间为 (now - window, minute - window]
+                for (long m = now - window + 1; m <= minute - window; m++) {
+                    int index = index(m);
+                    if (slotMinute[index] == m) {
+                        for (int s = 0; s < STATUS_COUNT; s++) {
+                            windowTotals[w][s] -= slotCounts[index][s];
+                        }
+                    }
+                }
+            }
+            now = minute;
+        }
+
+        void add(long minute, int status, long count) {
+            advance(minute);
+            if (minute <= now - MAX_WINDOW_MINUTES) {
+                return; // 已超出最大窗口
+            }
+            int index = index(minute);
+            if (slotMinute[index] != minute) {
+                // 槽位中的旧分钟早已离开所有窗口，直接复用
+                Arrays.fill(slotCounts[index], 0);
+                slotMinute[index] = minute;
+            }
+            slotCounts[index][status] += count;
+            for (int w = 0; w < TRACKED_WINDOWS.length; w++) {
+                if (minute > now - TRACKED_WINDOWS[w]) {
+                    windowTotals[w][status] += count;
+                }
+            }
+        }
+
+        long[] totals(int windowMinutes) {
+            for (int w = 0; w < TRACKED_WINDOWS.length; w++) {
+                if (TRACKED_WINDOWS[w] == windowMinutes) {
+                    return windowTotals[w].clone();
+                }
+            }
+            // 非常用窗口长度直接累加槽位
+            long[] result = new long[STATUS_COUNT];
+            for (long m = now - windowMinutes + 1; m <= now; m++) {
+                int index = index(m);
+                if (slotMinute[index] == m) {
+                    for (int s = 0; s < STATUS_COUNT; s++) {
+                        result[s] += slotCounts[index][s];
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static int index(long minute) {
+            return (int) Math.floorMod(minute, (long) MAX_WINDOW_MINUTES);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.carpool.timeseries;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一个月份的冷数据文件，写入后不再修改：
+ * 文件头（魔数、版本、月份）之后是各数据块（{@link SeriesChunk} 的编码，每块一条道路的最多512个快照），
+ * 接着是按（道路id, 时间）排序的块索引，每项为 道路id、最小/最大时间、块偏移、块长度，
+ * 最后是文件尾（索引偏移、块数、快照数、魔数）。
+ * 读取时整个文件以只读方式内存映射，索引查找和块解码都直接读映射缓冲区
+ */
+final class ColdSegment {
+
+    private static final int MAGIC = 0x43545331;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 12;
+
+    private static final int INDEX_ENTRY_BYTES = 32;
+
+    private static final int FOOTER_BYTES = 24;
+
+    private final YearMonth month;
+
+    private final MappedByteBuffer buffer;
+
+    private final int indexOffset;
+
+    private final int blockCount;
+
+    private final long pointCount;
+
+    // 道路id -> 记录数，文件只读，统计一次后缓存
+    private final Map<Integer, Long> recordsByRoad = new ConcurrentHashMap<>();
+
+    private ColdSegment(YearMonth month, MappedByteBuffer buffer, int indexOffset, int blockCount, long pointCount) {
+        this.month = month;
+        this.buffer = buffer;
+        this.indexOffset = indexOffset;
+        this.blockCount = blockCount;
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * 映射并校验文件；关闭文件通道后映射仍然有效
+     */
+    static ColdSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("冷数据文件大小异常: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int footer = (int) size - FOOTER_BYTES;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(footer + 20) != MAGIC) {
+                throw new IOException("不是冷数据文件: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("不支持的冷数据文件版本 " + buffer.getInt(4) + ": " + path);
+            }
+            int yearMonth = buffer.getInt(8);
+            return new ColdSegment(YearMonth.of(yearMonth / 100, yearMonth % 100), buffer,
+                    (int) buffer.getLong(footer), buffer.getInt(footer + 8), buffer.getLong(footer + 12));
+        }
+    }
+
+    YearMonth getMonth() {
+        return month;
+    }
+
+    long getPointCount() {
+        return pointCount;
+    }
+
+    long bytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 解码指定道路在 [fromSecond, toSecond] 内的快照，按写入顺序（时间升序）回调
+     */
+    void scan(int roadId, long fromSecond, long toSecond, SeriesChunk.PointVisitor visitor) {
+        for (int block = firstBlock(roadId); block < blockCount; block++) {
+            int entry = indexOffset + block * INDEX_ENTRY_BYTES;
+            if (buffer.getInt(entry) != roadId || buffer.getLong(entry + 4) > toSecond) {
+                return;
+            }
+            if (buffer.getLong(entry + 12) < fromSecond) {
+                continue;
+            }
+            SeriesChunk.forEach(buffer.slice((int) buffer.getLong(entry + 20), buffer.getInt(entry + 28)),
+                    (id, epochSecond, status, speed, distance) -> {
+                        if (epochSecond >= fromSecond && epochSecond <= toSecond) {
+                            visitor.visit(id, epochSecond, status, speed, distance);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * 统计文件中的记录数和最大记录id：状态持续的记录展开的多个快照共用一个id，在同一道路内按时间连续存放
+     */
+    Records records() {
+        long[] stats = {0, 0, Long.MIN_VALUE};
+        for (int block = 0; block < blockCount; block++) {
+            int entry = indexOffset + block * INDEX_ENTRY_BYTES;
+            SeriesChunk.forEach(buffer.slice((int) buffer.getLong(entry + 20), buffer.getInt(entry + 28)),
+                    (id, epochSecond, status, speed, distance) -> {
+                        if (id != stats[2]) {
+                            stats[0]++;
+                            stats[2] = id;
+                        }
+                        stats[1] = Math.max(stats[1], id);
+                    });
+        }
+        return new Records(stats[0], stats[1]);
+    }
+
+    /**
+     * 指定道路在文件中的记录数（展开的快照按记录id合并）
+     */
+    long records(int roadId) {
+        return recordsByRoad.computeIfAbsent(roadId, road -> {
+            long[] stats = {0, Long.MIN_VALUE};
+            scan(road, Long.MIN_VALUE, Long.MAX_VALUE, (id, epochSecond, status, speed, distance) -> {
+                if (id != stats[1]) {
+                    stats[0]++;
+                    stats[1] = id;
+                }
+            });
+            return stats[0];
+        });
+    }
+
+    /**
+     * 文件中的记录数与最大记录id
+     */
+    record Records(long count, long maxId) {
+    }
+
+    /**
+     * 二分查找道路的第一个数据块
+     */
+    private int firstBlock(int roadId) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(indexOffset + mid * INDEX_ENTRY_BYTES) < roadId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 顺序写入冷数据文件：快照需按（道路id, 时间）升序追加
+     */
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+
+        private final DataOutputStream out;
+
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream index = new DataOutputStream(indexBytes);
+
+        private SeriesChunk chunk;
+
+        private int chunkRoadId;
+
+        private int lastRoadId = Integer.MIN_VALUE;
+
+        private int blockCount;
+
+        private long pointCount;
+
+        Writer(Path path, YearMonth month) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(month.getYear() * 100 + month.getMonthValue());
+        }
+
+        void append(int roadId, long id, long epochSecond, byte status, float speed, int distance) throws IOException {
+            if (roadId < lastRoadId) {
+                throw new IllegalStateException("冷数据需按道路id升序写入");
+            }
+            if (chunk != null && (roadId != chunkRoadId || chunk.isFull())) {
+                flushBlock();
+            }
+            if (chunk == null) {
+                chunk = new SeriesChunk();
+                chunkRoadId = roadId;
+            }
+            chunk.append(id, epochSecond, status, speed, distance);
+            lastRoadId = roadId;
+            pointCount++;
+        }
+
+        long getPointCount() {
+            return pointCount;
+        }
+
+        /**
+         * 写出索引和文件尾并刷到磁盘
+         */
+        void finish() throws IOException {
+            if (chunk != null) {
+                flushBlock();
+            }
+            long indexOffset = out.size();
+            indexBytes.writeTo(out);
+            out.writeLong(indexOffset);
+            out.writeInt(blockCount);
+            out.writeLong(pointCount);
+            out.writeInt(MAGIC);
+            out.flush();
+            // DataOutputStream 的计数在 Integer.MAX_VALUE 处饱和
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("冷数据文件超过2GB");
+            }
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void flushBlock() throws IOException {
+            int offset = out.size();
+            chunk.writeTo(out);
+            index.writeInt(chunkRoadId);
+            index.writeLong(chunk.getMinTime());
+            index.writeLong(chunk.getMaxTime());
+            index.writeLong(offset);
+            index.writeInt(out.size() - offset);
+            blockCount++;
+            chunk = null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.carpool.timeseries;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单条道路的近期快照序列：已写满的数据段按写入顺序排列，最后一段接收新数据（重放的溢出日志会晚于更新的数据写入，查询结果由调用方排序）。
+ * 超出内存预算时已封存的数据段溢写到磁盘文件，下次查询该道路时再读回内存
+ */
+final class RoadSeries {
+
+    private final int roadId;
+
+    private final Path spillFile;
+
+    // 内存中已封存的数据段；溢写期间写满的数据段也追加在这里
+    private final List<SeriesChunk> sealed = new ArrayList<>();
+
+    private SeriesChunk open = new SeriesChunk();
+
+    // 溢写到磁盘的数据段数量，0 表示全部在内存中
+    private int spilledChunks;
+
+    // 磁盘上第一个数据段的最晚时间，用于判断是否需要读回裁剪
+    private long spilledOldestMaxTime;
+
+    // 已写入的最大记录 id
+    private long lastId;
+
+    // 已写入的最晚时间
+    private long lastSecond;
+
+    private volatile long lastAccess = System.nanoTime();
+
+    RoadSeries(int roadId, Path spillDir) {
+        this.roadId = roadId;
+        this.spillFile = spillDir.resolve("road-" + roadId + ".bin");
+    }
+
+    int getRoadId() {
+        return roadId;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * 追加一个快照；回填与增量同步可能重叠，已写入过的记录（id 不大于已写入的最大 id）只接受比已写入的最晚时间更晚的快照
+     * （状态持续的记录以同一 id、更晚的时间多次追加）。重放的溢出日志 id 更大但时间更早，作为新记录照常写入，
+     * 不推进最晚时间，之后实时记录的延续仍然有效
+     */
+    synchronized void append(long id, long epochSecond, byte status, float speed, int distance) {
+        if (id <= lastId && epochSecond <= lastSecond) {
+            return;
+        }
+        if (open.isFull()) {
+            open.seal();
+            sealed.add(open);
+            open = new SeriesChunk();
+        }
+        open.append(id, epochSecond, status, speed, distance);
+        lastId = Math.max(lastId, id);
+        lastSecond = Math.max(lastSecond, epochSecond);
+    }
+
+    /**
+     * 解码时间范围内的快照（含两端），必要时先从磁盘读回已溢写的数据段
+     */
+    synchronized void scan(long fromSecond, long toSecond, SeriesChunk.PointVisitor visitor) {
+        lastAccess = System.nanoTime();
+        loadSpilled();
+        for (SeriesChunk chunk : sealed) {
+            scanChunk(chunk, fromSecond, toSecond, visitor);
+        }
+        scanChunk(open, fromSecond, toSecond, visitor);
+    }
+
+    /**
+     * 丢弃完全早于 cutoffSecond 的数据段
+     */
+    synchronized void trim(long cutoffSecond) {
+        if (spilledChunks > 0 && spilledOldestMaxTime < cutoffSecond) {
+            // 磁盘上最早的数据段已移出窗口，读回后一并裁剪
+            loadSpilled();
+        }
+        sealed.removeIf(chunk -> chunk.getMaxTime() < cutoffSecond);
+    }
+
+    /**
+     * 内存中可以溢写的字节数
+     */
+    synchronized long spillableBytes() {
+        long bytes = 0;
+        for (SeriesChunk chunk : sealed) {
+            bytes += chunk.bytes();
+        }
+        return bytes;
+    }
+
+    synchronized long bytes() {
+        return spillableBytes() + open.bytes();
+    }
+
+    /**
+     * 将内存中已封存的数据段追加写入磁盘文件并释放，返回释放的字节数
+     */
+    synchronized long spill() {
+        if (sealed.isEmpty()) {
+            return 0;
+        }
+        List<SeriesChunk> chunks = new ArrayList<>();
+        if (spilledChunks > 0) {
+            chunks.addAll(readSpillFile());
+        }
+        chunks.addAll(sealed);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)))) {
+            out.writeInt(chunks.size());
+            for (SeriesChunk chunk : chunks) {
+                chunk.writeTo(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入道路 " + roadId + " 的溢写文件失败", e);
+        }
+        long released = spillableBytes();
+        spilledChunks = chunks.size();
+        spilledOldestMaxTime = chunks.get(0).getMaxTime();
+        sealed.clear();
+        return released;
+    }
+
+    synchronized boolean isSpilled() {
+        return spilledChunks > 0;
+    }
+
+    /**
+     * 删除溢写文件
+     */
+    synchronized void discard() {
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spilledChunks = 0;
+    }
+
+    private void loadSpilled() {
+        if (spilledChunks == 0) {
+            return;
+        }
+        sealed.addAll(0, readSpillFile());
+        discard();
+    }
+
+    private List<SeriesChunk> readSpillFile() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile)))) {
+            int count = in.readInt();
+            List<SeriesChunk> chunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                chunks.add(SeriesChunk.readFrom(in));
+            }
+            return chunks;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取道路 " + roadId + " 的溢写文件失败", e);
+        }
+    }
+
+    private static void scanChunk(SeriesChunk chunk, long fromSecond, long toSecond, SeriesChunk.PointVisitor visitor) {
+        if (chunk.size() == 0 || chunk.getMaxTime() < fromSecond || chunk.getMinTime() > toSecond) {
+            return;
+        }
+        chunk.forEach((id, epochSecond, status, speed, distance) -> {
+            if (epochSecond >= fromSecond && epochSecond <= toSecond) {
+                visitor.visit(id, epochSecond, status, speed, distance);
+            }
+        });
+    }
+}
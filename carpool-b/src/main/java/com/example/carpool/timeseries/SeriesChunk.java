@@ -0,0 +1,251 @@
+package com.example.carpool.timeseries;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 一段连续快照的列式编码：
+ * 时间戳按 delta-of-delta 做 zigzag 变长编码，记录id按差值变长编码，
+ * 拥堵状态按字节、速度按 float、拥堵距离按 int 存放在基本类型数组中
+ */
+final class SeriesChunk {
+
+    static final int CAPACITY = 512;
+
+    static final byte NO_STATUS = -1;
+
+    static final int NO_DISTANCE = -1;
+
+    private int count;
+    private long firstTime;
+    private long firstId;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    // 追加时的编码状态
+    private long prevTime;
+    private long prevDelta;
+    private long prevId;
+
+    private byte[] timeStream = new byte[CAPACITY];
+    private int timeLength;
+    private byte[] idStream = new byte[CAPACITY];
+    private int idLength;
+
+    private byte[] status = new byte[CAPACITY];
+    private float[] speed = new float[CAPACITY];
+    private int[] distance = new int[CAPACITY];
+
+    /**
+     * 单个快照的解码回调
+     */
+    interface PointVisitor {
+        void visit(long id, long epochSecond, byte status, float speed, int distance);
+    }
+
+    boolean isFull() {
+        return count == CAPACITY;
+    }
+
+    int size() {
+        return count;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    void append(long id, long epochSecond, byte pointStatus, float pointSpeed, int pointDistance) {
+        if (count == 0) {
+            firstTime = epochSecond;
+            firstId = id;
+        } else {
+            long delta = epochSecond - prevTime;
+            timeLength = writeVarLong(timeStream, timeLength, zigzag(delta - prevDelta));
+            timeStream = ensureCapacity(timeStream, timeLength);
+            idLength = writeVarLong(idStream, idLength, zigzag(id - prevId));
+            idStream = ensureCapacity(idStream, idLength);
+            prevDelta = delta;
+        }
+        prevTime = epochSecond;
+        prevId = id;
+        minTime = Math.min(minTime, epochSecond);
+        maxTime = Math.max(maxTime, epochSecond);
+
+        status[count] = pointStatus;
+        speed[count] = pointSpeed;
+        distance[count] = pointDistance;
+        count++;
+    }
+
+    /**
+     * 写满后释放预留的数组空间
+     */
+    void seal() {
+        timeStream = Arrays.copyOf(timeStream, timeLength);
+        idStream = Arrays.copyOf(idStream, idLength);
+        status = Arrays.copyOf(status, count);
+        speed = Arrays.copyOf(speed, count);
+        distance = Arrays.copyOf(distance, count);
+    }
+
+    /**
+     * 按写入顺序解码所有快照
+     */
+    void forEach(PointVisitor visitor) {
+        long time = firstTime;
+        long id = firstId;
+        long delta = 0;
+        int[] timePos = {0};
+        int[] idPos = {0};
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                delta += unzigzag(readVarLong(timeStream, timePos));
+                time += delta;
+                id += unzigzag(readVarLong(idStream, idPos));
+            }
+            visitor.visit(id, time, status[i], speed[i], distance[i]);
+        }
+    }
+
+    /**
+     * 估算占用的堆内存（字节）
+     */
+    long bytes() {
+        return 96L + timeStream.length + idStream.length + status.length
+                + (long) speed.length * Float.BYTES + (long) distance.length * Integer.BYTES;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeLong(firstTime);
+        out.writeLong(firstId);
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        out.writeInt(timeLength);
+        out.write(timeStream, 0, timeLength);
+        out.writeInt(idLength);
+        out.write(idStream, 0, idLength);
+        out.write(status, 0, count);
+        for (int i = 0; i < count; i++) {
+            out.writeFloat(speed[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeInt(distance[i]);
+        }
+    }
+
+    /**
+     * 读取已封存的数据段（溢写到磁盘的数据段不会再追加）
+     */
+    static SeriesChunk readFrom(DataInput in) throws IOException {
+        SeriesChunk chunk = new SeriesChunk();
+        chunk.count = in.readInt();
+        chunk.firstTime = in.readLong();
+        chunk.firstId = in.readLong();
+        chunk.minTime = in.readLong();
+        chunk.maxTime = in.readLong();
+        chunk.timeLength = in.readInt();
+        chunk.timeStream = new byte[chunk.timeLength];
+        in.readFully(chunk.timeStream);
+        chunk.idLength = in.readInt();
+        chunk.idStream = new byte[chunk.idLength];
+        in.readFully(chunk.idStream);
+        chunk.status = new byte[chunk.count];
+        in.readFully(chunk.status);
+        chunk.speed = new float[chunk.count];
+        for (int i = 0; i < chunk.count; i++) {
+            chunk.speed[i] = in.readFloat();
+        }
+        chunk.distance = new int[chunk.count];
+        for (int i = 0; i < chunk.count; i++) {
+            chunk.distance[i] = in.readInt();
+        }
+        return chunk;
+    }
+
+    /**
+     * 直接在 {@link #writeTo} 写出的字节上解码（冷数据文件的内存映射缓冲区），不复制到堆数组；
+     * 只使用绝对位置读取，多个线程可以同时解码同一个缓冲区
+     */
+    static void forEach(ByteBuffer block, PointVisitor visitor) {
+        int base = block.position();
+        int count = block.getInt(base);
+        long time = block.getLong(base + 4);
+        long id = block.getLong(base + 12);
+        int timeLength = block.getInt(base + 36);
+        int[] timePos = {base + 40};
+        int idLengthPos = timePos[0] + timeLength;
+        int idLength = block.getInt(idLengthPos);
+        int[] idPos = {idLengthPos + 4};
+        int statusPos = idPos[0] + idLength;
+        int speedPos = statusPos + count;
+        int distancePos = speedPos + count * Float.BYTES;
+
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                delta += unzigzag(readVarLong(block, timePos));
+                time += delta;
+                id += unzigzag(readVarLong(block, idPos));
+            }
+            visitor.visit(id, time, block.get(statusPos + i),
+                    block.getFloat(speedPos + i * Float.BYTES), block.getInt(distancePos + i * Integer.BYTES));
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * 保证还能再写入一个最长10字节的变长整数
+     */
+    private static byte[] ensureCapacity(byte[] buffer, int length) {
+        return length + 10 <= buffer.length ? buffer : Arrays.copyOf(buffer, buffer.length * 2);
+    }
+}
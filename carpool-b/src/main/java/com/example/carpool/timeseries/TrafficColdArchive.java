@@ -0,0 +1,458 @@
+package com.example.carpool.timeseries;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.repository.RoadTrafficRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 冷数据归档：超过热数据期（traffic.archive.hot-months）的整月路况快照写入 archive-dir 下的
+ * traffic-YYYYMM.seg 只读列式文件（含拥堵路段平均速度与拥堵距离），随后从 road_traffic_overall /
+ * congestion_sections 中移除（已按月分区时删除分区，否则分批删除）。
+ * 已归档月份的历史查询读取内存映射的冷数据文件，其余月份仍查询数据库
+ */
+@Component
+public class TrafficColdArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficColdArchive.class);
+
+    private static final String MONTH_SQL =
+            "SELECT o.id, o.road_id, o.request_time, o.valid_until, o.evaluation_status, " +
+            "(SELECT AVG(cs.speed) FROM congestion_sections cs " +
+            " WHERE cs.overall_id = o.id AND cs.created_at BETWEEN ? AND ?) AS avg_speed, " +
+            "(SELECT SUM(cs.congestion_distance) FROM congestion_sections cs " +
+            " WHERE cs.overall_id = o.id AND cs.created_at BETWEEN ? AND ?) AS congestion_distance " +
+            "FROM road_traffic_overall o " +
+            "WHERE o.request_time >= ? AND o.request_time < ? " +
+            "ORDER BY o.road_id, o.request_time, o.id";
+
+    private static final int DELETE_BATCH_SIZE = 5000;
+
+    // 与 CongestionSectionRepository.CREATED_AT_SLACK 一致
+    private static final long CREATED_AT_SLACK_MINUTES = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${traffic.archive.enabled:false}")
+    private boolean enabled;
+
+    // 保留在数据库中的完整月份数（不含当月）
+    @Value("${traffic.archive.hot-months:3}")
+    private int hotMonths;
+
+    @Value("${traffic.archive.dir:${user.home}/carpool-archive}")
+    private Path archiveDir;
+
+    // 采集间隔，状态持续多次采集的记录按它展开为多个快照写入冷数据
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    // 月份 -> 冷数据文件
+    private final NavigableMap<YearMonth, ColdSegment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * 时间范围内的一段（含两端），archived 表示这一段的月份已归档
+     */
+    public record Range(LocalDateTime start, LocalDateTime end, boolean archived) {
+
+        /**
+         * 数据库中这一段的记录可能延续到随后已归档的月份（冷数据只保存在该月开始的记录），
+         * 展开快照时上界放宽 MAX_VALID_SPAN，不超过查询的 endTime
+         */
+        public LocalDateTime expandUntil(LocalDateTime endTime) {
+            LocalDateTime until = end.plus(RoadTrafficRepository.MAX_VALID_SPAN);
+            return until.isBefore(endTime) ? until : endTime;
+        }
+    }
+
+    /**
+     * 映射已有的冷数据文件，清理上次未写完的临时文件
+     */
+    @PostConstruct
+    public void load() {
+        if (Files.isDirectory(archiveDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(archiveDir, "traffic-*.seg*")) {
+                for (Path file : files) {
+                    if (file.getFileName().toString().endsWith(".tmp")) {
+                        Files.delete(file);
+                        continue;
+                    }
+                    try {
+                        ColdSegment segment = ColdSegment.open(file);
+                        segments.put(segment.getMonth(), segment);
+                    } catch (IOException e) {
+                        log.error("冷数据文件 {} 无法读取，该月份查询数据库", file, e);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("读取冷数据目录 {} 失败", archiveDir, e);
+            }
+            if (!segments.isEmpty()) {
+                log.info("已加载 {} 个月份的冷数据：{} ~ {}", segments.size(), segments.firstKey(), segments.lastKey());
+            }
+        }
+
+        Gauge.builder("traffic.archive.bytes", this,
+                        archive -> archive.segments.values().stream().mapToLong(ColdSegment::bytes).sum())
+                .register(meterRegistry);
+    }
+
+    /**
+     * 时间范围是否涉及已归档的月份（含延续到 startTime 之后的上个月的记录）
+     */
+    public boolean overlaps(LocalDateTime startTime, LocalDateTime endTime) {
+        return !segmentsFor(startTime, endTime).isEmpty();
+    }
+
+    /**
+     * 该时间所在的月份是否已归档；已归档月份以冷数据为准，按时间范围回溯读取到的该月数据库记录应忽略
+     */
+    public boolean isArchived(LocalDateTime time) {
+        return segments.containsKey(YearMonth.from(time));
+    }
+
+    /**
+     * 是否有已归档的月份
+     */
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * 读取指定道路在时间范围内（含两端）已归档月份的快照，按请求时间倒序、id倒序排列。
+     * 记录按开始时间归入月份，上个月的记录可能延续到本月最初的 MAX_VALID_SPAN 内，startTime 离月初不足该时长时一并读取上个月的冷数据
+     */
+    public List<TrafficTimeSeriesStore.Point> query(int roadId, LocalDateTime startTime, LocalDateTime endTime) {
+        long from = toEpochSecond(startTime);
+        long to = toEpochSecond(endTime);
+        List<TrafficTimeSeriesStore.Point> points = new ArrayList<>();
+        for (ColdSegment segment : segmentsFor(startTime, endTime).values()) {
+            segment.scan(roadId, from, to, (id, epochSecond, status, speed, distance) ->
+                    points.add(new TrafficTimeSeriesStore.Point(id,
+                            LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC),
+                            status == SeriesChunk.NO_STATUS ? null : (int) status,
+                            Float.isNaN(speed) ? null : (double) speed,
+                            distance == SeriesChunk.NO_DISTANCE ? null : (long) distance)));
+        }
+        points.sort(Comparator.comparing(TrafficTimeSeriesStore.Point::requestTime)
+                .thenComparingLong(TrafficTimeSeriesStore.Point::id).reversed());
+        return points;
+    }
+
+    /**
+     * 时间范围内未归档、仍需查询数据库的各段，相邻的未归档月份合并为一段
+     */
+    public List<Range> liveRanges(LocalDateTime startTime, LocalDateTime endTime) {
+        return ranges(startTime, endTime).stream().filter(range -> !range.archived()).toList();
+    }
+
+    /**
+     * 把时间范围按月份是否已归档切分为时间升序的各段，相邻的同类月份合并为一段
+     */
+    public List<Range> ranges(LocalDateTime startTime, LocalDateTime endTime) {
+        if (segments.isEmpty()) {
+            return Collections.singletonList(new Range(startTime, endTime, false));
+        }
+        List<Range> ranges = new ArrayList<>();
+        LocalDateTime rangeStart = startTime;
+        boolean archived = segments.containsKey(YearMonth.from(startTime));
+        for (YearMonth month = YearMonth.from(startTime).plusMonths(1); !month.isAfter(YearMonth.from(endTime)); month = month.plusMonths(1)) {
+            if (segments.containsKey(month) != archived) {
+                LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+                ranges.add(new Range(rangeStart, monthStart.minusSeconds(1), archived));
+                rangeStart = monthStart;
+                archived = !archived;
+            }
+        }
+        ranges.add(new Range(rangeStart, endTime, archived));
+        return ranges;
+    }
+
+    /**
+     * 指定道路已归档的记录，按 (请求时间, id) 倒序跳过 offset 条后最多返回 limit 条；
+     * 只返回早于 (beforeTime, beforeId) 的记录，beforeTime 为 null 时不限制。
+     * 冷数据保存的是展开后的快照，同一记录的快照连续存放，合并回一条记录（validUntil 为最后一个快照的时间）
+     */
+    public List<TrafficSummary> findRows(RoadDictionary.Road road, LocalDateTime beforeTime, Long beforeId,
+                                         long offset, int limit) {
+        List<TrafficSummary> rows = new ArrayList<>(limit);
+        long skipped = 0;
+        for (ColdSegment segment : segments.descendingMap().values()) {
+            if (beforeTime != null && segment.getMonth().isAfter(YearMonth.from(beforeTime))) {
+                continue;
+            }
+            if (beforeTime == null && skipped + segment.records(road.getId()) <= offset) {
+                // 整个月份都在 offset 之前
+                skipped += segment.records(road.getId());
+                continue;
+            }
+            List<TrafficSummary> monthRows = new ArrayList<>();
+            segment.scan(road.getId(), Long.MIN_VALUE, Long.MAX_VALUE, (id, epochSecond, status, speed, distance) -> {
+                LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+                TrafficSummary last = monthRows.isEmpty() ? null : monthRows.get(monthRows.size() - 1);
+                if (last != null && last.getId() == id) {
+                    last.setValidUntil(time);
+                } else {
+                    monthRows.add(new TrafficSummary(id, road.getId(), road.getName(), road.getCity().getName(),
+                            status == SeriesChunk.NO_STATUS ? null : (int) status, time, time));
+                }
+            });
+            for (int i = monthRows.size() - 1; i >= 0; i--) {
+                TrafficSummary row = monthRows.get(i);
+                if (beforeTime != null && !isBefore(row, beforeTime, beforeId)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                rows.add(row);
+                if (rows.size() == limit) {
+                    return rows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 指定道路已归档的记录数
+     */
+    public long countRows(int roadId) {
+        long count = 0;
+        for (ColdSegment segment : segments.values()) {
+            count += segment.records(roadId);
+        }
+        return count;
+    }
+
+    /**
+     * 每天归档已超过热数据期的月份
+     */
+    @Scheduled(cron = "${traffic.archive.cron:0 0 4 * * *}")
+    public synchronized void archiveClosedMonths() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(request_time) FROM road_traffic_overall", LocalDateTime.class);
+        if (oldest == null) {
+            return;
+        }
+        YearMonth firstHot = YearMonth.now().minusMonths(hotMonths);
+        for (YearMonth month = YearMonth.from(oldest); month.isBefore(firstHot); month = month.plusMonths(1)) {
+            try {
+                archive(month);
+            } catch (IOException | RuntimeException e) {
+                log.error("归档 {} 的路况数据失败", month, e);
+                return;
+            }
+        }
+    }
+
+    private void archive(YearMonth month) throws IOException {
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        if (!segments.containsKey(month)) {
+            Long unresolved = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM road_traffic_overall WHERE request_time >= ? AND request_time < ? AND road_id IS NULL",
+                    Long.class, start, end);
+            if (unresolved != null && unresolved > 0) {
+                log.warn("{} 有 {} 条记录缺少 road_id，暂不归档（先执行 create_road_dimension.sql 的回填部分）", month, unresolved);
+                return;
+            }
+            Long expected = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM road_traffic_overall WHERE request_time >= ? AND request_time < ?",
+                    Long.class, start, end);
+            if (expected == null || expected == 0) {
+                return;
+            }
+
+            long[] rows = {0};
+            ColdSegment segment = writeSegment(month, start, end, expected, rows);
+            if (segment == null) {
+                log.error("{} 写入冷数据 {} 条记录，与数据库中的 {} 条不一致，保留数据库数据", month, rows[0], expected);
+                return;
+            }
+            segments.put(month, segment);
+            log.info("{} 的 {} 条路况记录（{} 个快照）已写入冷数据（{} KB）",
+                    month, expected, segment.getPointCount(), segment.bytes() / 1024);
+        }
+
+        // 删除前确认数据库中的记录就是已归档的记录：归档之后才写入该月的数据（如重放的溢出日志、手工回填）不能直接删除
+        long[] live = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM road_traffic_overall WHERE request_time >= ? AND request_time < ?",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, start, end);
+        if (live == null || live[0] == 0) {
+            return;
+        }
+        ColdSegment.Records archived = segments.get(month).records();
+        if (live[0] != archived.count() || live[1] != archived.maxId()) {
+            log.warn("{} 数据库中有 {} 条记录（最大id {}），冷数据为 {} 条（最大id {}），不一致，跳过删除；" +
+                            "确认后删除冷数据文件即可在下次归档时重新写入",
+                    month, live[0], live[1], archived.count(), archived.maxId());
+            return;
+        }
+        removeLiveMonth(month, start, end, archived.maxId());
+    }
+
+    /**
+     * 按道路、时间顺序流式读取整月数据写入临时文件，读取的记录数与 expected 一致时原子改名，否则删除临时文件并返回 null；
+     * 状态持续多次采集的记录展开为各次采集的快照，rows[0] 返回读取的记录数
+     */
+    private ColdSegment writeSegment(YearMonth month, LocalDateTime start, LocalDateTime end, long expected,
+                                     long[] rows) throws IOException {
+        Duration interval = Duration.ofMillis(collectIntervalMillis);
+        Files.createDirectories(archiveDir);
+        Path file = archiveDir.resolve(String.format("traffic-%d%02d.seg", month.getYear(), month.getMonthValue()));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Timestamp sectionFrom = Timestamp.valueOf(start.minusMinutes(CREATED_AT_SLACK_MINUTES));
+        Timestamp sectionTo = Timestamp.valueOf(end.plusMinutes(CREATED_AT_SLACK_MINUTES));
+        // 整月读取放在只读事务中，配置了从库时读取从库；从库延迟导致的缺失由写入后与主库计数的比对发现
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try (ColdSegment.Writer writer = new ColdSegment.Writer(tmp, month)) {
+            readOnly.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        MONTH_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // MySQL驱动只有在fetchSize为Integer.MIN_VALUE时才逐行流式读取
+                ps.setFetchSize(Integer.MIN_VALUE);
+                ps.setTimestamp(1, sectionFrom);
+                ps.setTimestamp(2, sectionTo);
+                ps.setTimestamp(3, sectionFrom);
+                ps.setTimestamp(4, sectionTo);
+                ps.setTimestamp(5, Timestamp.valueOf(start));
+                ps.setTimestamp(6, Timestamp.valueOf(end));
+                return ps;
+            }, (ResultSet rs) -> {
+                Number status = (Number) rs.getObject("evaluation_status");
+                Number speed = (Number) rs.getObject("avg_speed");
+                Number distance = (Number) rs.getObject("congestion_distance");
+                Timestamp validUntil = rs.getTimestamp("valid_until");
+                TrafficSummary row = new TrafficSummary(rs.getLong("id"), rs.getInt("road_id"), null, null, null,
+                        rs.getTimestamp("request_time").toLocalDateTime(),
+                        validUntil != null ? validUntil.toLocalDateTime() : null);
+                rows[0]++;
+                try {
+                    for (LocalDateTime time : row.observationTimes(interval)) {
+                        writer.append(row.getRoadId(), row.getId(), toEpochSecond(time),
+                                status != null ? status.byteValue() : SeriesChunk.NO_STATUS,
+                                speed != null ? speed.floatValue() : Float.NaN,
+                                distance != null ? (int) Math.min(distance.longValue(), Integer.MAX_VALUE) : SeriesChunk.NO_DISTANCE);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(tmp);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        if (rows[0] != expected) {
+            Files.deleteIfExists(tmp);
+            return null;
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return ColdSegment.open(file);
+    }
+
+    /**
+     * 从数据库移除已归档的月份：按月分区时删除两张表对应的分区，否则按id分批删除（不超过已归档的最大id）
+     */
+    private void removeLiveMonth(YearMonth month, LocalDateTime start, LocalDateTime end, long maxArchivedId) {
+        String partition = String.format("p%d%02d", month.getYear(), month.getMonthValue());
+        boolean removed = false;
+        for (String table : List.of("congestion_sections", "road_traffic_overall")) {
+            Integer partitioned = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME = ?",
+                    Integer.class, table, partition);
+            if (partitioned != null && partitioned > 0) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+                removed = true;
+            }
+        }
+        if (removed) {
+            log.info("已删除 {} 的数据库分区", month);
+            return;
+        }
+
+        long deleted = 0;
+        List<Long> ids;
+        do {
+            ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM road_traffic_overall WHERE request_time >= ? AND request_time < ? AND id <= ? LIMIT " + DELETE_BATCH_SIZE,
+                    Long.class, start, end, maxArchivedId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+            jdbcTemplate.update("DELETE FROM congestion_sections WHERE overall_id IN (" + placeholders + ")", ids.toArray());
+            jdbcTemplate.update("DELETE FROM road_traffic_overall WHERE id IN (" + placeholders + ")", ids.toArray());
+            deleted += ids.size();
+        } while (ids.size() == DELETE_BATCH_SIZE);
+        if (deleted > 0) {
+            log.info("已从数据库删除 {} 的 {} 条路况记录", month, deleted);
+        }
+    }
+
+    /**
+     * 可能包含时间范围内快照的冷数据文件：从 startTime 前 MAX_VALID_SPAN 所在的月份到 endTime 所在的月份
+     */
+    private NavigableMap<YearMonth, ColdSegment> segmentsFor(LocalDateTime startTime, LocalDateTime endTime) {
+        return segments.subMap(YearMonth.from(startTime.minus(RoadTrafficRepository.MAX_VALID_SPAN)), true,
+                YearMonth.from(endTime), true);
+    }
+
+    private static boolean isBefore(TrafficSummary row, LocalDateTime time, Long id) {
+        int compare = row.getRequestTime().compareTo(time);
+        return compare < 0 || (compare == 0 && id != null && row.getId() < id);
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
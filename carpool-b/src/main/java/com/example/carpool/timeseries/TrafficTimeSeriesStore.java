@@ -0,0 +1,298 @@
+package com.example.carpool.timeseries;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.dto.SectionAggregate;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.ingest.TrafficIngestListener;
+import com.example.carpool.repository.CongestionSectionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 近期路况时间序列：按道路以列式压缩格式在内存中保存最近若干天的快照（含拥堵路段平均速度与拥堵距离），
+ * 启动时从 road_traffic_overall 回填，之后随增量同步追加，窗口内的历史查询无需访问数据库。
+ * 总内存超过预算时，最久未被查询的道路已封存的数据段溢写到磁盘
+ */
+@Component
+@Order(TrafficIngestListener.VIEW_ORDER)
+public class TrafficTimeSeriesStore implements TrafficIngestListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficTimeSeriesStore.class);
+
+    private static final String BACKFILL_SQL =
+            "SELECT o.id, o.road_id, o.road_name, o.city, o.request_time, o.valid_until, o.evaluation_status, " +
+            "(SELECT AVG(cs.speed) FROM congestion_sections cs " +
+            " WHERE cs.overall_id = o.id AND cs.created_at BETWEEN ? AND ?) AS avg_speed, " +
+            "(SELECT SUM(cs.congestion_distance) FROM congestion_sections cs " +
+            " WHERE cs.overall_id = o.id AND cs.created_at BETWEEN ? AND ?) AS congestion_distance " +
+            "FROM road_traffic_overall o " +
+            "WHERE o.request_time >= ? " +
+            "ORDER BY o.id ASC";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CongestionSectionRepository congestionSectionRepository;
+
+    @Autowired
+    private RoadDictionary roadDictionary;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 内存中保留的天数
+    @Value("${traffic.timeseries.window-days:30}")
+    private int windowDays;
+
+    // 内存预算（字节），超出时将道路数据段溢写到磁盘
+    @Value("${traffic.timeseries.memory-budget-bytes:67108864}")
+    private long memoryBudgetBytes;
+
+    @Value("${traffic.timeseries.spill-dir:${java.io.tmpdir}/carpool-timeseries}")
+    private Path spillDir;
+
+    // 采集间隔，回填时按它展开状态持续多次采集的记录
+    @Value("${traffic.collector.interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    // 道路id -> 时间序列
+    private final Map<Integer, RoadSeries> series = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    /**
+     * 时间序列中的一个快照，speed / congestionDistance 为 null 表示没有拥堵路段数据
+     */
+    public record Point(long id, LocalDateTime requestTime, Integer evaluationStatus,
+                        Double speed, Long congestionDistance) {
+    }
+
+    /**
+     * 流式回填窗口内的历史数据；回填失败时历史查询继续走数据库
+     */
+    @Override
+    public void loadInitialState(long lastSeenId) {
+        try {
+            Files.createDirectories(spillDir);
+            LocalDateTime since = windowStart();
+            Duration interval = Duration.ofMillis(collectIntervalMillis);
+            long[] rows = {0};
+            // 拥堵路段的 created_at 与所属记录的 request_time 一致，限定窗口后只扫描窗口内的分区
+            Timestamp sectionFrom = Timestamp.valueOf(since.minus(CongestionSectionRepository.CREATED_AT_SLACK));
+            Timestamp sectionTo = Timestamp.valueOf(LocalDateTime.now().plus(CongestionSectionRepository.CREATED_AT_SLACK));
+            // 放在只读事务中执行，配置了从库时回填读取从库
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readOnly.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        BACKFILL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // MySQL驱动只有在fetchSize为Integer.MIN_VALUE时才逐行流式读取
+                ps.setFetchSize(Integer.MIN_VALUE);
+                ps.setTimestamp(1, sectionFrom);
+                ps.setTimestamp(2, sectionTo);
+                ps.setTimestamp(3, sectionFrom);
+                ps.setTimestamp(4, sectionTo);
+                ps.setTimestamp(5, Timestamp.valueOf(since));
+                return ps;
+            }, (ResultSet rs) -> {
+                Number roadId = (Number) rs.getObject("road_id");
+                Number status = (Number) rs.getObject("evaluation_status");
+                Timestamp requestTime = rs.getTimestamp("request_time");
+                Timestamp validUntil = rs.getTimestamp("valid_until");
+                TrafficSummary row = new TrafficSummary(rs.getLong("id"),
+                        roadId != null ? roadId.intValue() : null,
+                        rs.getString("road_name"), rs.getString("city"),
+                        status != null ? status.intValue() : null,
+                        requestTime != null ? requestTime.toLocalDateTime() : null,
+                        validUntil != null ? validUntil.toLocalDateTime() : null);
+                Number speed = (Number) rs.getObject("avg_speed");
+                Number distance = (Number) rs.getObject("congestion_distance");
+                for (LocalDateTime time : row.observationTimes(interval)) {
+                    append(row.at(time), speed != null ? speed.doubleValue() : null,
+                            distance != null ? distance.longValue() : null);
+                }
+                if (++rows[0] % 100_000 == 0) {
+                    enforceBudget();
+                }
+            }));
+            enforceBudget();
+            ready = true;
+            log.info("近期路况时间序列回填完成：{} 条记录，{} 条道路，约 {} KB",
+                    rows[0], series.size(), memoryBytes() / 1024);
+        } catch (RuntimeException | IOException e) {
+            log.error("近期路况时间序列回填失败，历史查询将直接读取数据库", e);
+        }
+
+        Gauge.builder("traffic.timeseries.memory", this, TrafficTimeSeriesStore::memoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("traffic.timeseries.spilled.roads", this,
+                        store -> store.series.values().stream().filter(RoadSeries::isSpilled).count())
+                .register(meterRegistry);
+    }
+
+    /**
+     * 一次分组聚合查询补齐新记录的速度与拥堵距离后追加，并裁剪窗口外的数据段
+     */
+    @Override
+    public void onTrafficIngested(List<TrafficSummary> rows) {
+        Map<Long, SectionAggregate> aggregates = congestionSectionRepository.aggregateBySummaries(rows).stream()
+                .collect(Collectors.toMap(SectionAggregate::getOverallId, Function.identity()));
+        for (TrafficSummary row : rows) {
+            SectionAggregate aggregate = aggregates.get(row.getId());
+            append(row, aggregate != null ? aggregate.getAvgSpeed() : null,
+                    aggregate != null ? aggregate.getTotalDistance() : null);
+        }
+
+        long cutoff = toEpochSecond(windowStart());
+        for (RoadSeries roadSeries : series.values()) {
+            roadSeries.trim(cutoff);
+        }
+        enforceBudget();
+    }
+
+    /**
+     * 状态未变的采集结果：以原记录的 id 和本次采集时间追加一个快照
+     */
+    @Override
+    public void onTrafficExtended(List<TrafficSummary> rows) {
+        Map<Long, SectionAggregate> aggregates = congestionSectionRepository.aggregateBySummaries(rows).stream()
+                .collect(Collectors.toMap(SectionAggregate::getOverallId, Function.identity()));
+        for (TrafficSummary row : rows) {
+            SectionAggregate aggregate = aggregates.get(row.getId());
+            append(row.at(row.getValidUntil()), aggregate != null ? aggregate.getAvgSpeed() : null,
+                    aggregate != null ? aggregate.getTotalDistance() : null);
+        }
+        enforceBudget();
+    }
+
+    /**
+     * 时间范围是否完全落在内存窗口内
+     */
+    public boolean covers(LocalDateTime startTime) {
+        return ready && !startTime.isBefore(windowStart());
+    }
+
+    /**
+     * 读取指定道路在时间范围内（含两端）的快照，按请求时间倒序、id倒序排列
+     */
+    public List<Point> query(int roadId, LocalDateTime startTime, LocalDateTime endTime) {
+        RoadSeries roadSeries = series.get(roadId);
+        if (roadSeries == null) {
+            return List.of();
+        }
+        List<Point> points = new ArrayList<>();
+        roadSeries.scan(toEpochSecond(startTime), toEpochSecond(endTime), (id, epochSecond, status, speed, distance) ->
+                points.add(new Point(id,
+                        LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC),
+                        status == SeriesChunk.NO_STATUS ? null : (int) status,
+                        Float.isNaN(speed) ? null : (double) speed,
+                        distance == SeriesChunk.NO_DISTANCE ? null : (long) distance)));
+        points.sort(Comparator.comparing(Point::requestTime).thenComparingLong(Point::id).reversed());
+        enforceBudget();
+        return points;
+    }
+
+    /**
+     * 当前内存占用估算（字节）
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (RoadSeries roadSeries : series.values()) {
+            bytes += roadSeries.bytes();
+        }
+        return bytes;
+    }
+
+    @PreDestroy
+    public void cleanUp() {
+        series.values().forEach(RoadSeries::discard);
+    }
+
+    private void append(TrafficSummary row, Double speed, Long distance) {
+        if (row.getRequestTime() == null) {
+            return;
+        }
+        Integer roadId = row.getRoadId();
+        if (roadId == null) {
+            RoadDictionary.Road road = roadDictionary.resolve(row);
+            if (road == null) {
+                return;
+            }
+            roadId = road.getId();
+        }
+        Integer status = row.getEvaluationStatus();
+        series.computeIfAbsent(roadId, id -> new RoadSeries(id, spillDir))
+                .append(row.getId(), toEpochSecond(row.getRequestTime()),
+                        status != null ? status.byteValue() : SeriesChunk.NO_STATUS,
+                        speed != null ? speed.floatValue() : Float.NaN,
+                        distance != null ? (int) Math.min(distance, Integer.MAX_VALUE) : SeriesChunk.NO_DISTANCE);
+    }
+
+    /**
+     * 超出内存预算时，按最久未查询的顺序溢写道路已封存的数据段
+     */
+    private synchronized void enforceBudget() {
+        long bytes = memoryBytes();
+        if (bytes <= memoryBudgetBytes) {
+            return;
+        }
+        List<RoadSeries> candidates = new ArrayList<>(series.values());
+        candidates.sort(Comparator.comparingLong(RoadSeries::getLastAccess));
+        for (RoadSeries roadSeries : candidates) {
+            if (bytes <= memoryBudgetBytes) {
+                break;
+            }
+            try {
+                long released = roadSeries.spill();
+                if (released > 0) {
+                    bytes -= released;
+                    log.debug("道路 {} 的时间序列溢写到磁盘，释放约 {} KB", roadSeries.getRoadId(), released / 1024);
+                }
+            } catch (UncheckedIOException e) {
+                log.error("时间序列溢写失败", e);
+                return;
+            }
+        }
+    }
+
+    private LocalDateTime windowStart() {
+        return LocalDateTime.now().minusDays(windowDays);
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
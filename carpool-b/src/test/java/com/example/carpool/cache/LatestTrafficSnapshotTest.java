@@ -0,0 +1,48 @@
+package com.example.carpool.cache;
+
+import com.example.carpool.dto.TrafficSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatestTrafficSnapshotTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 2, 1, 8, 0);
+
+    private final LatestTrafficSnapshot snapshot = new LatestTrafficSnapshot();
+
+    @BeforeEach
+    void setUp() {
+        RoadDictionary roadDictionary = new RoadDictionary();
+        ReflectionTestUtils.setField(roadDictionary, "roadSearchIndex", new RoadSearchIndex());
+        ReflectionTestUtils.setField(snapshot, "roadDictionary", roadDictionary);
+    }
+
+    @Test
+    void replayedSpillAfterNewerLiveWriteDoesNotBecomeLatest() {
+        snapshot.onTrafficIngested(List.of(row(10L, 1, T0)));
+        // 数据库恢复后先写入实时记录，再重放停顿期间的溢出日志
+        snapshot.onTrafficIngested(List.of(row(11L, 2, T0.plusMinutes(30))));
+        snapshot.onTrafficIngested(List.of(row(12L, 1, T0.plusMinutes(5)), row(13L, 1, T0.plusMinutes(10))));
+
+        assertThat(snapshot.find(1)).get().extracting(TrafficSummary::getId).isEqualTo(11L);
+
+        // 实时记录的延续仍然生效
+        TrafficSummary extended = row(11L, 2, T0.plusMinutes(30));
+        extended.setValidUntil(T0.plusMinutes(35));
+        snapshot.onTrafficExtended(List.of(extended));
+
+        TrafficSummary latest = snapshot.find(1).orElseThrow();
+        assertThat(latest.getId()).isEqualTo(11L);
+        assertThat(latest.getRequestTime()).isEqualTo(T0.plusMinutes(35));
+    }
+
+    private static TrafficSummary row(long id, int status, LocalDateTime time) {
+        return new TrafficSummary(id, 1, "道路1", "上海市", status, time, time);
+    }
+}
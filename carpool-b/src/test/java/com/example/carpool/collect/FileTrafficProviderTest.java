@@ -0,0 +1,60 @@
+package com.example.carpool.collect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileTrafficProviderTest {
+
+    @TempDir
+    Path dir;
+
+    private final FileTrafficProvider provider = new FileTrafficProvider();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(provider, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(provider, "dir", dir);
+    }
+
+    @Test
+    void readsRoadFileInBaiduResponseFormat() throws Exception {
+        Files.createDirectories(dir.resolve("上海市"));
+        Files.writeString(dir.resolve("上海市").resolve("四平路.json"), """
+                {"status": 0, "message": "成功", "description": "四平路拥堵",
+                 "evaluation": {"status": 3, "status_desc": "拥堵"},
+                 "road_traffic": [{"road_name": "四平路", "congestion_sections": [
+                   {"section_desc": "从大连路到中山北二路", "status": 4, "speed": 8.25,
+                    "congestion_distance": 820, "congestion_trend": "持平", "extra": 1}]}]}
+                """);
+
+        RoadTrafficReport report = provider.fetch("四平路", "上海市");
+
+        assertThat(report.isSuccess()).isTrue();
+        assertThat(report.evaluation().statusDesc()).isEqualTo("拥堵");
+        RoadTrafficReport.Section section = report.roadTraffic().get(0).congestionSections().get(0);
+        assertThat(section.speed()).isEqualByComparingTo(new BigDecimal("8.25"));
+        assertThat(section.congestionDistance()).isEqualTo(820);
+        assertThat(section.congestionTrend()).isEqualTo("持平");
+    }
+
+    @Test
+    void fallsBackToDefaultFile() throws Exception {
+        assertThatThrownBy(() -> provider.fetch("国权路", "上海市")).isInstanceOf(NoSuchFileException.class);
+
+        Files.writeString(dir.resolve("default.json"), "{\"status\": 302, \"message\": \"天配额超限\"}");
+        RoadTrafficReport report = provider.fetch("国权路", "上海市");
+        assertThat(report.isSuccess()).isFalse();
+        assertThat(report.roadTraffic()).isNull();
+    }
+}
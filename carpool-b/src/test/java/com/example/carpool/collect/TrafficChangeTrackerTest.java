@@ -0,0 +1,75 @@
+package com.example.carpool.collect;
+
+import com.example.carpool.dto.TrafficSummary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficChangeTrackerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 31, 23, 0);
+
+    private final TrafficChangeTracker tracker = new TrafficChangeTracker(true, Duration.ofMinutes(5));
+
+    @Test
+    void unchangedSnapshotsExtendTheStoredRow() {
+        commit(tracker.split(List.of(traffic(1, "畅通", T0), traffic(2, "畅通", T0))), 10L, 11L);
+
+        TrafficChangeTracker.Split split = tracker.split(List.of(
+                traffic(1, "畅通", T0.plusMinutes(5)),
+                traffic(2, "缓行", T0.plusMinutes(5)),
+                traffic(1, "畅通", T0.plusMinutes(10))));
+
+        assertThat(split.inserts()).extracting(CollectedTraffic::roadId).containsExactly(2);
+        assertThat(split.extensions()).extracting(TrafficSummary::getId).containsExactly(10L, 10L);
+        assertThat(split.extensions()).extracting(TrafficSummary::getRequestTime).containsOnly(T0);
+        assertThat(split.extensions().get(1).getValidUntil()).isEqualTo(T0.plusMinutes(10));
+        // 写库成功前不改变状态，重试时划分结果相同
+        assertThat(tracker.split(List.of(traffic(1, "畅通", T0.plusMinutes(5)))).extensions()).hasSize(1);
+    }
+
+    @Test
+    void startsNewRowAtMonthBoundaryAndForOlderResults() {
+        commit(tracker.split(List.of(traffic(1, "畅通", T0))), 10L);
+
+        // 跨月（同时也超过1小时）
+        assertThat(tracker.split(List.of(traffic(1, "畅通", T0.plusMinutes(65)))).inserts()).hasSize(1);
+        // 重放的溢出日志比已记录的状态更早
+        assertThat(tracker.split(List.of(traffic(1, "畅通", T0.minusMinutes(5)))).inserts()).hasSize(1);
+    }
+
+    @Test
+    void doesNotExtendAcrossStallSoReplayedRowsDoNotOverlap() {
+        commit(tracker.split(List.of(traffic(1, "畅通", T0))), 10L);
+
+        // 停顿20分钟后的第一次实时采集写入新记录，而不是把记录10延长到 T0+30
+        TrafficChangeTracker.Split live = tracker.split(List.of(traffic(1, "畅通", T0.plusMinutes(30))));
+        assertThat(live.inserts()).hasSize(1);
+        commit(live, 20L);
+
+        // 随后重放停顿期间的溢出日志：各自写入新记录，落在记录10和记录20之间
+        TrafficChangeTracker.Split replayed = tracker.split(List.of(
+                traffic(1, "畅通", T0.plusMinutes(5)), traffic(1, "畅通", T0.plusMinutes(10))));
+        assertThat(replayed.inserts()).hasSize(2);
+        assertThat(replayed.extensions()).isEmpty();
+        commit(replayed, 21L, 22L);
+
+        // 实时采集继续延长记录20
+        assertThat(tracker.split(List.of(traffic(1, "畅通", T0.plusMinutes(35)))).extensions())
+                .extracting(TrafficSummary::getId).containsExactly(20L);
+    }
+
+    private void commit(TrafficChangeTracker.Split split, Long... ids) {
+        tracker.commit(split, List.of(ids));
+    }
+
+    private static CollectedTraffic traffic(int roadId, String status, LocalDateTime time) {
+        RoadTrafficReport report = new RoadTrafficReport(0, "成功", "道路" + roadId + status,
+                new RoadTrafficReport.Evaluation("畅通".equals(status) ? 1 : 2, status), List.of());
+        return new CollectedTraffic(roadId, "道路" + roadId, "上海市", report, time);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.carpool.collect;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 默认使用 H2（MySQL 兼容模式）；benchmark 用 -Dbenchmark.jdbc.url 指向一个专用的 MySQL 测试库（会重建两张路况表）
+ * （连接参数带 rewriteBatchedStatements=true）才能反映多行 INSERT 的效果
+ */
+class TrafficReportWriterTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficReportWriterTest.class);
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TrafficReportWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        String url = System.getProperty("benchmark.jdbc.url",
+                "jdbc:h2:mem:writer-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        DataSource dataSource = new DriverManagerDataSource(url,
+                System.getProperty("benchmark.jdbc.username", "sa"), System.getProperty("benchmark.jdbc.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS congestion_sections");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS road_traffic_overall");
+        jdbcTemplate.execute("CREATE TABLE road_traffic_overall (id BIGINT AUTO_INCREMENT PRIMARY KEY, road_id INT, " +
+                "request_time DATETIME, road_name VARCHAR(100), city VARCHAR(50), api_status INT, message VARCHAR(255), " +
+                "description TEXT, evaluation_status INT, evaluation_status_desc VARCHAR(50), created_at DATETIME)");
+        jdbcTemplate.execute("CREATE TABLE congestion_sections (id BIGINT AUTO_INCREMENT PRIMARY KEY, overall_id BIGINT, " +
+                "road_id INT, road_name VARCHAR(100), section_desc VARCHAR(500), status INT, speed DECIMAL(5,2), " +
+                "congestion_distance INT, congestion_trend VARCHAR(20), created_at DATETIME)");
+
+        writer = new TrafficReportWriter();
+        ReflectionTestUtils.setField(writer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writer, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(writer, "batchSize", 500);
+    }
+
+    @Test
+    void writeAllMapsGeneratedKeysToSections() {
+        List<CollectedTraffic> batch = traffic(1200);
+
+        List<Long> ids = writer.writeAll(batch);
+
+        assertThat(ids).hasSize(1200).doesNotHaveDuplicates();
+        for (int i = 0; i < batch.size(); i += 97) {
+            assertThat(jdbcTemplate.queryForObject(
+                    "SELECT road_id FROM road_traffic_overall WHERE id = ?", Integer.class, ids.get(i)))
+                    .isEqualTo(batch.get(i).roadId());
+        }
+        // 每个拥堵路段都挂在同一道路的主表记录下
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM congestion_sections", Long.class))
+                .isEqualTo(sectionCount(batch));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM congestion_sections cs " +
+                "JOIN road_traffic_overall o ON o.id = cs.overall_id WHERE o.road_id <> cs.road_id", Long.class))
+                .isZero();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void batchedWritesOutperformPerRowWrites() {
+        int roads = Integer.getInteger("benchmark.roads", 5000);
+        List<CollectedTraffic> batch = traffic(roads);
+        // 预热
+        writer.writeAll(traffic(500));
+        traffic(500).forEach(writer::write);
+
+        long start = System.nanoTime();
+        batch.forEach(writer::write);
+        long perRowNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        writer.writeAll(batch);
+        long batchedNanos = System.nanoTime() - start;
+
+        log.info("{} 条道路（{} 个拥堵路段）：逐条写入 {} ms（{} 条道路/秒），批量写入 {} ms（{} 条道路/秒），{} 倍",
+                roads, sectionCount(batch),
+                perRowNanos / 1_000_000, Math.round(roads * 1e9 / perRowNanos),
+                batchedNanos / 1_000_000, Math.round(roads * 1e9 / batchedNanos),
+                String.format("%.1f", (double) perRowNanos / batchedNanos));
+        assertThat(batchedNanos).isLessThan(perRowNanos);
+    }
+
+    private static List<CollectedTraffic> traffic(int roads) {
+        List<CollectedTraffic> batch = new ArrayList<>(roads);
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int roadId = 1; roadId <= roads; roadId++) {
+            // 拥堵路段数量 0~3 条不等
+            List<RoadTrafficReport.Section> sections = new ArrayList<>();
+            for (int s = 0; s < roadId % 4; s++) {
+                sections.add(new RoadTrafficReport.Section("路段" + s, 3, new BigDecimal("12.50"), 300 + s, "持平"));
+            }
+            RoadTrafficReport report = new RoadTrafficReport(0, "成功", "道路" + roadId + "拥堵",
+                    new RoadTrafficReport.Evaluation(3, "拥堵"),
+                    List.of(new RoadTrafficReport.RoadTraffic("道路" + roadId, sections)));
+            batch.add(new CollectedTraffic(roadId, "道路" + roadId, "上海市", report, now));
+        }
+        return batch;
+    }
+
+    private static long sectionCount(List<CollectedTraffic> batch) {
+        return batch.stream().mapToLong(traffic -> traffic.roadId() % 4).sum();
+    }
+}
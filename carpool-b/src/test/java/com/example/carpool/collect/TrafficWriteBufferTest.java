@@ -0,0 +1,166 @@
+package com.example.carpool.collect;
+
+import com.example.carpool.ingest.TrafficIngestPoller;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficWriteBufferTest {
+
+    @TempDir
+    Path spillDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final StallingWriter writer = new StallingWriter();
+
+    private TrafficWriteBuffer buffer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        buffer.stop();
+    }
+
+    @Test
+    void spillsWhileDatabaseStallsAndReplaysAfterRecovery() throws Exception {
+        buffer = buffer(TrafficWriteBuffer.OverflowPolicy.SPILL, 20);
+        writer.available = false;
+
+        for (int roadId = 1; roadId <= 10; roadId++) {
+            buffer.offer(traffic(roadId));
+        }
+        // 4 条占满容量，其余 6 条写入溢出日志
+        assertThat(meterRegistry.counter("traffic.collector.buffer.spilled").count()).isEqualTo(6);
+        // 停顿期间延续汇总水位不能越过未写入的数据
+        assertThat(buffer.getPendingSince()).isNotNull();
+
+        writer.available = true;
+        waitUntil(() -> writer.written.size() == 10 && !spillFilesExist());
+
+        assertThat(writer.written).containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(buffer.getDepth()).isZero();
+        waitUntil(() -> buffer.getPendingSince() == null);
+        assertThat(meterRegistry.timer("traffic.collector.buffer.flush").count()).isPositive();
+    }
+
+    @Test
+    void dropsOldestWhenFull() throws Exception {
+        // 只按条数触发写库，保证第一批恰好是 1、2
+        buffer = buffer(TrafficWriteBuffer.OverflowPolicy.DROP_OLDEST, 60_000);
+        writer.available = false;
+        // 等第一批（1、2）被取出并卡在写库重试中
+        buffer.offer(traffic(1));
+        buffer.offer(traffic(2));
+        waitUntil(() -> writer.attempts > 0);
+
+        for (int roadId = 3; roadId <= 8; roadId++) {
+            buffer.offer(traffic(roadId));
+        }
+        assertThat(meterRegistry.counter("traffic.collector.buffer.dropped").count()).isEqualTo(4);
+
+        writer.available = true;
+        waitUntil(() -> writer.written.size() == 4);
+        assertThat(writer.written).containsExactlyInAnyOrder(1, 2, 7, 8);
+    }
+
+    @Test
+    void resumesReplayFromRecordedProgress() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        List<String> lines = new ArrayList<>();
+        for (int roadId = 1; roadId <= 5; roadId++) {
+            lines.add(objectMapper.writeValueAsString(traffic(roadId)));
+        }
+        Files.write(spillDir.resolve("ingest-spill-1.replay"), lines);
+        // 上次重放已写入前两行
+        Files.writeString(spillDir.resolve("ingest-spill-1.replay.progress"), "2");
+
+        buffer = buffer(TrafficWriteBuffer.OverflowPolicy.SPILL, 20);
+        waitUntil(() -> !spillFilesExist());
+
+        assertThat(writer.written).containsExactly(3, 4, 5);
+        waitUntil(() -> buffer.getPendingSince() == null);
+    }
+
+    private TrafficWriteBuffer buffer(TrafficWriteBuffer.OverflowPolicy policy, long flushIntervalMillis)
+            throws Exception {
+        TrafficWriteBuffer buffer = new TrafficWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "trafficReportWriter", writer);
+        ReflectionTestUtils.setField(buffer, "trafficIngestPoller", new TrafficIngestPoller() {
+            @Override
+            public synchronized void poll() {
+            }
+        });
+        ReflectionTestUtils.setField(buffer, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(buffer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(buffer, "capacity", 4);
+        ReflectionTestUtils.setField(buffer, "batchSize", 2);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", flushIntervalMillis);
+        ReflectionTestUtils.setField(buffer, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(buffer, "spillDir", spillDir);
+        buffer.start();
+        return buffer;
+    }
+
+    private boolean spillFilesExist() {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.findAny().isPresent();
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待超时").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private static CollectedTraffic traffic(int roadId) {
+        RoadTrafficReport report = new RoadTrafficReport(0, "成功", "畅通",
+                new RoadTrafficReport.Evaluation(1, "畅通"), List.of());
+        return new CollectedTraffic(roadId, "道路" + roadId, "上海市", report, LocalDateTime.now());
+    }
+
+    /**
+     * available 为 false 时模拟数据库停顿
+     */
+    private static class StallingWriter extends TrafficReportWriter {
+
+        volatile boolean available = true;
+
+        volatile int attempts;
+
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<Long> writeAll(List<CollectedTraffic> batch) {
+            attempts++;
+            if (!available) {
+                throw new IllegalStateException("database unavailable");
+            }
+            List<Long> ids = new ArrayList<>();
+            for (CollectedTraffic traffic : batch) {
+                written.add(traffic.roadId());
+                ids.add((long) traffic.roadId());
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.carpool.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 用两个 H2 内存库代替 MySQL 主库和从库，各自的 node 表记录库名
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private final DataSource primary = node("primary");
+
+    private final DataSource replica = node("replica");
+
+    @AfterEach
+    void clearPin() {
+        ReadWriteRoutingDataSource.clearPin();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        assertThat(currentNode(monitor(replica, ""), true)).isEqualTo("replica");
+    }
+
+    @Test
+    void readWriteTransactionGoesToPrimary() {
+        assertThat(currentNode(monitor(replica, ""), false)).isEqualTo("primary");
+    }
+
+    @Test
+    void pinnedThreadReadsFromPrimary() {
+        ReplicaLagMonitor monitor = monitor(replica, "");
+        ReadWriteRoutingDataSource.pinToPrimary();
+        assertThat(currentNode(monitor, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        ReplicaLagMonitor monitor = monitor(replica, "SELECT 120");
+        assertThat(monitor.isReplicaUsable()).isFalse();
+        assertThat(monitor.pinWindowMillis()).isEqualTo((5 + 30) * 1000L);
+        assertThat(currentNode(monitor, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToPrimary() {
+        DataSource missing = new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "sa", "");
+        assertThat(currentNode(monitor(missing, ""), true)).isEqualTo("primary");
+    }
+
+    private ReplicaLagMonitor monitor(DataSource replicaDataSource, String lagQuery) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaDataSource, lagQuery, 30, 5);
+        monitor.check();
+        return monitor;
+    }
+
+    private String currentNode(ReplicaLagMonitor monitor, boolean readOnly) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replica, monitor);
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static DataSource node(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.carpool.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficSummaryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 31, 23, 0);
+    private static final Duration INTERVAL = Duration.ofMinutes(5);
+
+    @Test
+    void expandsIntervalIntoEvenlySpacedObservations() {
+        TrafficSummary row = summary(T0.plusMinutes(20));
+
+        assertThat(row.observationTimes(INTERVAL)).containsExactly(
+                T0, T0.plusMinutes(5), T0.plusMinutes(10), T0.plusMinutes(15), T0.plusMinutes(20));
+        row.setValidUntil(null);
+        assertThat(row.observationTimes(INTERVAL)).containsExactly(T0);
+    }
+
+    @Test
+    void spreadsSpanThatIsNotAMultipleOfTheInterval() {
+        // 22 分钟 / 5 分钟 ≈ 4 段，点数按段数取整，首尾固定为 requestTime 和 validUntil
+        assertThat(summary(T0.plusMinutes(22)).observationTimes(INTERVAL)).containsExactly(
+                T0, T0.plusSeconds(330), T0.plusMinutes(11), T0.plusSeconds(990), T0.plusMinutes(22));
+        // 不足一个采集周期的延长仍算一次新的观测
+        assertThat(summary(T0.plusMinutes(2)).observationTimes(INTERVAL)).containsExactly(T0, T0.plusMinutes(2));
+    }
+
+    @Test
+    void validUntilEqualToRequestTimeIsSingleObservation() {
+        assertThat(summary(T0).observationTimes(INTERVAL)).containsExactly(T0);
+    }
+
+    private static TrafficSummary summary(LocalDateTime validUntil) {
+        return new TrafficSummary(10L, 1, "道路1", "上海市", 1, T0, validUntil);
+    }
+}
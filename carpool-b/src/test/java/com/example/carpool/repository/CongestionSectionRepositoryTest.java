@@ -0,0 +1,92 @@
+package com.example.carpool.repository;
+
+import com.example.carpool.dto.SectionAggregate;
+import com.example.carpool.dto.TrafficSummary;
+import com.example.carpool.entity.CongestionSection;
+import com.example.carpool.entity.RoadTrafficOverall;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CongestionSectionRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CongestionSectionRepository congestionSectionRepository;
+
+    @Test
+    void aggregateByOverallIdsUsesOneQueryForWholePage() {
+        List<Long> overallIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            RoadTrafficOverall overall = entityManager.persist(new RoadTrafficOverall("四平路", "上海", 2, "缓行"));
+            entityManager.persist(section(overall.getId(), "20.00", 1500));
+            entityManager.persist(section(overall.getId(), "30.00", 500));
+            overallIds.add(overall.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<SectionAggregate> aggregates = congestionSectionRepository.aggregateByOverallIds(overallIds);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(aggregates).hasSize(100).allSatisfy(aggregate -> {
+            assertThat(aggregate.getAvgSpeed()).isEqualTo(25.0);
+            assertThat(aggregate.getTotalDistance()).isEqualTo(2000L);
+        });
+    }
+
+    @Test
+    void aggregateBySummariesBoundsCreatedAtByRequestTime() {
+        List<TrafficSummary> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            RoadTrafficOverall overall = entityManager.persist(new RoadTrafficOverall("四平路", "上海", 2, "缓行"));
+            entityManager.persist(section(overall.getId(), "20.00", 1500));
+            entityManager.persist(section(overall.getId(), "30.00", 500));
+            rows.add(TrafficSummary.of(overall));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(congestionSectionRepository.aggregateBySummaries(rows)).hasSize(10).allSatisfy(aggregate -> {
+            assertThat(aggregate.getAvgSpeed()).isEqualTo(25.0);
+            assertThat(aggregate.getTotalDistance()).isEqualTo(2000L);
+        });
+        assertThat(congestionSectionRepository.findSpeedsBySummaries(rows)).hasSize(20);
+
+        // created_at 不在记录时间附近的拥堵路段不会被读到
+        List<TrafficSummary> shifted = rows.stream()
+                .map(row -> new TrafficSummary(row.getId(), row.getRoadId(), row.getRoadName(), row.getCity(),
+                        row.getEvaluationStatus(), row.getRequestTime().minusDays(40)))
+                .toList();
+        assertThat(congestionSectionRepository.aggregateBySummaries(shifted)).isEmpty();
+    }
+
+    private static CongestionSection section(Long overallId, String speed, int distance) {
+        CongestionSection section = new CongestionSection(overallId, "四平路", 2, new BigDecimal(speed));
+        section.setCongestionDistance(distance);
+        return section;
+    }
+}
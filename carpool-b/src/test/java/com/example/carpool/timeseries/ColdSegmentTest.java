@@ -0,0 +1,71 @@
+package com.example.carpool.timeseries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColdSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void scansOnlyRequestedRoadAndTimeRange() throws Exception {
+        Path file = dir.resolve("traffic-202401.seg");
+        long start = 1_704_067_200L;
+        try (ColdSegment.Writer writer = new ColdSegment.Writer(file, YearMonth.of(2024, 1))) {
+            long id = 1;
+            for (int roadId = 1; roadId <= 3; roadId++) {
+                // 每条道路1500个快照，跨越多个数据块
+                for (int i = 0; i < 1500; i++) {
+                    writer.append(roadId, id++, start + i * 300L, (byte) (i % 5),
+                            i % 7 == 0 ? Float.NaN : 20 + i % 30, i % 7 == 0 ? SeriesChunk.NO_DISTANCE : i);
+                }
+            }
+            writer.finish();
+        }
+
+        ColdSegment segment = ColdSegment.open(file);
+        assertThat(segment.getMonth()).isEqualTo(YearMonth.of(2024, 1));
+        assertThat(segment.getPointCount()).isEqualTo(4500);
+        assertThat(segment.records()).isEqualTo(new ColdSegment.Records(4500, 4500));
+
+        List<long[]> points = new ArrayList<>();
+        segment.scan(2, start + 600 * 300L, start + 1199 * 300L, (id, epochSecond, status, speed, distance) ->
+                points.add(new long[]{id, epochSecond, status, distance}));
+
+        assertThat(points).hasSize(600);
+        assertThat(points.get(0)).containsExactly(1501 + 600, start + 600 * 300L, 0, 600);
+        assertThat(points.get(599)).containsExactly(1501 + 1199, start + 1199 * 300L, 1199 % 5, 1199);
+
+        List<Long> missing = new ArrayList<>();
+        segment.scan(4, start, start + 1500 * 300L, (id, epochSecond, status, speed, distance) -> missing.add(id));
+        assertThat(missing).isEmpty();
+    }
+
+    @Test
+    void countsExpandedRecordsOnce() throws Exception {
+        Path file = dir.resolve("traffic-202402.seg");
+        long start = 1_706_745_600L;
+        try (ColdSegment.Writer writer = new ColdSegment.Writer(file, YearMonth.of(2024, 2))) {
+            // 记录7持续三次采集，记录9只有一次；道路2的记录3持续两次
+            writer.append(1, 7, start, (byte) 1, 30f, 0);
+            writer.append(1, 7, start + 300, (byte) 1, 30f, 0);
+            writer.append(1, 7, start + 600, (byte) 1, 30f, 0);
+            writer.append(1, 9, start + 900, (byte) 2, 15f, 400);
+            writer.append(2, 3, start, (byte) 1, 40f, 0);
+            writer.append(2, 3, start + 300, (byte) 1, 40f, 0);
+            writer.finish();
+        }
+
+        ColdSegment segment = ColdSegment.open(file);
+        assertThat(segment.getPointCount()).isEqualTo(6);
+        assertThat(segment.records()).isEqualTo(new ColdSegment.Records(3, 9));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.carpool.timeseries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoadSeriesTest {
+
+    private static final long T0 = 1_769_900_400L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsReplayedSnapshotsWrittenAfterNewerLiveData() {
+        RoadSeries series = new RoadSeries(1, dir);
+        // 停顿前的记录 10，恢复后的实时记录 11
+        append(series, 10, T0);
+        append(series, 11, T0 + 1800);
+        // 重放溢出日志：id 更大但时间更早
+        append(series, 12, T0 + 300);
+        append(series, 13, T0 + 600);
+        // 实时记录 11 继续延长
+        append(series, 11, T0 + 2100);
+        // 回填与增量同步重叠的重复快照
+        append(series, 11, T0 + 1800);
+        append(series, 12, T0 + 300);
+
+        List<String> points = new ArrayList<>();
+        series.scan(T0, T0 + 3600, (id, epochSecond, status, speed, distance) ->
+                points.add(id + "@" + (epochSecond - T0)));
+        assertThat(points).containsExactly("10@0", "11@1800", "12@300", "13@600", "11@2100");
+    }
+
+    private static void append(RoadSeries series, long id, long epochSecond) {
+        series.append(id, epochSecond, (byte) 1, Float.NaN, SeriesChunk.NO_DISTANCE);
+    }
+}
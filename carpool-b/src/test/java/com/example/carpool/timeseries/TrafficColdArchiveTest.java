@@ -0,0 +1,76 @@
+package com.example.carpool.timeseries;
+
+import com.example.carpool.cache.RoadDictionary;
+import com.example.carpool.cache.RoadSearchIndex;
+import com.example.carpool.dto.TrafficSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficColdArchiveTest {
+
+    private static final LocalDateTime FEB = LocalDateTime.of(2026, 2, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    private final TrafficColdArchive archive = new TrafficColdArchive();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // 1月的最后一条记录从 23:40 持续到 2月1日 00:30
+        try (ColdSegment.Writer writer = new ColdSegment.Writer(dir.resolve("traffic-202601.seg"), YearMonth.of(2026, 1))) {
+            for (int minutes = -20; minutes <= 30; minutes += 5) {
+                writer.append(1, 7, FEB.plusMinutes(minutes).toEpochSecond(ZoneOffset.UTC), (byte) 1, 30f, 0);
+            }
+            writer.finish();
+        }
+        ReflectionTestUtils.setField(archive, "archiveDir", dir);
+        ReflectionTestUtils.setField(archive, "meterRegistry", new SimpleMeterRegistry());
+        archive.load();
+    }
+
+    @Test
+    void readsPreviousMonthRecordsCarriedIntoRange() {
+        // 只覆盖2月的查询也要读到1月记录延续到2月的快照
+        assertThat(archive.overlaps(FEB, FEB.plusDays(1))).isTrue();
+        assertThat(archive.query(1, FEB, FEB.plusDays(1)))
+                .extracting(TrafficTimeSeriesStore.Point::requestTime)
+                .containsExactly(FEB.plusMinutes(30), FEB.plusMinutes(25), FEB.plusMinutes(20),
+                        FEB.plusMinutes(15), FEB.plusMinutes(10), FEB.plusMinutes(5), FEB);
+        assertThat(archive.overlaps(FEB.plusHours(2), FEB.plusDays(1))).isFalse();
+    }
+
+    @Test
+    void splitsRangeByArchivedMonth() {
+        LocalDateTime start = FEB.minusDays(3);
+        LocalDateTime end = FEB.plusDays(3);
+
+        assertThat(archive.ranges(start, end)).containsExactly(
+                new TrafficColdArchive.Range(start, FEB.minusSeconds(1), true),
+                new TrafficColdArchive.Range(FEB, end, false));
+        assertThat(archive.liveRanges(start, end)).containsExactly(new TrafficColdArchive.Range(FEB, end, false));
+        assertThat(archive.countRows(1)).isEqualTo(1);
+        assertThat(archive.findRows(road(), null, null, 0, 10))
+                .singleElement()
+                .satisfies(row -> {
+                    assertThat(row.getRequestTime()).isEqualTo(FEB.minusMinutes(20));
+                    assertThat(row.getValidUntil()).isEqualTo(FEB.plusMinutes(30));
+                });
+    }
+
+    private static RoadDictionary.Road road() {
+        RoadDictionary roadDictionary = new RoadDictionary();
+        ReflectionTestUtils.setField(roadDictionary, "roadSearchIndex", new RoadSearchIndex());
+        return roadDictionary.resolve(new TrafficSummary(7L, 1, "道路1", "上海市", 1, FEB, FEB));
+    }
+}
@@ -114,6 +114,31 @@ const trafficService = {
     }
   },
 
+  /**
+   * 根据城市游标分页获取路况信息（用于无限滚动）
+   * @param {string} city 城市名称
+   * @param {Object} params 查询参数
+   * @param {string} params.cursor 上一页返回的 next 游标，第一页不传
+   * @param {number} params.size 每页大小，默认20
+   * @returns {Promise} { content, size, next, hasNext }
+   */
+  async scrollTrafficByCity(city, params = {}) {
+    const {
+      cursor,
+      size = 20
+    } = params
+
+    try {
+      const response = await api.get(`/traffic/city/${city}/scroll`, {
+        params: { cursor, size }
+      })
+      return response
+    } catch (error) {
+      console.error(`获取${city}路况数据失败:`, error)
+      throw error
+    }
+  },
+
   /**
    * 根据道路和城市查询路况
    * @param {string} roadName 道路名称
@@ -159,10 +184,10 @@ const trafficService = {
    * @param {string} keyword 搜索关键词
    * @returns {Promise} 搜索结果
    */
-  async searchTraffic(keyword) {
+  async searchTraffic(keyword, limit) {
     try {
       const response = await api.get('/traffic/search', {
-        params: { keyword }
+        params: { keyword, limit }
       })
       return response
     } catch (error) {
@@ -243,6 +268,8 @@ const trafficService = {
    * @param {string} params.city 城市名称
    * @param {string} params.startTime 开始时间 (ISO string)
    * @param {string} params.endTime 结束时间 (ISO string)
+   * @param {number} params.resolutionMinutes 时间分辨率（分钟），可选，指定后读取汇总数据
+   * @param {number} params.maxPoints 降采样点数上限，可选，指定后忽略分页并按时间升序返回整个时间范围
    * @param {number} params.page 页码，默认0
    * @param {number} params.size 每页大小，默认100
    * @returns {Promise} 历史路况数据
@@ -253,6 +280,8 @@ const trafficService = {
       city,
       startTime,
       endTime,
+      resolutionMinutes,
+      maxPoints,
       page = 0,
       size = 100
     } = params
@@ -272,6 +301,8 @@ const trafficService = {
           city,
           startTime,
           endTime,
+          resolutionMinutes,
+          maxPoints,
           page,
           size
         }
@@ -283,6 +314,41 @@ const trafficService = {
     }
   },
 
+  /**
+   * 多条道路历史数据对比（一次请求，服务端并行查询）
+   * @param {Object} params 查询参数
+   * @param {Array<{roadName: string, city: string}>} params.roads 道路列表
+   * @param {string} params.startTime 开始时间
+   * @param {string} params.endTime 结束时间
+   * @param {number} [params.resolutionMinutes] 分辨率（分钟）
+   * @param {number} [params.maxPoints] 每条道路降采样点数上限
+   * @returns {Promise<Object>} 与 roads 顺序一致、对齐到同一时间网格的历史序列
+   */
+  async getHistoricalTrafficBatch(params = {}) {
+    const { roads, startTime, endTime, resolutionMinutes, maxPoints } = params
+
+    if (!roads || roads.length === 0) {
+      throw new Error('道路列表不能为空')
+    }
+
+    if (!startTime || !endTime) {
+      throw new Error('开始时间和结束时间不能为空')
+    }
+
+    try {
+      return await api.post('/traffic/historical/batch', {
+        roads,
+        startTime,
+        endTime,
+        resolutionMinutes,
+        maxPoints
+      })
+    } catch (error) {
+      console.error('获取多条道路历史数据失败:', error)
+      throw error
+    }
+  },
+
   /**
    * 获取城市道路列表
    * @param {string} city 城市名称
@@ -0,0 +1,17 @@
+-- 只在路况变化时写入：后端采集（TrafficCollector）对每条道路与上一次写入的快照比较
+-- （评价、描述、拥堵路段等全部字段），相同时不再写入新的 road_traffic_overall / congestion_sections 记录，
+-- 只把上一条记录的 valid_until 更新为本次采集时间。
+-- valid_until 为空表示该记录只对应一次采集（旧数据、script/run.py 写入的数据）；
+-- 不为空时 [request_time, valid_until] 内的各次采集状态相同，历史查询按采集间隔把区间展开为均匀分布的快照。
+-- 一条记录的区间不超过1小时（RoadTrafficRepository.MAX_VALID_SPAN）且不跨月，
+-- 按时间范围查询时只需把 request_time 的下界前移1小时，仍使用 idx_road_time_id 且按月裁剪分区。
+-- 可在服务运行时执行（INSTANT 加列，不重建表）。
+
+ALTER TABLE road_traffic_overall
+    ADD COLUMN valid_until DATETIME NULL COMMENT '相同状态最后一次采集的时间(为空表示只采集一次)' AFTER request_time,
+    ALGORITHM = INSTANT;
+
+-- 汇总的延续水位：id 不超过 last_overall_id 的记录中，不晚于该时间的延续采集都已计入 road_traffic_rollup / road_speed_histogram
+ALTER TABLE traffic_rollup_checkpoint
+    ADD COLUMN extended_until DATETIME NULL COMMENT '延续采集已汇总到的时间' AFTER last_overall_id,
+    ALGORITHM = INSTANT;
@@ -29,6 +29,10 @@ CREATE INDEX idx_evaluation_status ON road_traffic_overall (evaluation_status);
 -- 配合子查询提高性能
 CREATE INDEX id_composite_for_latest ON road_traffic_overall (road_name, city, request_time DESC, id);
 
+-- 6.1 城市 + (时间, ID) 复合索引
+-- 用于按城市的游标分页，(request_time, id) 作为游标直接在索引上定位
+CREATE INDEX idx_city_time_id ON road_traffic_overall (city, request_time DESC, id DESC);
+
 -- ========================================
 -- congestion_sections 表索引优化
 -- ========================================
@@ -0,0 +1,109 @@
+-- 道路维度表：每条道路（道路名称 + 标准城市名称）分配一个整数id，
+-- road_traffic_overall / congestion_sections / road_traffic_rollup 按 road_id 查询、分组和关联，
+-- 不再在索引和分组中反复比较 road_name、city 字符串。
+-- 城市的不同写法（如"上海"与"上海市"）归为同一个标准城市名称，对应同一个 road_id。
+-- 需在 create_rollup_tables.sql 之后、停止后端服务时执行；
+-- "回填 road 与 road_id" 一节（连同 tmp_city_alias）可单独重复执行，用于补齐旧写入程序未填写 road_id 的记录
+
+-- ========================================
+-- 维度表
+-- ========================================
+
+CREATE TABLE road (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    road_name VARCHAR(100) NOT NULL COMMENT '道路名称',
+    city VARCHAR(50) NOT NULL COMMENT '标准城市名称(去掉市/自治区/自治州/地区后缀)',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_road_city (city, road_name)
+);
+
+ALTER TABLE road_traffic_overall ADD COLUMN road_id INT NULL COMMENT '道路ID' AFTER id;
+ALTER TABLE congestion_sections ADD COLUMN road_id INT NULL COMMENT '道路ID' AFTER overall_id;
+
+-- ========================================
+-- 回填 road 与 road_id
+-- ========================================
+
+-- 城市写法 -> 标准城市名称（与 RoadDictionary.normalizeCityName 保持一致）
+CREATE TEMPORARY TABLE tmp_city_alias AS
+SELECT stored_city,
+       CASE
+           WHEN stored_city LIKE '%自治区' AND CHAR_LENGTH(stored_city) > 3 THEN LEFT(stored_city, CHAR_LENGTH(stored_city) - 3)
+           WHEN stored_city LIKE '%自治州' AND CHAR_LENGTH(stored_city) > 3 THEN LEFT(stored_city, CHAR_LENGTH(stored_city) - 3)
+           WHEN stored_city LIKE '%地区' AND CHAR_LENGTH(stored_city) > 2 THEN LEFT(stored_city, CHAR_LENGTH(stored_city) - 2)
+           WHEN stored_city LIKE '%市' AND CHAR_LENGTH(stored_city) > 1 THEN LEFT(stored_city, CHAR_LENGTH(stored_city) - 1)
+           ELSE stored_city
+       END AS normalized_city
+FROM (SELECT DISTINCT city AS stored_city FROM road_traffic_overall) c;
+
+INSERT IGNORE INTO road (road_name, city)
+SELECT DISTINCT o.road_name, a.normalized_city
+FROM road_traffic_overall o
+JOIN tmp_city_alias a ON a.stored_city = o.city
+WHERE o.road_id IS NULL;
+
+UPDATE road_traffic_overall o
+JOIN tmp_city_alias a ON a.stored_city = o.city
+JOIN road r ON r.road_name = o.road_name AND r.city = a.normalized_city
+SET o.road_id = r.id
+WHERE o.road_id IS NULL;
+
+UPDATE congestion_sections s
+JOIN road_traffic_overall o ON o.id = s.overall_id
+SET s.road_id = o.road_id
+WHERE s.road_id IS NULL;
+
+-- ========================================
+-- 索引：整数前缀替换 (road_name, city) 字符串前缀
+-- ========================================
+
+CREATE INDEX idx_road_time_id ON road_traffic_overall(road_id, request_time, id);
+CREATE INDEX idx_section_road ON congestion_sections(road_id, overall_id);
+DROP INDEX idx_road_city ON road_traffic_overall;
+
+-- ========================================
+-- 汇总表改为按 road_id 分桶
+-- 同一道路不同城市写法的时间桶在这里合并
+-- ========================================
+
+CREATE TABLE road_traffic_rollup_new (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    granularity VARCHAR(20) NOT NULL COMMENT '时间粒度(FIVE_MINUTES/HOUR/DAY)',
+    road_id INT NOT NULL COMMENT '道路ID',
+    bucket_start DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count BIGINT NOT NULL DEFAULT 0 COMMENT '时间桶内的快照数量',
+    status0_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为未知的快照数',
+    status1_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为畅通的快照数',
+    status2_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为缓行的快照数',
+    status3_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为拥堵的快照数',
+    status4_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为严重拥堵的快照数',
+    speed_sum DOUBLE COMMENT '拥堵路段速度之和(km/h)',
+    speed_count BIGINT NOT NULL DEFAULT 0 COMMENT '有速度的拥堵路段数量',
+    min_speed DECIMAL(5,2) COMMENT '拥堵路段最低速度(km/h)',
+    max_speed DECIMAL(5,2) COMMENT '拥堵路段最高速度(km/h)',
+    congestion_distance_sum BIGINT NOT NULL DEFAULT 0 COMMENT '拥堵距离累计(米)',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_rollup_bucket (granularity, road_id, bucket_start)
+);
+
+INSERT INTO road_traffic_rollup_new
+    (granularity, road_id, bucket_start, sample_count,
+     status0_count, status1_count, status2_count, status3_count, status4_count,
+     speed_sum, speed_count, min_speed, max_speed, congestion_distance_sum)
+SELECT u.granularity, r.id, u.bucket_start, SUM(u.sample_count),
+       SUM(u.status0_count), SUM(u.status1_count), SUM(u.status2_count),
+       SUM(u.status3_count), SUM(u.status4_count),
+       SUM(u.speed_sum), SUM(u.speed_count), MIN(u.min_speed), MAX(u.max_speed),
+       SUM(u.congestion_distance_sum)
+FROM road_traffic_rollup u
+JOIN tmp_city_alias a ON a.stored_city = u.city
+JOIN road r ON r.road_name = u.road_name AND r.city = a.normalized_city
+GROUP BY u.granularity, r.id, u.bucket_start;
+
+RENAME TABLE road_traffic_rollup TO road_traffic_rollup_old,
+             road_traffic_rollup_new TO road_traffic_rollup;
+DROP TABLE road_traffic_rollup_old;
+
+DROP TEMPORARY TABLE tmp_city_alias;
+
+ANALYZE TABLE road, road_traffic_overall, congestion_sections, road_traffic_rollup;
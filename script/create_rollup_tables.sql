@@ -0,0 +1,113 @@
+-- 历史路况时间桶汇总表
+-- 按 5分钟(FIVE_MINUTES) / 小时(HOUR) / 天(DAY) 三种粒度预聚合每条道路的路况，
+-- 长时间范围的历史查询直接读取汇总数据，不再扫描原始快照
+
+-- ========================================
+-- 汇总表
+-- ========================================
+
+CREATE TABLE road_traffic_rollup (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    granularity VARCHAR(20) NOT NULL COMMENT '时间粒度(FIVE_MINUTES/HOUR/DAY)',
+    road_name VARCHAR(100) NOT NULL COMMENT '道路名称',
+    city VARCHAR(50) NOT NULL COMMENT '城市名称',
+    bucket_start DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count BIGINT NOT NULL DEFAULT 0 COMMENT '时间桶内的快照数量',
+    status0_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为未知的快照数',
+    status1_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为畅通的快照数',
+    status2_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为缓行的快照数',
+    status3_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为拥堵的快照数',
+    status4_count BIGINT NOT NULL DEFAULT 0 COMMENT '评价为严重拥堵的快照数',
+    speed_sum DOUBLE COMMENT '拥堵路段速度之和(km/h)',
+    speed_count BIGINT NOT NULL DEFAULT 0 COMMENT '有速度的拥堵路段数量',
+    min_speed DECIMAL(5,2) COMMENT '拥堵路段最低速度(km/h)',
+    max_speed DECIMAL(5,2) COMMENT '拥堵路段最高速度(km/h)',
+    congestion_distance_sum BIGINT NOT NULL DEFAULT 0 COMMENT '拥堵距离累计(米)',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_rollup_bucket (granularity, road_name, city, bucket_start)
+);
+
+-- 增量汇总检查点：记录已汇总到的最大 road_traffic_overall.id，与汇总数据在同一事务中更新
+CREATE TABLE traffic_rollup_checkpoint (
+    name VARCHAR(50) PRIMARY KEY,
+    last_overall_id BIGINT NOT NULL COMMENT '已汇总到的最大路况记录ID'
+);
+
+-- ========================================
+-- 回填已有数据（首次部署时执行一次）
+-- ========================================
+
+SET @rollup_max_id = (SELECT COALESCE(MAX(id), 0) FROM road_traffic_overall);
+
+-- 每条快照的拥堵路段统计及所在时间桶
+CREATE TEMPORARY TABLE tmp_rollup_source AS
+SELECT o.road_name,
+       o.city,
+       o.request_time,
+       o.evaluation_status,
+       s.speed_sum,
+       COALESCE(s.speed_count, 0) AS speed_count,
+       s.min_speed,
+       s.max_speed,
+       COALESCE(s.distance_sum, 0) AS distance_sum
+FROM road_traffic_overall o
+LEFT JOIN (
+    SELECT overall_id,
+           SUM(speed) AS speed_sum,
+           COUNT(speed) AS speed_count,
+           MIN(speed) AS min_speed,
+           MAX(speed) AS max_speed,
+           SUM(congestion_distance) AS distance_sum
+    FROM congestion_sections
+    GROUP BY overall_id
+) s ON s.overall_id = o.id
+WHERE o.id <= @rollup_max_id AND o.request_time IS NOT NULL;
+
+INSERT INTO road_traffic_rollup
+    (granularity, road_name, city, bucket_start, sample_count,
+     status0_count, status1_count, status2_count, status3_count, status4_count,
+     speed_sum, speed_count, min_speed, max_speed, congestion_distance_sum)
+SELECT 'FIVE_MINUTES', road_name, city,
+       DATE_FORMAT(request_time, '%Y-%m-%d %H:00:00') + INTERVAL (MINUTE(request_time) DIV 5 * 5) MINUTE,
+       COUNT(*),
+       SUM(evaluation_status IS NULL OR evaluation_status NOT IN (1, 2, 3, 4)),
+       SUM(evaluation_status <=> 1), SUM(evaluation_status <=> 2),
+       SUM(evaluation_status <=> 3), SUM(evaluation_status <=> 4),
+       SUM(speed_sum), SUM(speed_count), MIN(min_speed), MAX(max_speed), SUM(distance_sum)
+FROM tmp_rollup_source
+GROUP BY road_name, city, 4;
+
+INSERT INTO road_traffic_rollup
+    (granularity, road_name, city, bucket_start, sample_count,
+     status0_count, status1_count, status2_count, status3_count, status4_count,
+     speed_sum, speed_count, min_speed, max_speed, congestion_distance_sum)
+SELECT 'HOUR', road_name, city,
+       DATE_FORMAT(request_time, '%Y-%m-%d %H:00:00'),
+       COUNT(*),
+       SUM(evaluation_status IS NULL OR evaluation_status NOT IN (1, 2, 3, 4)),
+       SUM(evaluation_status <=> 1), SUM(evaluation_status <=> 2),
+       SUM(evaluation_status <=> 3), SUM(evaluation_status <=> 4),
+       SUM(speed_sum), SUM(speed_count), MIN(min_speed), MAX(max_speed), SUM(distance_sum)
+FROM tmp_rollup_source
+GROUP BY road_name, city, 4;
+
+INSERT INTO road_traffic_rollup
+    (granularity, road_name, city, bucket_start, sample_count,
+     status0_count, status1_count, status2_count, status3_count, status4_count,
+     speed_sum, speed_count, min_speed, max_speed, congestion_distance_sum)
+SELECT 'DAY', road_name, city,
+       DATE(request_time),
+       COUNT(*),
+       SUM(evaluation_status IS NULL OR evaluation_status NOT IN (1, 2, 3, 4)),
+       SUM(evaluation_status <=> 1), SUM(evaluation_status <=> 2),
+       SUM(evaluation_status <=> 3), SUM(evaluation_status <=> 4),
+       SUM(speed_sum), SUM(speed_count), MIN(min_speed), MAX(max_speed), SUM(distance_sum)
+FROM tmp_rollup_source
+GROUP BY road_name, city, 4;
+
+INSERT INTO traffic_rollup_checkpoint (name, last_overall_id) VALUES ('rollup', @rollup_max_id)
+ON DUPLICATE KEY UPDATE last_overall_id = VALUES(last_overall_id);
+
+DROP TEMPORARY TABLE tmp_rollup_source;
+
+ANALYZE TABLE road_traffic_rollup;
@@ -0,0 +1,32 @@
+-- 拥堵路段速度草图：每条道路每小时一份对数分桶直方图（相对误差1%），
+-- 每个非空速度桶一行，速度分位数查询按桶号 SUM 合并各小时，不扫描拥堵路段原始数据。
+-- 需在 create_road_dimension.sql 之后、停止后端服务时执行；之后随路况汇总增量维护（同一检查点）
+
+CREATE TABLE road_speed_histogram (
+    road_id INT NOT NULL COMMENT '道路ID',
+    bucket_start DATETIME NOT NULL COMMENT '小时时间桶起始时间',
+    bin SMALLINT NOT NULL COMMENT '速度桶号：0为不超过1km/h，i为(γ^(i-1), γ^i]，γ=1.01/0.99',
+    sample_count BIGINT NOT NULL DEFAULT 0 COMMENT '落入该速度桶的拥堵路段数量',
+    PRIMARY KEY (road_id, bucket_start, bin)
+);
+
+-- ========================================
+-- 回填已汇总到检查点的数据（桶号公式与 SpeedSketch.binOf 一致）
+-- ========================================
+
+SET @sketch_max_id = (SELECT COALESCE(MAX(last_overall_id), 0) FROM traffic_rollup_checkpoint WHERE name = 'rollup');
+
+INSERT INTO road_speed_histogram (road_id, bucket_start, bin, sample_count)
+SELECT o.road_id,
+       DATE_FORMAT(o.request_time, '%Y-%m-%d %H:00:00'),
+       CASE WHEN cs.speed <= 1 THEN 0 ELSE CEIL(LN(cs.speed) / LN(1.01 / 0.99)) END,
+       COUNT(*)
+FROM congestion_sections cs
+JOIN road_traffic_overall o ON o.id = cs.overall_id
+WHERE cs.speed IS NOT NULL
+  AND o.road_id IS NOT NULL
+  AND o.request_time IS NOT NULL
+  AND o.id <= @sketch_max_id
+GROUP BY 1, 2, 3;
+
+ANALYZE TABLE road_speed_histogram;
@@ -0,0 +1,93 @@
+-- 路况事实表按月范围分区：road_traffic_overall 按 request_time，congestion_sections 按 created_at，
+-- 分区名为 pYYYYMM（该月数据），另有 pmax 兜底分区。带时间范围的查询只扫描涉及月份的分区，
+-- 每个分区的索引只覆盖一个月，过期月份整分区删除或归档，不再逐行 DELETE。
+-- 之后由后端 TrafficPartitionMaintainer 每天预建未来月份的分区并处理超过保留期的分区
+-- （traffic.partition.*）。
+-- 需在 create_road_dimension.sql 之后、停止后端服务和写入程序时执行（会重建两张表）。
+-- 分区表的限制：
+--   1. 不支持外键，congestion_sections.overall_id 的外键改为由写入程序保证
+--   2. 主键必须包含分区列，主键改为 (id, 分区列)，id 仍自增且唯一
+--   3. 分区列需为 DATETIME，created_at 由 TIMESTAMP 改为 DATETIME（按会话时区转换，与 request_time 一致）
+
+-- ========================================
+-- 去掉外键，调整分区列与主键
+-- ========================================
+
+SET @fk = (SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS
+           WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'congestion_sections'
+           LIMIT 1);
+SET @sql = IF(@fk IS NULL, 'DO 0', CONCAT('ALTER TABLE congestion_sections DROP FOREIGN KEY ', @fk));
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+UPDATE road_traffic_overall SET request_time = created_at WHERE request_time IS NULL;
+
+ALTER TABLE road_traffic_overall
+    MODIFY request_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '请求时间',
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, request_time);
+
+ALTER TABLE congestion_sections
+    MODIFY created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at);
+
+-- ========================================
+-- 按月分区：从最早数据所在月份到未来3个月，与 traffic.partition.months-ahead 默认值一致
+-- ========================================
+
+DELIMITER //
+
+CREATE PROCEDURE partition_by_month(IN table_name VARCHAR(64), IN column_name VARCHAR(64), IN first_month DATE)
+BEGIN
+    DECLARE month_start DATE DEFAULT DATE_FORMAT(COALESCE(first_month, CURDATE()), '%Y-%m-01');
+    DECLARE last_month DATE DEFAULT DATE_ADD(DATE_FORMAT(CURDATE(), '%Y-%m-01'), INTERVAL 3 MONTH);
+    DECLARE partition_list TEXT DEFAULT '';
+
+    WHILE month_start <= last_month DO
+        SET partition_list = CONCAT(partition_list,
+            'PARTITION p', DATE_FORMAT(month_start, '%Y%m'),
+            ' VALUES LESS THAN (''', DATE_ADD(month_start, INTERVAL 1 MONTH), ' 00:00:00''), ');
+        SET month_start = DATE_ADD(month_start, INTERVAL 1 MONTH);
+    END WHILE;
+
+    SET @partition_sql = CONCAT('ALTER TABLE ', table_name, ' PARTITION BY RANGE COLUMNS(', column_name, ') (',
+                                partition_list, 'PARTITION pmax VALUES LESS THAN (MAXVALUE))');
+    PREPARE stmt FROM @partition_sql;
+    EXECUTE stmt;
+    DEALLOCATE PREPARE stmt;
+END //
+
+DELIMITER ;
+
+CALL partition_by_month('road_traffic_overall', 'request_time', (SELECT MIN(request_time) FROM road_traffic_overall));
+CALL partition_by_month('congestion_sections', 'created_at', (SELECT MIN(created_at) FROM congestion_sections));
+
+DROP PROCEDURE partition_by_month;
+
+ANALYZE TABLE road_traffic_overall, congestion_sections;
+
+-- ========================================
+-- 分区裁剪验证：EXPLAIN 的 partitions 列应只列出查询时间范围涉及的月份
+-- ========================================
+
+-- 历史查询（RoadTrafficRepository.findHistoricalTraffic / scrollHistoricalTraffic）：只扫描 p202412
+-- EXPLAIN SELECT id, road_id, road_name, city, evaluation_status, request_time
+-- FROM road_traffic_overall
+-- WHERE road_id = 1 AND request_time BETWEEN '2024-12-20 08:00:00' AND '2024-12-21 08:00:00'
+-- ORDER BY request_time DESC LIMIT 20;
+
+-- 拥堵路段聚合（CongestionSectionRepository.aggregateBySummaries，created_at 范围为该页记录的 request_time 前后放宽10分钟）：
+-- 只扫描 p202412
+-- EXPLAIN SELECT overall_id, AVG(speed), SUM(congestion_distance), COUNT(speed), MIN(speed), MAX(speed)
+-- FROM congestion_sections
+-- WHERE overall_id IN (1001, 1002, 1003)
+--   AND created_at BETWEEN '2024-12-20 07:50:00' AND '2024-12-21 08:10:00'
+-- GROUP BY overall_id;
+
+-- 查看各分区行数
+-- SELECT TABLE_NAME, PARTITION_NAME, TABLE_ROWS
+-- FROM information_schema.PARTITIONS
+-- WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('road_traffic_overall', 'congestion_sections')
+-- ORDER BY TABLE_NAME, PARTITION_ORDINAL_POSITION;
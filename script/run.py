@@ -1,3 +1,5 @@
+# 已由后端路况采集（carpool-b 的 TrafficCollector，配置 traffic.collector.*）取代：
+# 后端在虚拟线程中并发采集所有道路并通过连接池写库，本脚本仅保留作参考。
 import requests
 import json
 import pymysql
@@ -8,6 +10,18 @@ import logging
 # 配置日志
 logging.basicConfig(level=logging.INFO, format='%(asctime)s - %(levelname)s - %(message)s')
 
+# 城市名称常见后缀（与后端 RoadDictionary.normalizeCityName 保持一致）
+CITY_SUFFIXES = ['市', '自治区', '自治州', '地区']
+
+
+def normalize_city_name(city):
+    """标准化城市名称，移除常见的后缀"""
+    for suffix in CITY_SUFFIXES:
+        if city.endswith(suffix) and len(city) > len(suffix):
+            return city[:-len(suffix)]
+    return city
+
+
 class RoadTrafficAPI:
     def __init__(self, ak, db_config):
         """
@@ -20,6 +34,8 @@ class RoadTrafficAPI:
         self.ak = ak
         self.base_url = "https://api.map.baidu.com/traffic/v1/road"
         self.db_config = db_config
+        # (道路名称, 标准城市名称) -> road.id
+        self.road_ids = {}
         
     def get_connection(self):
         """获取数据库连接"""
@@ -62,6 +78,31 @@ class RoadTrafficAPI:
             logging.error(f"API请求失败: {e}")
             return None
     
+    def get_road_id(self, cursor, road_name, city):
+        """
+        获取道路维度id，不存在时登记到 road 表
+
+        Args:
+            cursor: 数据库游标
+            road_name: 道路名称
+            city: 城市名称
+
+        Returns:
+            road.id
+        """
+        key = (road_name, normalize_city_name(city))
+        road_id = self.road_ids.get(key)
+        if road_id is None:
+            # LAST_INSERT_ID(id) 使已存在的记录也能通过 lastrowid 返回id
+            cursor.execute(
+                "INSERT INTO road (road_name, city) VALUES (%s, %s) "
+                "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)",
+                key
+            )
+            road_id = cursor.lastrowid
+            self.road_ids[key] = road_id
+        return road_id
+
     def save_to_database(self, road_name, city, api_data):
         """
         保存数据到数据库
@@ -83,17 +124,20 @@ class RoadTrafficAPI:
             
         try:
             with connection.cursor() as cursor:
+                road_id = self.get_road_id(cursor, road_name, city)
+
                 # 1. 插入整体路况信息
                 overall_sql = """
                 INSERT INTO road_traffic_overall 
-                (road_name, city, api_status, message, description, evaluation_status, evaluation_status_desc)
-                VALUES (%s, %s, %s, %s, %s, %s, %s)
+                (road_id, road_name, city, api_status, message, description, evaluation_status, evaluation_status_desc)
+                VALUES (%s, %s, %s, %s, %s, %s, %s, %s)
                 """
                 
                 evaluation_status = api_data.get('evaluation', {}).get('status')
                 evaluation_status_desc = api_data.get('evaluation', {}).get('status_desc')
                 
                 cursor.execute(overall_sql, (
+                    road_id,
                     road_name,
                     city,
                     api_data.get('status'),
@@ -113,12 +157,13 @@ class RoadTrafficAPI:
                     for section in congestion_sections:
                         section_sql = """
                         INSERT INTO congestion_sections 
-                        (overall_id, road_name, section_desc, status, speed, congestion_distance, congestion_trend)
-                        VALUES (%s, %s, %s, %s, %s, %s, %s)
+                        (overall_id, road_id, road_name, section_desc, status, speed, congestion_distance, congestion_trend)
+                        VALUES (%s, %s, %s, %s, %s, %s, %s, %s)
                         """
                         
                         cursor.execute(section_sql, (
                             overall_id,
+                            road_id,
                             road.get('road_name'),
                             section.get('section_desc'),
                             section.get('status'),